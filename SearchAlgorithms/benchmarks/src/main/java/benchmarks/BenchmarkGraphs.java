@@ -0,0 +1,116 @@
+package benchmarks;
+
+import graph.City;
+import graph.Graph;
+import graph.GraphGenerator;
+import graph.GraphLoader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * The graphs the benchmarks run on. The small graph is the city and
+ * edge files shipped with the project. The large graph comes from
+ * the GraphGenerator with its default seed, so every run measures
+ * the same graph.
+ * @author Andrew Serra
+ */
+final class BenchmarkGraphs {
+
+    static final String SMALL = "small";
+    static final String LARGE = "large";
+
+    private static final long SEED = 630;
+
+    private BenchmarkGraphs() {
+    }
+
+    /**
+     * Loads or generates a benchmark graph.
+     * @param size "small" or "large"
+     * @param dataDir Directory holding city.dat and edge.dat
+     * @param largeNodes Number of nodes of the large graph
+     * @return The Graph object
+     * @throws IOException If the small graph cannot be read
+     */
+    static Graph graph(String size, String dataDir, int largeNodes) throws IOException {
+        if(SMALL.equals(size)) {
+            return new GraphLoader(cityFile(dataDir), edgeFile(dataDir)).load();
+        }
+        return generate(largeNodes);
+    }
+
+    /**
+     * Finds the city file of the small graph.
+     * @param dataDir Directory holding city.dat and edge.dat
+     * @return Path of the city file
+     */
+    static Path cityFile(String dataDir) {
+        return Paths.get(dataDir, "city.dat");
+    }
+
+    /**
+     * Finds the edge file of the small graph.
+     * @param dataDir Directory holding city.dat and edge.dat
+     * @return Path of the edge file
+     */
+    static Path edgeFile(String dataDir) {
+        return Paths.get(dataDir, "edge.dat");
+    }
+
+    /**
+     * Generates the large graph, a connected jittered grid of degree 4.
+     * @param nodes Number of nodes
+     * @return The Graph object
+     */
+    static Graph generate(int nodes) {
+        return new GraphGenerator(nodes).generate();
+    }
+
+    /**
+     * Writes the large graph as a city file and an edge file.
+     * @param nodes Number of nodes
+     * @param cityFile Path of the city file
+     * @param edgeFile Path of the edge file
+     * @throws IOException If a file cannot be written
+     */
+    static void write(int nodes, Path cityFile, Path edgeFile) throws IOException {
+        new GraphGenerator(nodes).write(cityFile, edgeFile);
+    }
+
+    /**
+     * Rebuilds a graph as linked City objects for the original
+     * searches.
+     * @param graph The graph to convert
+     * @return The City of every node id
+     */
+    static City[] toCities(Graph graph) {
+        City[] cities = new City[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            cities[node] = graph.toCity(node);
+        }
+        for (int node = 0; node < graph.size(); node++) {
+            for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++) {
+                cities[node].connectTo(cities[graph.getTarget(e)]);
+            }
+        }
+        return cities;
+    }
+
+    /**
+     * Picks random source and sink pairs.
+     * @param graph The graph to pick nodes from
+     * @param count Number of pairs
+     * @return The pairs as {src, dst} arrays
+     */
+    static int[][] queries(Graph graph, int count) {
+        Random random = new Random(SEED);
+        int[][] queries = new int[count][];
+        for (int i = 0; i < count; i++) {
+            queries[i] = new int[] { random.nextInt(graph.size()), random.nextInt(graph.size()) };
+        }
+        return queries;
+    }
+}
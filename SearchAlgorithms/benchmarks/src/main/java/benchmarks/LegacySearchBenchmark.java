@@ -0,0 +1,83 @@
+package benchmarks;
+
+import graph.City;
+import graph.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import search.AStar;
+import search.BreadthFirstSearch;
+import search.DepthFirstSearch;
+import search.SearchAlgorithmBase;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of single queries of the original
+ * BreadthFirstSearch, DepthFirstSearch and AStar classes on linked
+ * City objects, as a baseline for the compact Graph searches. Run
+ * with -prof gc to also get the bytes allocated per query.
+ * @author Andrew Serra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LegacySearchBenchmark {
+
+    @Param({ BenchmarkGraphs.SMALL, BenchmarkGraphs.LARGE })
+    public String graph;
+
+    @Param({ "bfs", "dfs", "astar" })
+    public String algorithm;
+
+    @Param({ "src" })
+    public String dataDir;
+
+    @Param({ "100000" })
+    public int largeNodes;
+
+    private City[] cities;
+    private int[][] queries;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        Graph g = BenchmarkGraphs.graph(this.graph, this.dataDir, this.largeNodes);
+        this.cities = BenchmarkGraphs.toCities(g);
+        this.queries = BenchmarkGraphs.queries(g, 256);
+    }
+
+    @Benchmark
+    public LinkedList<City> query() {
+        int[] query = this.queries[this.next++ & 255];
+        City src = this.cities[query[0]];
+        City dst = this.cities[query[1]];
+        SearchAlgorithmBase search;
+        switch (this.algorithm) {
+            case "bfs":
+                search = new BreadthFirstSearch(src, dst.getName());
+                break;
+            case "dfs":
+                search = new DepthFirstSearch(src, dst.getName());
+                break;
+            default:
+                search = new AStar(src, dst);
+                break;
+        }
+        search.run();
+        return search.hasPath() ? search.getPath() : null;
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import graph.Graph;
+import graph.GraphLoader;
+import graph.GraphSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of loading a graph, both from the city and edge
+ * text files and from a binary snapshot. The large graph is written
+ * to temporary files once per trial, so only the loading is timed.
+ * Run with -prof gc to also get the bytes allocated per load.
+ * @author Andrew Serra
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({ BenchmarkGraphs.SMALL, BenchmarkGraphs.LARGE })
+    public String graph;
+
+    @Param({ "1" })
+    public int threads;
+
+    @Param({ "src" })
+    public String dataDir;
+
+    @Param({ "100000" })
+    public int largeNodes;
+
+    private Path dir;
+    private Path cityFile;
+    private Path edgeFile;
+    private Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("graph-bench");
+        if(BenchmarkGraphs.SMALL.equals(this.graph)) {
+            this.cityFile = BenchmarkGraphs.cityFile(this.dataDir);
+            this.edgeFile = BenchmarkGraphs.edgeFile(this.dataDir);
+        } else {
+            this.cityFile = this.dir.resolve("city.dat");
+            this.edgeFile = this.dir.resolve("edge.dat");
+            BenchmarkGraphs.write(this.largeNodes, this.cityFile, this.edgeFile);
+        }
+        this.snapshot = this.dir.resolve("graph.bin");
+        GraphSnapshot.write(this.loadText(), this.snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try ( Stream<Path> files = Files.list(this.dir); ) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.dir);
+    }
+
+    @Benchmark
+    public Graph loadText() throws IOException {
+        GraphLoader loader = new GraphLoader(this.cityFile, this.edgeFile);
+        loader.setThreads(this.threads);
+        return loader.load();
+    }
+
+    @Benchmark
+    public Graph loadSnapshot() throws IOException {
+        return GraphSnapshot.open(this.snapshot);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import graph.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import query.ResultFormat;
+import query.ResultWriter;
+import query.RouteQuery;
+import query.RouteResult;
+import search.Algorithm;
+import search.GraphSearchBase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of writing one route result in each format,
+ * without the search. The results of a fixed list of random A*
+ * queries are found once and written in turn to a stream that
+ * discards them, so only the encoding and buffering are timed. Run
+ * with -prof gc to also get the bytes allocated per result.
+ * @author Andrew Serra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBenchmark {
+
+    @Param({ BenchmarkGraphs.SMALL, BenchmarkGraphs.LARGE })
+    public String graph;
+
+    @Param({ "text", "json", "binary" })
+    public String format;
+
+    @Param({ "src" })
+    public String dataDir;
+
+    @Param({ "100000" })
+    public int largeNodes;
+
+    private RouteResult[] results;
+    private ResultWriter writer;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        Graph g = BenchmarkGraphs.graph(this.graph, this.dataDir, this.largeNodes);
+        int[][] queries = BenchmarkGraphs.queries(g, 256);
+        this.results = new RouteResult[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            GraphSearchBase search = Algorithm.ASTAR.create(g, queries[i][0], queries[i][1]);
+            search.run();
+            this.results[i] = new RouteResult(g, new RouteQuery(queries[i][0], queries[i][1], Algorithm.ASTAR),
+                    search.hasPath() ? search.getCompactPath() : null, false);
+        }
+        this.writer = new ResultWriter(OutputStream.nullOutputStream(), ResultFormat.fromName(this.format));
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        this.writer.accept(this.results[this.next++ & 255]);
+    }
+}
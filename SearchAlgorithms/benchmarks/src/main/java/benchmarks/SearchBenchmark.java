@@ -0,0 +1,68 @@
+package benchmarks;
+
+import graph.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import search.Algorithm;
+import search.CompactPath;
+import search.GraphSearchBase;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of single queries of the compact Graph
+ * searches. Each call answers the next of a fixed list of random
+ * queries. Run with -prof gc to also get the bytes allocated per
+ * query.
+ * @author Andrew Serra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({ BenchmarkGraphs.SMALL, BenchmarkGraphs.LARGE })
+    public String graph;
+
+    @Param({ "bfs", "dfs", "astar", "pbfs" })
+    public String algorithm;
+
+    @Param({ "src" })
+    public String dataDir;
+
+    @Param({ "100000" })
+    public int largeNodes;
+
+    private Graph g;
+    private Algorithm alg;
+    private int[][] queries;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.g = BenchmarkGraphs.graph(this.graph, this.dataDir, this.largeNodes);
+        this.alg = Algorithm.fromName(this.algorithm);
+        this.queries = BenchmarkGraphs.queries(this.g, 256);
+    }
+
+    @Benchmark
+    public CompactPath query() {
+        int[] query = this.queries[this.next++ & 255];
+        GraphSearchBase search = this.alg.create(this.g, query[0], query[1]);
+        search.run();
+        return search.hasPath() ? search.getCompactPath() : null;
+    }
+}
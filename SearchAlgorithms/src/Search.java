@@ -1,12 +1,39 @@
 import java.io.*;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-import graph.City;
-import graph.Coordinate;
-import search.AStar;
-import search.BreadthFirstSearch;
-import search.DepthFirstSearch;
+import graph.DistanceMetric;
+import graph.Graph;
+import graph.GraphFormatException;
+import graph.GraphGenerator;
+import graph.GraphLoader;
+import graph.GraphSnapshot;
+import graph.GraphUpdate;
+import query.QueryExecutor;
+import query.QueryMetrics;
+import query.QueryReader;
+import query.ResultFormat;
+import query.ResultWriter;
+import query.RouteCache;
+import query.RouteQuery;
+import query.RouteResult;
+import query.RouteServer;
+import search.Algorithm;
+import search.AllPairsTable;
+import search.BoundedSearchBase;
+import search.ContractionHierarchy;
+import search.Dijkstra;
+import search.SearchStats;
+import search.ShortestPathTree;
+import search.Landmarks;
+import search.NearestTargets;
 
 
 /**
@@ -14,14 +41,29 @@ import search.DepthFirstSearch;
  * DFS, and A* on a given set of cities. The data is hard-coded
  * but the source and sink are provided either with an input file
  * or standard input. As an output, the options are standard output
- * or an output file.
+ * or an output file. In batch mode the input is a stream of queries
+ * that are answered in parallel on the same loaded graph.
  * @author Andrew Serra
  */
 public class Search extends Thread {
     private String src;
     private String dst;
+    private final String inFile;
     private final String outFile;
-    private final HashMap<String, City> nodes = new HashMap<>();
+    private final boolean batch;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean ordered = true;
+    private int cacheSize = 0;
+    private AllPairsTable allPairs = null;
+    private Landmarks landmarks = null;
+    private ContractionHierarchy hierarchy = null;
+    private String treeSource = null;
+    private int nearest = 0;
+    private int nodeBudget = BoundedSearchBase.DEFAULT_NODE_BUDGET;
+    private QueryMetrics metrics = null;
+    private ResultFormat format = ResultFormat.TEXT;
+    private boolean printStats = false;
+    private final Graph graph;
 
     /**
      * Creates a Search object
@@ -29,12 +71,158 @@ public class Search extends Thread {
      * @param outputFile Output filename containing where to write paths
      */
     public Search(String inputFile, String outputFile) {
+        this(inputFile, outputFile, false);
+    }
+
+    /**
+     * Creates a Search object
+     * @param inputFile Input filename containing source and sink, or
+     *                  the batch of queries in batch mode
+     * @param outputFile Output filename containing where to write paths
+     * @param batch True to answer every query line of the input file
+     */
+    public Search(String inputFile, String outputFile, boolean batch) {
         // Set up the search data
-        readCityFile();
-        readEdgeFile();
+        this(loadGraph(), inputFile, outputFile, batch);
+    }
 
-        readInputFile(inputFile);
+    /**
+     * Creates a Search object on a graph that is already loaded
+     * @param graph The graph to search
+     * @param inputFile Input filename containing source and sink, or
+     *                  the batch of queries in batch mode
+     * @param outputFile Output filename containing where to write paths
+     * @param batch True to answer every query line of the input file
+     */
+    public Search(Graph graph, String inputFile, String outputFile, boolean batch) {
+        this.graph = graph;
+        this.inFile = inputFile;
         this.outFile = outputFile;
+        this.batch = batch;
+        if(!batch) {
+            readInputFile(inputFile);
+        }
+    }
+
+    /**
+     * Sets the number of worker threads used in batch mode.
+     * @param threads Number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether batch results are written in input order or
+     * as soon as each query finishes.
+     * @param ordered True to keep the input order
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Sets the number of routes cached in batch mode.
+     * @param cacheSize Number of routes, 0 for no cache
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Sets a precomputed all-pairs table that answers the A* queries
+     * on graphs whose estimate is admissible.
+     * @param allPairs The table, or null to run A*
+     */
+    public void setAllPairs(AllPairsTable allPairs) {
+        this.allPairs = allPairs;
+    }
+
+    /**
+     * Sets the landmarks used as the A* heuristic.
+     * @param landmarks The landmarks, or null for straight line distances
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Sets the contraction hierarchy used for contraction hierarchy
+     * queries. When set, a single query also reports its result.
+     * @param hierarchy The hierarchy, or null
+     */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Sets a source whose routes to every city of the input file are
+     * found with a single Dijkstra search. The input file is then a
+     * list of destination names instead of a source and sink.
+     * @param treeSource Name of the source city, or null
+     */
+    public void setTreeSource(String treeSource) {
+        this.treeSource = treeSource;
+    }
+
+    /**
+     * Sets how many of the cities of the input file are answered when
+     * a tree source is set: only the nearest ones, found by a search
+     * that stops once they are settled.
+     * @param nearest Number of cities, 0 for all of them
+     */
+    public void setNearest(int nearest) {
+        this.nearest = nearest;
+    }
+
+    /**
+     * Sets the node budget of the memory-bounded IDA* and SMA* queries.
+     * @param nodeBudget Largest number of search nodes, at least 2
+     */
+    public void setNodeBudget(int nodeBudget) {
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Sets if the statistics of every search are written after its
+     * result.
+     * @param printStats True to write the statistics
+     */
+    public void setPrintStats(boolean printStats) {
+        this.printStats = printStats;
+    }
+
+    /**
+     * Sets the format results are written in.
+     * @param format Text, JSON lines or binary
+     */
+    public void setFormat(ResultFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets where the latency and statistics of every query are
+     * recorded.
+     * @param metrics The metrics to record into, or null for none
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts answering route queries over HTTP on the loopback
+     * address with the settings of this search. The server keeps the
+     * program running until it is closed.
+     * @param port Port to listen on, 0 for any free port
+     * @param maxInFlight Largest number of queries waiting or running
+     * @return The running RouteServer object
+     * @throws IOException If the port cannot be bound
+     */
+    public RouteServer serve(int port, int maxInFlight) throws IOException {
+        RouteServer server = new RouteServer(this.newExecutor(this.threads), maxInFlight);
+        server.setMetrics(this.metrics);
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return server;
     }
 
     /**
@@ -42,26 +230,134 @@ public class Search extends Thread {
      */
     public static void printHelp() {
         System.out.println("Usage: java Search inputFile outputFile");
+        System.out.println("       java Search [options] -batch [-threads n] [-unordered] [-cache n] inputFile outputFile");
+        System.out.println("       java Search [options] -from source [-nearest k] inputFile outputFile");
+        System.out.println("       java Search [options] -compile snapshot");
+        System.out.println("       java Search [options] -serve port [-threads n] [-maxInFlight n] [-cache n]");
+        System.out.println("       java Search [options] -generate n [-shape grid|geometric] [-degree d]");
+        System.out.println("                   [-spread s] [-seed s] [-disconnected] [-compile snapshot]");
+        System.out.println("Options: -cities file, -edges file (default: city.dat, edge.dat),");
+        System.out.println("         -metric euclidean|haversine, -loadThreads n,");
+        System.out.println("         -graph snapshot, -verbose, -allPairs, -allPairsFile file,");
+        System.out.println("         -landmarks k, -landmarksFile file, -ch, -chFile file,");
+        System.out.println("         -nodeBudget n, -stats, -metrics, -metricsInterval s,");
+        System.out.println("         -update file, -format text|json|binary");
+        System.out.println("Batch input lines are \"source sink [algorithm]\" where the");
+        System.out.println("algorithm is bfs, dfs, astar, bibfs, biastar, ch, dijkstra,");
+        System.out.println("idastar, smastar or pbfs, a breadth-first search that expands");
+        System.out.println("each level on all cores; bfs, dfs and astar are run when none is");
+        System.out.println("given. Queries run on n threads (default: all cores), and");
+        System.out.println("results are written in input order unless -unordered is");
+        System.out.println("given. -cache keeps the last n routes found in memory for");
+        System.out.println("repeated queries. -compile writes the city and edge files to a");
+        System.out.println("binary snapshot that -graph loads instead of the text files.");
+        System.out.println("-verbose reports load speed. -generate writes a seeded random");
+        System.out.println("graph of n cities to the city and edge files, which must not");
+        System.out.println("exist yet: a jittered grid (default) or a geometric graph that");
+        System.out.println("links near cities, with degree d (default 4) varying by up to s");
+        System.out.println("per city, joined into one piece unless -disconnected is given.");
+        System.out.println("-allPairs precomputes every shortest route so A* queries are");
+        System.out.println("looked up on haversine graphs, where A* finds them too;");
+        System.out.println("-allPairsFile maps the table from a file, writing it first if it");
+        System.out.println("does not exist. -landmarks picks k landmarks (default");
+        System.out.println("16) whose distances tighten the A* estimate; -landmarksFile reads");
+        System.out.println("them from a file, writing it first if it does not exist. -ch");
+        System.out.println("contracts the graph into a hierarchy for ch queries and adds");
+        System.out.println("their results to a single query; -chFile reads the hierarchy");
+        System.out.println("from a file, writing it first if it does not exist. -from finds");
+        System.out.println("the routes from one source to every city listed in the input");
+        System.out.println("file with a single Dijkstra search; -nearest writes only the k");
+        System.out.println("nearest of them, nearest first, stopping the search once they");
+        System.out.println("are found. -nodeBudget caps the search");
+        System.out.println("nodes of idastar and smastar queries (default: 1048576); a query");
+        System.out.println("that runs out reports no path instead of failing. -stats writes");
+        System.out.println("the nodes expanded, edges relaxed, peak frontier, phase times and");
+        System.out.println("bytes allocated of every search after its result. -metrics writes");
+        System.out.println("query counts and p50/p99 latencies to standard error at the end,");
+        System.out.println("and -metricsInterval also every s seconds while queries run.");
+        System.out.println("Every query is a csci630.RouteQuery flight recorder event.");
+        System.out.println("-serve keeps the graph loaded and answers GET requests on");
+        System.out.println("127.0.0.1:port/route?from=A&to=B[&algorithm=a][&format=f]");
+        System.out.println("[&stats=true] on n threads, turning requests away with 503 once n");
+        System.out.println("queries (default: 4 per thread) are in flight; /metrics reports");
+        System.out.println("the query metrics, and a POST to /update applies graph changes.");
+        System.out.println("-update applies the changes of a file to the loaded graph, one per");
+        System.out.println("line: addCity name state x y, addEdge a b [weight], removeEdge a b");
+        System.out.println("or setWeight a b weight. -format writes results as text (default),");
+        System.out.println("one JSON object per line, or little-endian binary records of node");
+        System.out.println("ids and distances.");
     }
 
     /**
-     * Reads in the city.dat file containing all city nodes
-     * and their information.
+     * Reads city.dat and edge.dat from the working directory into a
+     * compact graph.
+     * @return The Graph object
      */
-    private void readCityFile() {
-        try (
-                BufferedReader input = new BufferedReader(new FileReader("city.dat")); ) {
-            String line;
-            while ((line = input.readLine()) != null) {
-                String[] contents = line.split("\\s+");
-                float x = Float.parseFloat(contents[2]);
-                float y = Float.parseFloat(contents[3]);
-                Coordinate coord = new Coordinate(x, y);
-                this.nodes.put(contents[0], new City(contents[0], contents[1], coord));
+    public static Graph loadGraph() {
+        return loadGraph("city.dat", "edge.dat", DistanceMetric.EUCLIDEAN, 1, false);
+    }
+
+    /**
+     * Reads a city file and an edge file into a compact graph.
+     * @param cityFile Path of the city file
+     * @param edgeFile Path of the edge file
+     * @param metric Metric used for edge weights and A* estimates
+     * @param threads Number of threads used to parse each file
+     * @param verbose True to print the load throughput to standard error
+     * @return The Graph object
+     */
+    public static Graph loadGraph(String cityFile, String edgeFile, DistanceMetric metric,
+                                  int threads, boolean verbose) {
+        GraphLoader loader = new GraphLoader(Paths.get(cityFile), Paths.get(edgeFile));
+        loader.setMetric(metric);
+        loader.setThreads(threads);
+        try {
+            Graph graph = loader.load();
+            if(verbose) {
+                System.err.printf("Loaded %d cities and %d edges (%.1f MB) in %d ms, %.1f MB/s\n",
+                        graph.size(), graph.edgeCount() / 2,
+                        loader.getBytesRead() / (1024.0 * 1024.0),
+                        loader.getLoadNanos() / 1000000, loader.getThroughput());
             }
-        } catch (FileNotFoundException e) {
-            System.err.println("File not found: city.dat");
-            System.exit(0);
+            return graph;
+        } catch (GraphFormatException e) {
+            System.err.println(e.getMessage());
+        } catch (NoSuchFileException e) {
+            System.err.printf("File not found: %s\n", e.getFile());
+        } catch (IOException e) {
+            System.err.printf("IO exception: %s\n", e.getMessage());
+        }
+        System.exit(0);
+        return null;
+    }
+
+    /**
+     * Opens a binary graph snapshot written by -compile.
+     * @param filename Path of the snapshot file
+     * @return The Graph object
+     */
+    public static Graph openSnapshot(String filename) {
+        try {
+            return GraphSnapshot.open(Paths.get(filename));
+        } catch (NoSuchFileException e) {
+            System.err.printf("File not found: %s\n", filename);
+        } catch (IOException e) {
+            System.err.printf("IO exception: %s\n", e.getMessage());
+        }
+        System.exit(0);
+        return null;
+    }
+
+    /**
+     * Writes a loaded graph to a binary snapshot.
+     * @param graph The graph to write
+     * @param filename Path of the snapshot file
+     */
+    public static void compileSnapshot(Graph graph, String filename) {
+        try {
+            GraphSnapshot.write(graph, Paths.get(filename));
+            System.out.printf("Wrote %d cities and %d edges to %s\n",
+                    graph.size(), graph.edgeCount() / 2, filename);
         } catch (IOException e) {
             System.err.printf("IO exception: %s\n", e.getMessage());
             System.exit(0);
@@ -69,27 +365,168 @@ public class Search extends Thread {
     }
 
     /**
-     * Reads in the edge.dat file containing all city connections.
+     * Applies the changes of an update file to a loaded graph.
+     * @param graph The loaded graph
+     * @param filename Path of the update file
+     * @return The updated graph
      */
-    private void readEdgeFile() {
-        try ( BufferedReader input = new BufferedReader(new FileReader("edge.dat")); ) {
-            String line;
-            while ((line = input.readLine()) != null) {
-                String[] contents = line.split("\\s+");
-                if(contents.length == 2) {
-                    City node1 = this.nodes.get(contents[0]);
-                    City node2 = this.nodes.get(contents[1]);
-                    node1.connectTo(node2);
-                    node2.connectTo(node1);
-                }
-            }
+    public static Graph applyUpdate(Graph graph, String filename) {
+        try ( BufferedReader input = new BufferedReader(new FileReader(filename)); ) {
+            return GraphUpdate.parse(input, filename).applyTo(graph);
         } catch (FileNotFoundException e) {
-            System.err.println("File not found: edge.dat");
+            System.err.printf("File not found: %s\n", filename);
+        } catch (IllegalArgumentException e) {
+            System.err.printf("%s: %s\n", filename, e.getMessage());
+        } catch (GraphFormatException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.printf("IO exception: %s\n", e.getMessage());
+        }
+        System.exit(0);
+        return null;
+    }
+
+    /**
+     * Writes a generated graph to a city file and an edge file. Files
+     * that already exist are never overwritten.
+     * @param generator The configured generator
+     * @param cityFile Path of the city file
+     * @param edgeFile Path of the edge file
+     * @param nodes Number of cities, for the report
+     */
+    public static void generateGraph(GraphGenerator generator, String cityFile, String edgeFile,
+                                     int nodes) {
+        for (String file : new String[] { cityFile, edgeFile }) {
+            if(Files.exists(Paths.get(file))) {
+                System.err.printf("File exists: %s\n", file);
+                System.exit(0);
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            generator.write(Paths.get(cityFile), Paths.get(edgeFile));
+            System.out.printf("Wrote %d cities to %s and %s in %d ms\n", nodes, cityFile, edgeFile,
+                    (System.nanoTime() - start) / 1000000);
+        } catch (IOException e) {
+            System.err.printf("IO exception: %s\n", e.getMessage());
             System.exit(0);
+        }
+    }
+
+    /**
+     * Precomputes the shortest routes between all pairs of cities, or
+     * maps a table file written before. A table that would not fit in
+     * memory is refused and A* is run instead, and so is any table
+     * of a graph whose estimate is not admissible, where A* may not
+     * return the shortest routes the table holds.
+     * @param graph The graph to precompute
+     * @param filename Path of the table file, or null to keep the
+     *                 table in memory only
+     * @param verbose True to print the build time to standard error
+     * @return The AllPairsTable object, or null if it was refused
+     */
+    public static AllPairsTable loadAllPairs(Graph graph, String filename, boolean verbose) {
+        if(!graph.isEstimateAdmissible()) {
+            System.err.println("Warning: A* may not find the shortest routes of "
+                    + graph.getMetric().name().toLowerCase() + " graphs, running A* instead of -allPairs.");
+            return null;
+        }
+        try {
+            if(filename != null && Files.exists(Paths.get(filename))) {
+                return AllPairsTable.open(Paths.get(filename), graph);
+            }
+
+            long bytes = AllPairsTable.requiredBytes(graph.size());
+            if(bytes > Runtime.getRuntime().maxMemory() / 4) {
+                System.err.printf("Warning: all-pairs table needs %d MB of memory.\n", bytes >> 20);
+            }
+            long start = System.nanoTime();
+            AllPairsTable allPairs = AllPairsTable.build(graph);
+            if(verbose) {
+                System.err.printf("Precomputed %d routes in %d ms\n",
+                        (long) graph.size() * graph.size(), (System.nanoTime() - start) / 1000000);
+            }
+            if(filename != null) {
+                allPairs.save(Paths.get(filename));
+                return AllPairsTable.open(Paths.get(filename), graph);
+            }
+            return allPairs;
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Running A* instead.");
+            return null;
         } catch (IOException e) {
             System.err.printf("IO exception: %s\n", e.getMessage());
             System.exit(0);
+            return null;
+        }
+    }
+
+    /**
+     * Picks landmarks for the A* heuristic, or reads a landmark file
+     * written before.
+     * @param graph The graph to preprocess
+     * @param count Number of landmarks to pick
+     * @param filename Path of the landmark file, or null to keep the
+     *                 landmarks in memory only
+     * @param verbose True to print the preprocessing time to standard error
+     * @return The Landmarks object
+     */
+    public static Landmarks loadLandmarks(Graph graph, int count, String filename, boolean verbose) {
+        try {
+            if(filename != null && Files.exists(Paths.get(filename))) {
+                return Landmarks.open(Paths.get(filename), graph);
+            }
+
+            long start = System.nanoTime();
+            Landmarks landmarks = Landmarks.select(graph, count);
+            if(verbose) {
+                System.err.printf("Picked %d landmarks in %d ms\n",
+                        landmarks.count(), (System.nanoTime() - start) / 1000000);
+            }
+            if(filename != null) {
+                landmarks.save(Paths.get(filename));
+            }
+            return landmarks;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.printf("IO exception: %s\n", e.getMessage());
         }
+        System.exit(0);
+        return null;
+    }
+
+    /**
+     * Contracts the graph into a hierarchy, or reads a hierarchy file
+     * written before.
+     * @param graph The graph to preprocess
+     * @param filename Path of the hierarchy file, or null to keep the
+     *                 hierarchy in memory only
+     * @param verbose True to print the preprocessing time to standard error
+     * @return The ContractionHierarchy object
+     */
+    public static ContractionHierarchy loadHierarchy(Graph graph, String filename, boolean verbose) {
+        try {
+            if(filename != null && Files.exists(Paths.get(filename))) {
+                return ContractionHierarchy.open(Paths.get(filename), graph);
+            }
+
+            long start = System.nanoTime();
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+            if(verbose) {
+                System.err.printf("Contracted %d cities with %d shortcuts in %d ms\n",
+                        graph.size(), hierarchy.shortcutCount(), (System.nanoTime() - start) / 1000000);
+            }
+            if(filename != null) {
+                hierarchy.save(Paths.get(filename));
+            }
+            return hierarchy;
+        } catch (IOException e) {
+            System.err.printf("IO exception: %s\n", e.getMessage());
+        }
+        System.exit(0);
+        return null;
     }
 
     /**
@@ -107,10 +544,10 @@ public class Search extends Thread {
             this.src = input.readLine();
             this.dst = input.readLine();
 
-            if (!this.nodes.containsKey(this.src)) {
+            if (this.graph.indexOf(this.src) < 0) {
                 System.err.printf("No such city: %s\n", this.src);
                 System.exit(0);
-            } else if (!this.nodes.containsKey(this.dst)) {
+            } else if (this.graph.indexOf(this.dst) < 0) {
                 System.err.printf("No such city: %s\n", this.dst);
                 System.exit(0);
             }
@@ -124,85 +561,171 @@ public class Search extends Thread {
     }
 
     /**
-     * Writes to the output file solutions of each algorithm. After
-     * each path, the number of hops and the total distance is given.
-     * @param w Writer object to output the solution
-     * @param title Name of the algorithm to be printed
-     * @param path Path of the cities that connect the source and sink as
-     *             a linked list.
+     * Runs one algorithm between the source and sink on the
+     * calling thread and writes its results.
+     * @param output ResultWriter object to output the result
+     * @param algorithm The algorithm to run
+     * @throws IOException
      */
-    private void printPathData(Writer w, String title, LinkedList<City> path) throws IOException {
-        City prevCity = path.getFirst();
-        float totalDist = 0;
-        String ls = System.getProperty("line.separator");
-
-        w.write(ls + title + " Results:" + ls);
-        w.write(prevCity.getName() + ls);
-        for (int i=1; i < path.size(); i++) {
-            City currCity = path.get(i);
-            w.write(currCity.getName() + ls);
+    private void runQuery(ResultWriter output, Algorithm algorithm) throws IOException {
+        RouteQuery query = new RouteQuery(
+                this.graph.indexOf(this.src), this.graph.indexOf(this.dst), algorithm);
+        try ( QueryExecutor executor = this.newExecutor(1); ) {
+            output.accept(executor.answer(query));
+        }
+    }
 
-            totalDist += currCity.distanceTo(prevCity);
-            prevCity = currCity;
+    /**
+     * Creates a QueryExecutor with the cache, all-pairs table,
+     * landmarks and metrics of this search. Its threads are only started once
+     * queries are submitted to it.
+     * @param parallelism Number of worker threads
+     * @return The QueryExecutor object
+     */
+    private QueryExecutor newExecutor(int parallelism) {
+        QueryExecutor executor = new QueryExecutor(this.graph, parallelism, this.ordered);
+        if(this.cacheSize > 0) {
+            executor.setCache(new RouteCache(this.cacheSize, 64L * this.cacheSize));
         }
-        w.write("That took " + (path.size()-1) + " hops to find." + ls);
-        w.write("Total distance = " + (int)totalDist + " miles." + ls + ls);
+        executor.setAllPairs(this.allPairs);
+        executor.setLandmarks(this.landmarks);
+        executor.setHierarchy(this.hierarchy);
+        executor.setNodeBudget(this.nodeBudget);
+        executor.setMetrics(this.metrics);
+        return executor;
     }
 
     /**
      * Runs Breadth-First Search
-     * @param w Writer object to output the result
+     * @param output ResultWriter object to output the result
      * @throws IOException
      */
-    public void BFS(Writer w) throws IOException {
-        City city = this.nodes.get(this.src);
-        BreadthFirstSearch _bfs = new BreadthFirstSearch(city, this.dst);
-        _bfs.run();
-        LinkedList<City> path = _bfs.getPath();
-
-        this.printPathData(w, "Breadth-First Search", path);
+    public void BFS(ResultWriter output) throws IOException {
+        this.runQuery(output, Algorithm.BFS);
     }
 
     /**
      * Runs Depth-First Search
-     * @param w Writer object to output the result
+     * @param output ResultWriter object to output the result
      * @throws IOException
      */
-    public void DFS(Writer w) throws IOException {
-        City city = this.nodes.get(this.src);
-        DepthFirstSearch _dfs = new DepthFirstSearch(city, this.dst);
-        _dfs.run();
-        LinkedList<City> path = _dfs.getPath();
-
-        this.printPathData(w, "Depth-First Search", path);
+    public void DFS(ResultWriter output) throws IOException {
+        this.runQuery(output, Algorithm.DFS);
     }
 
     /**
      * Runs A* Search
-     * @param w Writer object to output the result
+     * @param output ResultWriter object to output the result
      * @throws IOException
      */
-    public void AStar(Writer w) throws IOException {
-        City srcCity = this.nodes.get(this.src);
-        City dstCity = this.nodes.get(this.dst);
-        AStar _as = new AStar(srcCity, dstCity);
-        _as.run();
-        LinkedList<City> path = _as.getPath();
+    public void AStar(ResultWriter output) throws IOException {
+        this.runQuery(output, Algorithm.ASTAR);
+    }
 
-        this.printPathData(w, "A* Search", path);
+    /**
+     * Reads the batch input lazily and answers the queries on the
+     * worker threads of a QueryExecutor. Each result is written as
+     * soon as it is delivered.
+     * @param output ResultWriter object to output the results
+     * @throws IOException
+     */
+    private void runBatch(ResultWriter output) throws IOException {
+        try ( Reader r = this.inFile.equals("-") ?
+                new InputStreamReader(System.in) : new FileReader(this.inFile);
+              BufferedReader input = new BufferedReader(r);
+              QueryExecutor executor = this.newExecutor(this.threads); ) {
+            executor.run(new QueryReader(input, this.graph), output);
+        } catch (FileNotFoundException e) {
+            System.err.printf("File not found: %s\n", this.inFile);
+            System.exit(0);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * Runs the thread.
+     * Reads the destination names of the input file and finds their
+     * routes from the tree source with one Dijkstra search, which
+     * stops once every destination is settled. Results are written in
+     * the order the destinations are listed. With a nearest count,
+     * only that many of the nearest destinations are written, nearest
+     * first, and the search stops once they are settled.
+     * @param output ResultWriter object to output the results
+     * @throws IOException
+     */
+    private void runTree(ResultWriter output) throws IOException {
+        int srcId = this.graph.indexOf(this.treeSource);
+        int[] targets = new int[16];
+        int count = 0;
+        try ( Reader r = this.inFile.equals("-") ?
+                new InputStreamReader(System.in) : new FileReader(this.inFile);
+              BufferedReader input = new BufferedReader(r); ) {
+            String line;
+            int lineNumber = 0;
+            while ((line = input.readLine()) != null) {
+                lineNumber++;
+                for (String name : line.trim().split("\\s+")) {
+                    if(name.isEmpty()) {
+                        continue;
+                    }
+                    int id = this.graph.indexOf(name);
+                    if(id < 0) {
+                        System.err.printf("Line %d: No such city: %s\n", lineNumber, name);
+                        continue;
+                    }
+                    if(count == targets.length) {
+                        targets = Arrays.copyOf(targets, count * 2);
+                    }
+                    targets[count++] = id;
+                }
+            }
+        } catch (FileNotFoundException e) {
+            System.err.printf("File not found: %s\n", this.inFile);
+            System.exit(0);
+        }
+
+        targets = Arrays.copyOf(targets, count);
+        if(this.nearest > 0) {
+            NearestTargets found = new Dijkstra(this.graph).nearest(srcId, targets, this.nearest);
+            for (int i = 0; i < found.size(); i++) {
+                output.accept(new RouteResult(this.graph, new RouteQuery(srcId, found.getTarget(i),
+                        Algorithm.DIJKSTRA), found.pathTo(i), false));
+            }
+            return;
+        }
+        ShortestPathTree tree = new Dijkstra(this.graph).toTargets(srcId, targets);
+        for (int target : targets) {
+            output.accept(new RouteResult(this.graph,
+                    new RouteQuery(srcId, target, Algorithm.DIJKSTRA), tree.pathTo(target), false));
+        }
+    }
+
+    /**
+     * Runs the thread. Results are buffered, and only flushed after
+     * each one when the queries come from standard input, where a
+     * user may be waiting on every answer.
      */
     @Override
     public void run() {
-        try ( Writer w = this.outFile.equals("-") ?
-                new PrintWriter(System.out) : new FileWriter(this.outFile, true);
-              BufferedWriter output = new BufferedWriter(w); ) {
-            this.BFS(output);
-            this.DFS(output);
-            this.AStar(output);
+        try ( OutputStream out = this.outFile.equals("-") ?
+                System.out : new FileOutputStream(this.outFile, true);
+              ResultWriter output = new ResultWriter(out, this.format); ) {
+            output.setStats(this.printStats);
+            output.setAutoFlush(this.inFile.equals("-"));
+            if(this.treeSource != null) {
+                this.runTree(output);
+            } else if(this.batch) {
+                this.runBatch(output);
+            } else {
+                this.BFS(output);
+                this.DFS(output);
+                this.AStar(output);
+                if(this.hierarchy != null) {
+                    this.runQuery(output, Algorithm.CH);
+                }
+            }
         } catch (FileNotFoundException e) {
             System.err.printf("File not found: %s\n", this.outFile);
             System.exit(0);
@@ -212,13 +735,245 @@ public class Search extends Thread {
         }
     }
 
+    /**
+     * Writes the query metrics to standard error every few seconds on
+     * a daemon thread until the returned executor is shut down.
+     * @param metrics The metrics to report
+     * @param seconds Seconds between reports
+     * @return The executor running the reports
+     */
+    public static ScheduledExecutorService reportMetrics(QueryMetrics metrics, int seconds) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> Search.printMetrics(metrics),
+                seconds, seconds, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    /**
+     * Writes the query metrics to standard error.
+     * @param metrics The metrics to report
+     */
+    public static void printMetrics(QueryMetrics metrics) {
+        StringBuilder report = new StringBuilder();
+        try {
+            metrics.report(report);
+        } catch (IOException e) {
+            // A StringBuilder does not throw
+        }
+        System.err.print(report);
+        System.err.flush();
+    }
+
     public static void main(String[] args) {
+        boolean batch = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean ordered = true;
+        int cacheSize = 0;
+        String snapshot = null;
+        String compile = null;
+        String cityFile = "city.dat";
+        String edgeFile = "edge.dat";
+        int loadThreads = 1;
+        DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+        boolean verbose = false;
+        boolean allPairs = false;
+        String allPairsFile = null;
+        int landmarkCount = 0;
+        String landmarksFile = null;
+        boolean contract = false;
+        String hierarchyFile = null;
+        String treeSource = null;
+        int nearest = 0;
+        int nodeBudget = BoundedSearchBase.DEFAULT_NODE_BUDGET;
+        boolean stats = false;
+        boolean metrics = false;
+        int metricsInterval = 0;
+        int serve = -1;
+        String updateFile = null;
+        ResultFormat format = ResultFormat.TEXT;
+        int maxInFlight = 0;
+        int generate = 0;
+        GraphGenerator.Shape shape = GraphGenerator.Shape.GRID;
+        int degree = 4;
+        int spread = 0;
+        long seed = 630;
+        boolean connected = true;
 
-        if(args.length != 2) {
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-") && !args[i].equals("-"); i++) {
+                if(args[i].equals("-batch")) {
+                    batch = true;
+                } else if(args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-unordered")) {
+                    ordered = false;
+                } else if(args[i].equals("-cache")) {
+                    cacheSize = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-graph")) {
+                    snapshot = args[++i];
+                } else if(args[i].equals("-compile")) {
+                    compile = args[++i];
+                } else if(args[i].equals("-cities")) {
+                    cityFile = args[++i];
+                } else if(args[i].equals("-edges")) {
+                    edgeFile = args[++i];
+                } else if(args[i].equals("-loadThreads")) {
+                    loadThreads = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-metric")) {
+                    metric = DistanceMetric.fromName(args[++i]);
+                } else if(args[i].equals("-verbose")) {
+                    verbose = true;
+                } else if(args[i].equals("-allPairs")) {
+                    allPairs = true;
+                } else if(args[i].equals("-allPairsFile")) {
+                    allPairs = true;
+                    allPairsFile = args[++i];
+                } else if(args[i].equals("-landmarks")) {
+                    landmarkCount = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-landmarksFile")) {
+                    landmarksFile = args[++i];
+                } else if(args[i].equals("-from")) {
+                    treeSource = args[++i];
+                } else if(args[i].equals("-nearest")) {
+                    nearest = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-generate")) {
+                    generate = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-shape")) {
+                    shape = GraphGenerator.Shape.fromName(args[++i]);
+                } else if(args[i].equals("-degree")) {
+                    degree = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-spread")) {
+                    spread = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-seed")) {
+                    seed = Long.parseLong(args[++i]);
+                } else if(args[i].equals("-disconnected")) {
+                    connected = false;
+                } else if(args[i].equals("-nodeBudget")) {
+                    nodeBudget = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-stats")) {
+                    stats = true;
+                } else if(args[i].equals("-metrics")) {
+                    metrics = true;
+                } else if(args[i].equals("-metricsInterval")) {
+                    metrics = true;
+                    metricsInterval = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-format")) {
+                    format = ResultFormat.fromName(args[++i]);
+                } else if(args[i].equals("-update")) {
+                    updateFile = args[++i];
+                } else if(args[i].equals("-serve")) {
+                    serve = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-maxInFlight")) {
+                    maxInFlight = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("-ch")) {
+                    contract = true;
+                } else if(args[i].equals("-chFile")) {
+                    contract = true;
+                    hierarchyFile = args[++i];
+                } else {
+                    break;
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            i = -1;
+        }
+
+        if(landmarksFile != null && landmarkCount == 0) {
+            landmarkCount = 16;
+        }
+        GraphGenerator generator = null;
+        if(i >= 0 && generate > 0) {
+            try {
+                generator = new GraphGenerator(generate);
+                generator.setShape(shape);
+                generator.setMetric(metric);
+                generator.setSeed(seed);
+                generator.setDegree(degree, spread);
+                generator.setConnected(connected);
+            } catch (IllegalArgumentException e) {
+                i = -1;
+            }
+        }
+        if(i < 0 || threads < 1 || loadThreads < 1 || cacheSize < 0 || landmarkCount < 0
+                || nodeBudget < 2 || metricsInterval < 0 || generate < 0
+                || maxInFlight < 0 || serve > 65535 || nearest < 0
+                || (nearest > 0 && treeSource == null)
+                || (compile != null || generator != null || serve >= 0
+                    ? i != args.length : args.length - i != 2)) {
             Search.printHelp();
             System.exit(0);
         }
+        if(generator != null) {
+            Search.generateGraph(generator, cityFile, edgeFile, generate);
+            if(compile == null) {
+                return;
+            }
+        }
 
-        new Search(args[0], args[1]).run();
+        Graph graph = snapshot != null ? Search.openSnapshot(snapshot)
+                : Search.loadGraph(cityFile, edgeFile, metric, loadThreads, verbose);
+        if(updateFile != null) {
+            graph = Search.applyUpdate(graph, updateFile);
+        }
+        if(compile != null) {
+            Search.compileSnapshot(graph, compile);
+            return;
+        }
+        if(treeSource != null && graph.indexOf(treeSource) < 0) {
+            System.err.printf("No such city: %s\n", treeSource);
+            System.exit(0);
+        }
+        Search search = serve >= 0 ? new Search(graph, "-", "-", true)
+                : new Search(graph, args[i], args[i + 1], batch || treeSource != null);
+        search.setTreeSource(treeSource);
+        search.setNearest(nearest);
+        search.setThreads(threads);
+        search.setOrdered(ordered);
+        search.setCacheSize(cacheSize);
+        search.setNodeBudget(nodeBudget);
+        search.setFormat(format);
+        if(stats) {
+            SearchStats.setAllocationTracking(true);
+            search.setPrintStats(true);
+        }
+        QueryMetrics queryMetrics = metrics || serve >= 0 ? new QueryMetrics() : null;
+        search.setMetrics(queryMetrics);
+        if(allPairs) {
+            search.setAllPairs(Search.loadAllPairs(graph, allPairsFile, verbose));
+        }
+        if(landmarkCount > 0) {
+            search.setLandmarks(Search.loadLandmarks(graph, landmarkCount, landmarksFile, verbose));
+        }
+        if(contract) {
+            search.setHierarchy(Search.loadHierarchy(graph, hierarchyFile, verbose));
+        }
+        ScheduledExecutorService reporter = metricsInterval > 0
+                ? Search.reportMetrics(queryMetrics, metricsInterval) : null;
+        if(serve >= 0) {
+            try {
+                RouteServer server = search.serve(serve, maxInFlight > 0 ? maxInFlight : 4 * threads);
+                if(metrics) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> Search.printMetrics(queryMetrics)));
+                }
+                System.err.printf("Serving %d cities at http://%s:%d/route\n", graph.size(),
+                        server.getAddress().getHostString(), server.getAddress().getPort());
+            } catch (IOException e) {
+                System.err.printf("IO exception: %s\n", e.getMessage());
+                System.exit(0);
+            }
+            return;
+        }
+        search.run();
+        if(reporter != null) {
+            reporter.shutdownNow();
+        }
+        if(queryMetrics != null) {
+            Search.printMetrics(queryMetrics);
+        }
     }
-}
\ No newline at end of file
+}
@@ -93,10 +93,8 @@ public class City {
         }
         Coordinate extCoords = node.getCoords();
 
-        float lat = (float) Math.pow(this.coords.getY() - extCoords.getY(), 2);
-        float lon = (float) Math.pow(this.coords.getX() - extCoords.getX(), 2);
-
-        return (float) Math.round(Math.sqrt(lat + lon) * 100);
+        return DistanceMetric.EUCLIDEAN.distance(this.coords.getX(), this.coords.getY(),
+                extCoords.getX(), extCoords.getY());
     }
 
     /**
@@ -116,6 +114,16 @@ public class City {
         }
     }
 
+    /**
+     * Hash code consistent with equals, built from the city
+     * and state names.
+     * @return The hash code of the City object.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.name.hashCode() + this.state.hashCode();
+    }
+
     /**
      * Representation of the City object.
      * @return String representation of City "city-name, state".
@@ -0,0 +1,67 @@
+package graph;
+
+/**
+ * The ways of measuring the distance between two coordinates. Each
+ * metric is a primitive kernel on the raw floats, so it can run over
+ * the coordinate arrays of a Graph without touching any objects.
+ * @author Andrew Serra
+ */
+public enum DistanceMetric {
+
+    /**
+     * Straight line distance on the coordinate plane, scaled by 100
+     * and rounded to a whole number. This is the distance the project
+     * has always used for city.dat.
+     */
+    EUCLIDEAN {
+        @Override
+        public float distance(float x1, float y1, float x2, float y2) {
+            float dy = y1 - y2;
+            float dx = x1 - x2;
+            return (float) Math.round(Math.sqrt(dy * dy + dx * dx) * 100);
+        }
+    },
+
+    /**
+     * Great circle distance in miles, reading x as latitude and y as
+     * longitude in degrees.
+     */
+    HAVERSINE {
+        @Override
+        public float distance(float x1, float y1, float x2, float y2) {
+            double lat1 = Math.toRadians(x1);
+            double lat2 = Math.toRadians(x2);
+            double sinLat = Math.sin((lat2 - lat1) / 2);
+            double sinLon = Math.sin(Math.toRadians(y2 - y1) / 2);
+            double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+            return (float) (2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(a))));
+        }
+    };
+
+    private static final double EARTH_RADIUS_MILES = 3958.8;
+
+    /**
+     * Calculates the distance between two points.
+     * @param x1 X coordinate of the first point
+     * @param y1 Y coordinate of the first point
+     * @param x2 X coordinate of the second point
+     * @param y2 Y coordinate of the second point
+     * @return The distance between the points
+     */
+    public abstract float distance(float x1, float y1, float x2, float y2);
+
+    /**
+     * Looks up a metric by name. Case is ignored.
+     * @param name Name of the metric, "euclidean" or "haversine"
+     * @return The matching DistanceMetric
+     * @throws IllegalArgumentException If no metric matches
+     */
+    public static DistanceMetric fromName(String name) throws IllegalArgumentException {
+        for (DistanceMetric metric : values()) {
+            if(metric.name().equalsIgnoreCase(name)) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("No such metric: " + name);
+    }
+}
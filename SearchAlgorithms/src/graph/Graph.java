@@ -0,0 +1,328 @@
+package graph;
+
+import java.util.HashMap;
+
+/**
+ * A compact graph stored in compressed sparse row form. Every city
+ * is interned to an int id, the neighbours of node i are the entries
+ * of targets in the range [offsets[i], offsets[i + 1]), and the edge
+ * weights are stored in parallel to the targets. Each row is also
+ * stored sorted by "city, state" in both directions, so searches never
+ * sort or reorder neighbours themselves. A Graph is immutable and can
+ * be shared by any number of concurrent searches. City objects are only
+ * created as views for input and output.
+ * <p>
+ * A GraphUpdate makes a new version of a graph instead of changing
+ * it. Versions count up from 0 for a loaded graph, and the node ids
+ * of a city stay the same in every later version.
+ * @author Andrew Serra
+ */
+public final class Graph {
+
+    private final String[] names;
+    private final String[] states;
+    private final float[] xs;
+    private final float[] ys;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] weights;
+    private final int[] ascending;
+    private final int[] descending;
+    private final int[] labelRanks;
+    private final HashMap<String, Integer> ids;
+    private final DistanceMetric metric;
+    private final float heuristicScale;
+    private final long version;
+
+    /**
+     * Creates a Graph object. Only the GraphBuilder creates graphs.
+     * @param names City names indexed by node id
+     * @param states State names indexed by node id
+     * @param xs X coordinates indexed by node id
+     * @param ys Y coordinates indexed by node id
+     * @param offsets Start of each node's row in targets, length size + 1
+     * @param targets Neighbour ids of every row
+     * @param weights Edge weights parallel to targets
+     * @param ascending Every row of targets sorted by "city, state"
+     * @param descending Every row of targets in reversed "city, state" order
+     * @param labelRanks Position of each node when sorted by "city, state"
+     * @param ids Lookup from city name to node id
+     * @param metric The metric used for coordinate distances
+     * @param heuristicScale Factor that keeps estimates below edge weights
+     */
+    Graph(String[] names, String[] states, float[] xs, float[] ys,
+          int[] offsets, int[] targets, float[] weights, int[] ascending,
+          int[] descending, int[] labelRanks, HashMap<String, Integer> ids,
+          DistanceMetric metric, float heuristicScale) {
+        this(names, states, xs, ys, offsets, targets, weights, ascending, descending,
+                labelRanks, ids, metric, heuristicScale, 0);
+    }
+
+    /**
+     * Creates a version of a Graph. Only a GraphUpdate creates versions
+     * after the first, and the arrays it did not change are shared with
+     * the previous version. The other parameters are as above.
+     * @param version Number of updates applied since the graph was loaded
+     */
+    Graph(String[] names, String[] states, float[] xs, float[] ys,
+          int[] offsets, int[] targets, float[] weights, int[] ascending,
+          int[] descending, int[] labelRanks, HashMap<String, Integer> ids,
+          DistanceMetric metric, float heuristicScale, long version) {
+        this.names = names;
+        this.states = states;
+        this.xs = xs;
+        this.ys = ys;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.ascending = ascending;
+        this.descending = descending;
+        this.labelRanks = labelRanks;
+        this.ids = ids;
+        this.metric = metric;
+        this.heuristicScale = heuristicScale;
+        this.version = version;
+    }
+
+    /**
+     * Get the number of nodes in the graph.
+     * @return The number of nodes.
+     */
+    public int size() {
+        return this.names.length;
+    }
+
+    /**
+     * Get the number of directed edges in the graph. Every
+     * bidirectional connection is counted twice.
+     * @return The number of directed edges.
+     */
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Looks up the node id of a city name.
+     * @param name Name of the city
+     * @return The node id, or -1 if there is no such city.
+     */
+    public int indexOf(String name) {
+        Integer id = this.ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Getter method for the city name of a node.
+     * @param node Node id
+     * @return The city name as a string
+     */
+    public String getName(int node) {
+        return this.names[node];
+    }
+
+    /**
+     * Getter method for the state name of a node.
+     * @param node Node id
+     * @return The state name as a string
+     */
+    public String getState(int node) {
+        return this.states[node];
+    }
+
+    /**
+     * Getter method for the x coordinate of a node.
+     * @param node Node id
+     * @return X coordinate as a float
+     */
+    public float getX(int node) {
+        return this.xs[node];
+    }
+
+    /**
+     * Getter method for the y coordinate of a node.
+     * @param node Node id
+     * @return Y coordinate as a float
+     */
+    public float getY(int node) {
+        return this.ys[node];
+    }
+
+    /**
+     * Position of the node when all nodes are sorted by their
+     * "city, state" representation. Comparing ranks gives the same
+     * order as comparing City.toString() without building strings.
+     * @param node Node id
+     * @return The rank of the node's label
+     */
+    public int labelRank(int node) {
+        return this.labelRanks[node];
+    }
+
+    /**
+     * Index of the first edge of a node in the edge arrays.
+     * @param node Node id
+     * @return The first edge index of the node
+     */
+    public int firstEdge(int node) {
+        return this.offsets[node];
+    }
+
+    /**
+     * Index one past the last edge of a node in the edge arrays.
+     * @param node Node id
+     * @return The end edge index of the node
+     */
+    public int endEdge(int node) {
+        return this.offsets[node + 1];
+    }
+
+    /**
+     * Get the number of neighbours of a node.
+     * @param node Node id
+     * @return The degree of the node
+     */
+    public int degree(int node) {
+        return this.offsets[node + 1] - this.offsets[node];
+    }
+
+    /**
+     * Getter method for the node at the end of an edge.
+     * @param edge Edge index
+     * @return The target node id
+     */
+    public int getTarget(int edge) {
+        return this.targets[edge];
+    }
+
+    /**
+     * Getter method for the neighbours of a node in increasing
+     * "city, state" order. For edge indexes e from firstEdge(node)
+     * to endEdge(node), the neighbours come out sorted.
+     * @param edge Edge index
+     * @return The neighbour id at that position of the sorted row
+     */
+    public int getAscendingTarget(int edge) {
+        return this.ascending[edge];
+    }
+
+    /**
+     * Getter method for the neighbours of a node in decreasing
+     * "city, state" order. For edge indexes e from firstEdge(node)
+     * to endEdge(node), the neighbours come out sorted.
+     * @param edge Edge index
+     * @return The neighbour id at that position of the sorted row
+     */
+    public int getDescendingTarget(int edge) {
+        return this.descending[edge];
+    }
+
+    /**
+     * Getter method for the weight of an edge.
+     * @param edge Edge index
+     * @return The edge weight
+     */
+    public float getWeight(int edge) {
+        return this.weights[edge];
+    }
+
+    /**
+     * Looks up the weight of the edge between two nodes.
+     * @param a Node id
+     * @param b Node id
+     * @return The edge weight, or NaN if the nodes are not connected
+     */
+    public float weightBetween(int a, int b) {
+        for (int e = this.offsets[a]; e < this.offsets[a + 1]; e++) {
+            if(this.targets[e] == b) {
+                return this.weights[e];
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Getter method for the version of the graph.
+     * @return The number of updates applied since the graph was loaded
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter method for the metric used for coordinate distances.
+     * @return The DistanceMetric of the graph
+     */
+    public DistanceMetric getMetric() {
+        return this.metric;
+    }
+
+    /**
+     * Getter method for the factor applied to distances in estimate.
+     * It is below 1 only when some explicit edge weight is shorter
+     * than the distance between its end points.
+     * @return The heuristic scale, between 0 and 1
+     */
+    public float getHeuristicScale() {
+        return this.heuristicScale;
+    }
+
+    /**
+     * Calculates the coordinate distance between two nodes.
+     * @param a Node id
+     * @param b Node id
+     * @return The distance between the two nodes
+     */
+    public float distance(int a, int b) {
+        return this.metric.distance(this.xs[a], this.ys[a], this.xs[b], this.ys[b]);
+    }
+
+    /**
+     * Estimates the length of the shortest route between two nodes.
+     * Euclidean weights are rounded edge by edge while the estimate is
+     * rounded once, so it may exceed a route by up to half a unit per
+     * edge, and A* may then return a slightly longer route than the
+     * shortest. See isEstimateAdmissible.
+     * @param a Node id
+     * @param b Node id
+     * @return The scaled distance between the two nodes
+     */
+    public float estimate(int a, int b) {
+        return this.heuristicScale
+                * this.metric.distance(this.xs[a], this.ys[a], this.xs[b], this.ys[b]);
+    }
+
+    /**
+     * Checks if estimate never exceeds the length of any route, which
+     * makes A* return shortest routes. That holds for metrics whose
+     * distances are not rounded, since explicit weights shorter than
+     * the distance already lower the heuristic scale.
+     * @return False on Euclidean graphs
+     */
+    public boolean isEstimateAdmissible() {
+        return this.metric != DistanceMetric.EUCLIDEAN;
+    }
+
+    /**
+     * Creates a City view of a node. The view carries no connections.
+     * @param node Node id
+     * @return A City object for the node
+     */
+    public City toCity(int node) {
+        return new City(this.names[node], this.states[node],
+                new Coordinate(this.xs[node], this.ys[node]));
+    }
+
+    // Raw arrays for GraphSnapshot and GraphUpdate, which must not modify them
+
+    String[] names() { return this.names; }
+    String[] states() { return this.states; }
+    float[] xs() { return this.xs; }
+    float[] ys() { return this.ys; }
+    int[] offsets() { return this.offsets; }
+    int[] targets() { return this.targets; }
+    float[] weights() { return this.weights; }
+    int[] ascending() { return this.ascending; }
+    int[] descending() { return this.descending; }
+    int[] labelRanks() { return this.labelRanks; }
+    HashMap<String, Integer> ids() { return this.ids; }
+}
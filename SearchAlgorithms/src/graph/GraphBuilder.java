@@ -0,0 +1,288 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Collects cities and bidirectional edges and builds a compact
+ * Graph from them. Cities are interned to int ids in the order
+ * they are added. Edges either carry an explicit weight or are
+ * weighted by the distance metric once, when the graph is built.
+ * @author Andrew Serra
+ */
+public class GraphBuilder {
+
+    private final DistanceMetric metric;
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private String[] states = new String[16];
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private int nodeCount = 0;
+
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private float[] edgeWeight = new float[16];
+    private int edgeCount = 0;
+
+    /**
+     * Creates a GraphBuilder object that uses the Euclidean metric.
+     */
+    public GraphBuilder() {
+        this(DistanceMetric.EUCLIDEAN);
+    }
+
+    /**
+     * Creates a GraphBuilder object.
+     * @param metric The metric used for edge weights and estimates
+     */
+    public GraphBuilder(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Adds a city to the graph. Adding a city name twice replaces
+     * the previous state and coordinates.
+     * @param name String of the name of the city
+     * @param state String of the name of the state
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return The node id of the city
+     */
+    public int addCity(String name, String state, float x, float y) {
+        Integer existing = this.ids.get(name);
+        int id;
+        if(existing != null) {
+            id = existing;
+        } else {
+            if(this.nodeCount == this.names.length) {
+                int capacity = this.nodeCount * 2;
+                this.names = Arrays.copyOf(this.names, capacity);
+                this.states = Arrays.copyOf(this.states, capacity);
+                this.xs = Arrays.copyOf(this.xs, capacity);
+                this.ys = Arrays.copyOf(this.ys, capacity);
+            }
+            id = this.nodeCount++;
+            this.ids.put(name, id);
+            this.names[id] = name;
+        }
+        this.states[id] = state;
+        this.xs[id] = x;
+        this.ys[id] = y;
+        return id;
+    }
+
+    /**
+     * Creates a bidirectional edge between two cities.
+     * @param name1 Name of the first city
+     * @param name2 Name of the second city
+     * @throws IllegalArgumentException If either city was not added
+     */
+    public void addEdge(String name1, String name2) throws IllegalArgumentException {
+        this.addEdge(name1, name2, Float.NaN);
+    }
+
+    /**
+     * Creates a bidirectional edge between two cities.
+     * @param name1 Name of the first city
+     * @param name2 Name of the second city
+     * @param weight Weight of the edge, or NaN to use the metric
+     * @throws IllegalArgumentException If either city was not added
+     *                                  or the weight is negative
+     */
+    public void addEdge(String name1, String name2, float weight) throws IllegalArgumentException {
+        Integer node1 = this.ids.get(name1);
+        Integer node2 = this.ids.get(name2);
+        if(node1 == null) {
+            throw new IllegalArgumentException("No such city: " + name1);
+        } else if(node2 == null) {
+            throw new IllegalArgumentException("No such city: " + name2);
+        }
+        this.addEdge(node1, node2, weight);
+    }
+
+    /**
+     * Creates a bidirectional edge between two node ids.
+     * @param node1 Id of the first city
+     * @param node2 Id of the second city
+     */
+    public void addEdge(int node1, int node2) {
+        this.addEdge(node1, node2, Float.NaN);
+    }
+
+    /**
+     * Creates a bidirectional edge between two node ids.
+     * @param node1 Id of the first city
+     * @param node2 Id of the second city
+     * @param weight Weight of the edge, or NaN to use the metric
+     * @throws IllegalArgumentException If the weight is negative
+     */
+    public void addEdge(int node1, int node2, float weight) throws IllegalArgumentException {
+        if(weight < 0) {
+            throw new IllegalArgumentException("Negative edge weight: " + weight);
+        }
+        if(this.edgeCount + 2 > this.edgeFrom.length) {
+            int capacity = this.edgeFrom.length * 2;
+            this.edgeFrom = Arrays.copyOf(this.edgeFrom, capacity);
+            this.edgeTo = Arrays.copyOf(this.edgeTo, capacity);
+            this.edgeWeight = Arrays.copyOf(this.edgeWeight, capacity);
+        }
+        this.edgeFrom[this.edgeCount] = node1;
+        this.edgeTo[this.edgeCount] = node2;
+        this.edgeWeight[this.edgeCount++] = weight;
+        this.edgeFrom[this.edgeCount] = node2;
+        this.edgeTo[this.edgeCount] = node1;
+        this.edgeWeight[this.edgeCount++] = weight;
+    }
+
+    /**
+     * Builds the compact graph. Duplicate edges are dropped, keeping
+     * the first weight, and each row keeps the order in which its edges
+     * were added.
+     * @return The Graph object
+     */
+    public Graph build() {
+        int n = this.nodeCount;
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < this.edgeCount; i++) {
+            offsets[this.edgeFrom[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] targets = new int[this.edgeCount];
+        float[] weights = new float[this.edgeCount];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < this.edgeCount; i++) {
+            int slot = fill[this.edgeFrom[i]]++;
+            targets[slot] = this.edgeTo[i];
+            weights[slot] = this.edgeWeight[i];
+        }
+
+        // Compact each row in place, dropping repeated targets
+        int[] seen = new int[n];
+        Arrays.fill(seen, -1);
+        int write = 0;
+        int rowStart = 0;
+        for (int node = 0; node < n; node++) {
+            int rowEnd = offsets[node + 1];
+            offsets[node] = write;
+            for (int e = rowStart; e < rowEnd; e++) {
+                int target = targets[e];
+                if(seen[target] != node) {
+                    seen[target] = node;
+                    weights[write] = weights[e];
+                    targets[write++] = target;
+                }
+            }
+            rowStart = rowEnd;
+        }
+        offsets[n] = write;
+        targets = Arrays.copyOf(targets, write);
+        weights = Arrays.copyOf(weights, write);
+
+        String[] names = Arrays.copyOf(this.names, n);
+        String[] states = Arrays.copyOf(this.states, n);
+        float[] xs = Arrays.copyOf(this.xs, n);
+        float[] ys = Arrays.copyOf(this.ys, n);
+
+        // Fill in the metric weights and find how far explicit
+        // weights undercut the metric, to keep estimates below them
+        float heuristicScale = 1;
+        for (int node = 0; node < n; node++) {
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                int target = targets[e];
+                float distance = this.metric.distance(xs[node], ys[node], xs[target], ys[target]);
+                if(Float.isNaN(weights[e])) {
+                    weights[e] = distance;
+                } else if(weights[e] < distance) {
+                    heuristicScale = Math.min(heuristicScale, weights[e] / distance);
+                }
+            }
+        }
+
+        int[] ranks = labelRanks(names, states);
+        int[] ascending = sortRows(offsets, targets, ranks);
+        int[] descending = new int[write];
+        for (int node = 0; node < n; node++) {
+            int first = offsets[node];
+            int last = offsets[node + 1] - 1;
+            for (int e = first; e <= last; e++) {
+                descending[e] = ascending[first + last - e];
+            }
+        }
+
+        return new Graph(names, states, xs, ys, offsets, targets, weights,
+                ascending, descending, ranks, new HashMap<>(this.ids),
+                this.metric, heuristicScale);
+    }
+
+    /**
+     * Sorts every row of the targets by the rank of the target. Edges
+     * are bucketed by rank and then dealt out to their rows, which
+     * takes O(V + E) time for the whole graph.
+     * @param offsets Start of each row
+     * @param targets Targets of every row
+     * @param ranks Rank of every node
+     * @return A copy of targets with every row sorted
+     */
+    private static int[] sortRows(int[] offsets, int[] targets, int[] ranks) {
+        int n = ranks.length;
+        int[] byRank = new int[n];
+        for (int node = 0; node < n; node++) {
+            byRank[ranks[node]] = node;
+        }
+
+        // Count sort the edges by the rank of their target
+        int[] rankStart = new int[n + 1];
+        for (int target : targets) {
+            rankStart[ranks[target] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            rankStart[i + 1] += rankStart[i];
+        }
+        int[] sources = new int[targets.length];
+        for (int node = 0; node < n; node++) {
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                sources[rankStart[ranks[targets[e]]]++] = node;
+            }
+        }
+
+        // Walk the edges in target rank order and append to each row
+        int[] sorted = new int[targets.length];
+        int[] fill = Arrays.copyOf(offsets, n);
+        int e = 0;
+        for (int rank = 0; rank < n; rank++) {
+            int target = byRank[rank];
+            for (; e < rankStart[rank]; e++) {
+                sorted[fill[sources[e]]++] = target;
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Ranks the nodes by their "city, state" representation.
+     * @param names City names indexed by node id
+     * @param states State names indexed by node id
+     * @return The rank of every node
+     */
+    private static int[] labelRanks(String[] names, String[] states) {
+        int n = names.length;
+        String[] labels = new String[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = names[i] + ", " + states[i];
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> labels[a].compareTo(labels[b]));
+
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[order[i]] = i;
+        }
+        return ranks;
+    }
+}
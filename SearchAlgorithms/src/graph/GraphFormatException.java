@@ -0,0 +1,44 @@
+package graph;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a city or edge file cannot be parsed. The message
+ * names the file and the line the problem was found on.
+ * @author Andrew Serra
+ */
+public class GraphFormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String file;
+    private final long lineNumber;
+
+    /**
+     * Creates a GraphFormatException object.
+     * @param file Name of the file being read
+     * @param lineNumber Line of the problem, starting at 1
+     * @param message Description of the problem
+     */
+    public GraphFormatException(String file, long lineNumber, String message) {
+        super(file + ":" + lineNumber + ": " + message);
+        this.file = file;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Getter method for the file name.
+     * @return The name of the file being read
+     */
+    public String getFile() {
+        return this.file;
+    }
+
+    /**
+     * Getter method for the line number.
+     * @return The line of the problem, starting at 1
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+}
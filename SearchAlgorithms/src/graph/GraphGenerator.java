@@ -0,0 +1,546 @@
+package graph;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible road-like graphs for load tests and
+ * benchmarks. The same seed and settings always give the same graph.
+ * <p>
+ * Every city draws its degree uniformly from degree - spread to
+ * degree + spread. A grid graph places the cities on a jittered
+ * square grid, and every city links half of its degree to its
+ * right, lower, lower right and lower left neighbours, in that order,
+ * so a degree of 4 gives a full grid and smaller degrees give dead
+ * ends. A geometric graph scatters the cities uniformly and links
+ * every city to its nearest neighbours that still have room, found
+ * in a bucket grid with about two cities per cell. Either way the
+ * average degree is close to the one asked for. When the graph must
+ * be connected, the pieces are joined by linking cities that follow
+ * each other in a snake walk of the grid cells and lie in different
+ * pieces, which adds only short edges.
+ * <p>
+ * With the Euclidean metric the cities lie 1 apart on average, so
+ * edges weigh about 100. With the haversine metric they are spread
+ * over the box of latitudes 25 to 49 and longitudes 67 to 125.
+ * Cities are named "N" and their id. The state is made of two
+ * letters for the row and column of the region the city lies in.
+ * <p>
+ * The generator holds the coordinates and a few ints per city, so
+ * writing the text files of tens of millions of cities needs only a
+ * few hundred megabytes. Building a Graph in memory needs as much as
+ * the Graph itself.
+ * @author Andrew Serra
+ */
+public class GraphGenerator {
+
+    /**
+     * The layouts the generator can produce.
+     */
+    public enum Shape {
+        GRID,
+        GEOMETRIC;
+
+        /**
+         * Looks up a shape by name. Case is ignored.
+         * @param name Name of the shape, "grid" or "geometric"
+         * @return The matching Shape
+         * @throws IllegalArgumentException If no shape matches
+         */
+        public static Shape fromName(String name) throws IllegalArgumentException {
+            for (Shape shape : values()) {
+                if(shape.name().equalsIgnoreCase(name)) {
+                    return shape;
+                }
+            }
+            throw new IllegalArgumentException("No such shape: " + name);
+        }
+    }
+
+    /**
+     * Receiver of the generated edges.
+     */
+    private interface EdgeSink {
+        void accept(int a, int b) throws IOException;
+    }
+
+    public static final int MAX_DEGREE = 16;
+
+    private static final float EUCLIDEAN_SPACING = 1;
+    private static final float MIN_LATITUDE = 25;
+    private static final float MAX_LATITUDE = 49;
+    private static final float MIN_LONGITUDE = 67;
+    private static final float MAX_LONGITUDE = 125;
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    private final int nodes;
+    private Shape shape = Shape.GRID;
+    private DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+    private long seed = 630;
+    private int degree = 4;
+    private int spread = 0;
+    private boolean connected = true;
+
+    private float[] xs;
+    private float[] ys;
+    private int side;
+    private int[] cellStart;
+    private int[] cellNodes;
+    private int[] components;
+
+    /**
+     * Creates a GraphGenerator object.
+     * @param nodes Number of cities, at least 1
+     * @throws IllegalArgumentException If the number of cities is below 1
+     */
+    public GraphGenerator(int nodes) throws IllegalArgumentException {
+        if(nodes < 1) {
+            throw new IllegalArgumentException("A graph needs at least 1 city.");
+        }
+        this.nodes = nodes;
+    }
+
+    /**
+     * Sets the layout of the cities.
+     * @param shape GRID or GEOMETRIC
+     */
+    public void setShape(Shape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Sets the metric the coordinates are laid out for.
+     * @param metric The metric of the graph
+     */
+    public void setMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Sets the seed of the random layout.
+     * @param seed Any number
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the average degree and how far the degree of a single
+     * city may differ from it. A grid has room for a degree of 8.
+     * @param degree Average number of neighbours, 1 to MAX_DEGREE
+     * @param spread Largest difference from the average, at most degree - 1
+     * @throws IllegalArgumentException If the degree or spread is out of range
+     */
+    public void setDegree(int degree, int spread) throws IllegalArgumentException {
+        if(degree < 1 || degree > MAX_DEGREE || spread < 0 || degree - spread < 1
+                || degree + spread > MAX_DEGREE) {
+            throw new IllegalArgumentException("Degree must be between 1 and " + MAX_DEGREE + ".");
+        }
+        this.degree = degree;
+        this.spread = spread;
+    }
+
+    /**
+     * Sets whether the pieces of the graph are joined into one.
+     * @param connected True for a connected graph
+     */
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    /**
+     * Generates the graph in memory.
+     * @return The Graph object
+     */
+    public Graph generate() {
+        this.layout();
+        GraphBuilder builder = new GraphBuilder(this.metric);
+        for (int node = 0; node < this.nodes; node++) {
+            builder.addCity(name(node), this.state(node), this.cityX(node), this.cityY(node));
+        }
+        try {
+            this.link(builder::addEdge);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.release();
+        return builder.build();
+    }
+
+    /**
+     * Writes the graph as a tab separated city file and edge file
+     * without building it in memory. The edge file holds no weights,
+     * so the metric weighs the edges when the files are loaded.
+     * @param cityFile Path of the city file
+     * @param edgeFile Path of the edge file
+     * @throws IOException If a file cannot be written
+     */
+    public void write(Path cityFile, Path edgeFile) throws IOException {
+        this.layout();
+        try ( BufferedWriter cities = new BufferedWriter(
+                Files.newBufferedWriter(cityFile, StandardCharsets.UTF_8), BUFFER_CHARS); ) {
+            StringBuilder line = new StringBuilder(64);
+            for (int node = 0; node < this.nodes; node++) {
+                line.setLength(0);
+                line.append('N').append(node).append('\t').append(this.state(node))
+                        .append('\t').append(this.cityX(node)).append('\t').append(this.cityY(node)).append('\n');
+                cities.append(line);
+            }
+        }
+        try ( BufferedWriter edges = new BufferedWriter(
+                Files.newBufferedWriter(edgeFile, StandardCharsets.UTF_8), BUFFER_CHARS); ) {
+            StringBuilder line = new StringBuilder(32);
+            this.link((a, b) -> {
+                line.setLength(0);
+                line.append('N').append(a).append("\tN").append(b).append('\n');
+                edges.append(line);
+            });
+        }
+        this.release();
+    }
+
+    /**
+     * Name of a generated city.
+     * @param node Node id
+     * @return The city name
+     */
+    public static String name(int node) {
+        return "N" + node;
+    }
+
+    /**
+     * Places the cities in the unit square and buckets them into
+     * grid cells. The coordinates are scaled for the metric only when
+     * they are written.
+     */
+    private void layout() {
+        SplittableRandom random = new SplittableRandom(this.seed);
+        this.xs = new float[this.nodes];
+        this.ys = new float[this.nodes];
+        if(this.shape == Shape.GRID) {
+            this.side = (int) Math.ceil(Math.sqrt(this.nodes));
+            for (int node = 0; node < this.nodes; node++) {
+                this.xs[node] = (node / this.side + 0.2f + 0.6f * (float) random.nextDouble()) / this.side;
+                this.ys[node] = (node % this.side + 0.2f + 0.6f * (float) random.nextDouble()) / this.side;
+            }
+        } else {
+            this.side = Math.max(1, (int) Math.sqrt(this.nodes / 2.0));
+            for (int node = 0; node < this.nodes; node++) {
+                this.xs[node] = (float) random.nextDouble();
+                this.ys[node] = (float) random.nextDouble();
+            }
+            this.bucket();
+        }
+    }
+
+    /**
+     * Scales the x coordinate of a city from the unit square to the
+     * metric.
+     * @param node Node id
+     * @return The x coordinate, or latitude
+     */
+    private float cityX(int node) {
+        if(this.metric == DistanceMetric.HAVERSINE) {
+            return MIN_LATITUDE + this.xs[node] * (MAX_LATITUDE - MIN_LATITUDE);
+        }
+        return this.xs[node] * (float) Math.sqrt(this.nodes) * EUCLIDEAN_SPACING;
+    }
+
+    /**
+     * Scales the y coordinate of a city from the unit square to the
+     * metric.
+     * @param node Node id
+     * @return The y coordinate, or longitude
+     */
+    private float cityY(int node) {
+        if(this.metric == DistanceMetric.HAVERSINE) {
+            return MIN_LONGITUDE + this.ys[node] * (MAX_LONGITUDE - MIN_LONGITUDE);
+        }
+        return this.ys[node] * (float) Math.sqrt(this.nodes) * EUCLIDEAN_SPACING;
+    }
+
+    /**
+     * Sorts the cities of a geometric graph by cell with a counting
+     * sort.
+     */
+    private void bucket() {
+        int cells = this.side * this.side;
+        this.cellStart = new int[cells + 1];
+        int[] cellOf = new int[this.nodes];
+        for (int node = 0; node < this.nodes; node++) {
+            cellOf[node] = this.cellOf(this.xs[node], this.ys[node]);
+            this.cellStart[cellOf[node] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+        this.cellNodes = new int[this.nodes];
+        int[] fill = Arrays.copyOf(this.cellStart, cells);
+        for (int node = 0; node < this.nodes; node++) {
+            this.cellNodes[fill[cellOf[node]]++] = node;
+        }
+    }
+
+    private int cellOf(float x, float y) {
+        int row = Math.min(this.side - 1, (int) (x * this.side));
+        int col = Math.min(this.side - 1, (int) (y * this.side));
+        return row * this.side + col;
+    }
+
+    /**
+     * Generates every edge once and passes it to the sink, joining
+     * the pieces of the graph at the end if asked to.
+     * @param sink Receiver of the edges
+     * @throws IOException If the sink fails
+     */
+    private void link(EdgeSink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(this.seed ^ 0x5DEECE66DL);
+        if(this.connected) {
+            this.components = new int[this.nodes];
+            for (int node = 0; node < this.nodes; node++) {
+                this.components[node] = node;
+            }
+        }
+
+        if(this.shape == Shape.GRID) {
+            this.linkGrid(sink, random);
+        } else {
+            this.linkNearest(sink, random);
+        }
+
+        if(this.connected) {
+            this.join(sink);
+        }
+    }
+
+    /**
+     * Draws the degree of a city.
+     * @param random The random source
+     * @return A degree from degree - spread to degree + spread
+     */
+    private int drawDegree(SplittableRandom random) {
+        return this.degree - this.spread + random.nextInt(2 * this.spread + 1);
+    }
+
+    /**
+     * Links every grid city to half of its degree of right, lower,
+     * lower right and lower left neighbours, rounding odd degrees up
+     * or down at random. The other half comes from the cities above
+     * and to the left.
+     * @param sink Receiver of the edges
+     * @param random The random source
+     * @throws IOException If the sink fails
+     */
+    private void linkGrid(EdgeSink sink, SplittableRandom random) throws IOException {
+        int[] candidates = new int[4];
+        for (int node = 0; node < this.nodes; node++) {
+            int d = this.drawDegree(random);
+            int links = d / 2 + (d % 2 == 1 && random.nextBoolean() ? 1 : 0);
+            int col = node % this.side;
+            candidates[0] = col + 1 < this.side ? node + 1 : -1;
+            candidates[1] = node + this.side;
+            candidates[2] = col + 1 < this.side ? node + this.side + 1 : -1;
+            candidates[3] = col > 0 ? node + this.side - 1 : -1;
+            for (int i = 0; i < candidates.length && links > 0; i++) {
+                if(candidates[i] >= 0 && candidates[i] < this.nodes) {
+                    this.emit(sink, node, candidates[i]);
+                    links--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Links the cities of a geometric graph to their nearest
+     * neighbours. Every city draws its degree first. The cities are
+     * then visited cell by cell, and each links to its nearest
+     * cities that are not linked to it yet and still have room, until
+     * its own degree is reached. A city whose neighbours are all full
+     * keeps a smaller degree.
+     * @param sink Receiver of the edges
+     * @param random The random source
+     * @throws IOException If the sink fails
+     */
+    private void linkNearest(EdgeSink sink, SplittableRandom random) throws IOException {
+        int most = this.degree + this.spread;
+        byte[] target = new byte[this.nodes];
+        for (int node = 0; node < this.nodes; node++) {
+            target[node] = (byte) this.drawDegree(random);
+        }
+        byte[] count = new byte[this.nodes];
+        int[] adjacent = new int[this.nodes * most];
+
+        int[] best = new int[2 * MAX_DEGREE];
+        float[] bestDist = new float[2 * MAX_DEGREE];
+        for (int i = 0; i < this.nodes; i++) {
+            int node = this.cellNodes[i];
+            if(count[node] >= target[node]) {
+                continue;
+            }
+            int found = this.nearest(node, Math.min(2 * most, this.nodes - 1), best, bestDist);
+            for (int j = 0; j < found && count[node] < target[node]; j++) {
+                int other = best[j];
+                if(count[other] >= target[other]
+                        || contains(adjacent, node * most, count[node], other)) {
+                    continue;
+                }
+                adjacent[node * most + count[node]++] = other;
+                adjacent[other * most + count[other]++] = node;
+                this.emit(sink, node, other);
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int from, int length, int value) {
+        for (int i = from; i < from + length; i++) {
+            if(values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the nearest cities of a city, searching rings of cells
+     * around its own until no closer city can be left.
+     * @param node Node id
+     * @param k Number of cities to find
+     * @param best Receives the cities, nearest first
+     * @param bestDist Receives their squared distances
+     * @return The number of cities found
+     */
+    private int nearest(int node, int k, int[] best, float[] bestDist) {
+        float x = this.xs[node];
+        float y = this.ys[node];
+        int row = Math.min(this.side - 1, (int) (x * this.side));
+        int col = Math.min(this.side - 1, (int) (y * this.side));
+        int found = 0;
+        for (int ring = 0; ring < this.side && k > 0; ring++) {
+            // Cities not searched yet are at least ring - 1 cells away
+            float reach = (float) Math.max(0, ring - 1) / this.side;
+            if(found == k && bestDist[found - 1] <= reach * reach) {
+                break;
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                if(r < 0 || r >= this.side) {
+                    continue;
+                }
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = col - ring; c <= col + ring; c += edgeRow ? 1 : 2 * ring) {
+                    if(c < 0 || c >= this.side) {
+                        continue;
+                    }
+                    int cell = r * this.side + c;
+                    for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+                        int other = this.cellNodes[i];
+                        if(other == node) {
+                            continue;
+                        }
+                        float dx = this.xs[other] - x;
+                        float dy = this.ys[other] - y;
+                        float dist = dx * dx + dy * dy;
+                        if(found < k || dist < bestDist[found - 1]) {
+                            // Insert into the sorted list of the k nearest
+                            int j = found < k ? found++ : found - 1;
+                            while (j > 0 && bestDist[j - 1] > dist) {
+                                best[j] = best[j - 1];
+                                bestDist[j] = bestDist[j - 1];
+                                j--;
+                            }
+                            best[j] = other;
+                            bestDist[j] = dist;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private void emit(EdgeSink sink, int a, int b) throws IOException {
+        if(a == b) {
+            return;
+        }
+        if(this.components != null) {
+            this.union(a, b);
+        }
+        sink.accept(a, b);
+    }
+
+    /**
+     * Joins the pieces of the graph. The cells are walked in a snake
+     * order, so consecutive cities are close to each other, and two
+     * consecutive cities in different pieces are linked.
+     * @param sink Receiver of the edges
+     * @throws IOException If the sink fails
+     */
+    private void join(EdgeSink sink) throws IOException {
+        int prev = -1;
+        for (int row = 0; row < this.side; row++) {
+            for (int i = 0; i < this.side; i++) {
+                int col = row % 2 == 0 ? i : this.side - 1 - i;
+                int cell = row * this.side + col;
+                if(this.shape == Shape.GRID) {
+                    if(cell < this.nodes) {
+                        prev = this.joinTo(sink, prev, cell);
+                    }
+                } else {
+                    for (int j = this.cellStart[cell]; j < this.cellStart[cell + 1]; j++) {
+                        prev = this.joinTo(sink, prev, this.cellNodes[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    private int joinTo(EdgeSink sink, int prev, int node) throws IOException {
+        if(prev >= 0 && this.find(prev) != this.find(node)) {
+            this.emit(sink, prev, node);
+        }
+        return node;
+    }
+
+    private int find(int node) {
+        while (this.components[node] != node) {
+            // Path halving keeps the trees flat
+            this.components[node] = this.components[this.components[node]];
+            node = this.components[node];
+        }
+        return node;
+    }
+
+    private void union(int a, int b) {
+        int ra = this.find(a);
+        int rb = this.find(b);
+        if(ra != rb) {
+            this.components[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    /**
+     * The region a city lies in, as two letters.
+     * @param node Node id
+     * @return The state of the city
+     */
+    private String state(int node) {
+        char row = (char) ('A' + Math.min(25, (int) (this.xs[node] * 26)));
+        char col = (char) ('A' + Math.min(25, (int) (this.ys[node] * 26)));
+        return new String(new char[] { row, col });
+    }
+
+    /**
+     * Drops the working arrays once the edges are written.
+     */
+    private void release() {
+        this.xs = null;
+        this.ys = null;
+        this.cellStart = null;
+        this.cellNodes = null;
+        this.components = null;
+    }
+}
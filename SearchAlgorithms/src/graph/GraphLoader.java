@@ -0,0 +1,597 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streams a city file and an edge file into a Graph. Lines are
+ * tokenized directly on the bytes read from the file, so no String is
+ * created for an edge field or a coordinate, and numbers are parsed
+ * without going through Float.parseFloat. Large files can be split
+ * into chunks at line boundaries that are parsed on several threads
+ * and then merged in file order, so the result is the same for any
+ * number of threads.
+ * <p>
+ * A city line holds "name state x y", any further columns are
+ * ignored. An edge line holds "name name" and optionally a third
+ * column with the weight of the edge. Edges without a weight are
+ * weighted by the distance metric. Blank lines are skipped.
+ * Any other line is reported as a GraphFormatException carrying the
+ * line number.
+ * @author Andrew Serra
+ */
+public class GraphLoader {
+
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final long MIN_SPLIT_BYTES = 4L << 20;
+    private static final int MAX_TOKENS = 8;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Path cityFile;
+    private final Path edgeFile;
+    private int threads = 1;
+    private DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+    private long bytesRead = 0;
+    private long loadNanos = 0;
+
+    /**
+     * Creates a GraphLoader object.
+     * @param cityFile Path of the city file
+     * @param edgeFile Path of the edge file
+     */
+    public GraphLoader(Path cityFile, Path edgeFile) {
+        this.cityFile = cityFile;
+        this.edgeFile = edgeFile;
+    }
+
+    /**
+     * Sets the number of threads used to parse each file. Files
+     * smaller than a few megabytes are always parsed on one thread.
+     * @param threads Number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the metric used for edge weights and A* estimates.
+     * @param metric The DistanceMetric of the loaded graph
+     */
+    public void setMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Getter method for the size of the files read by the last load.
+     * @return The number of bytes read
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    /**
+     * Getter method for the duration of the last load.
+     * @return The load time in nanoseconds
+     */
+    public long getLoadNanos() {
+        return this.loadNanos;
+    }
+
+    /**
+     * Calculates the read throughput of the last load.
+     * @return The throughput in megabytes per second
+     */
+    public double getThroughput() {
+        if(this.loadNanos == 0) {
+            return 0;
+        }
+        return (this.bytesRead / (1024.0 * 1024.0)) / (this.loadNanos / 1e9);
+    }
+
+    /**
+     * Reads both files and builds the graph.
+     * @return The Graph object
+     * @throws GraphFormatException If a line cannot be parsed
+     * @throws IOException If a file cannot be read
+     */
+    public Graph load() throws IOException {
+        long start = System.nanoTime();
+        ExecutorService pool = null;
+        if(this.threads > 1) {
+            pool = Executors.newFixedThreadPool(this.threads, r -> {
+                Thread t = new Thread(r, "graph-loader");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        try ( FileChannel cities = FileChannel.open(this.cityFile, StandardOpenOption.READ);
+              FileChannel edges = FileChannel.open(this.edgeFile, StandardOpenOption.READ); ) {
+            GraphBuilder builder = new GraphBuilder(this.metric);
+            NameTable table = new NameTable();
+
+            List<CityChunk> cityChunks = new ArrayList<>();
+            long[] bounds = this.split(cities);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                cityChunks.add(new CityChunk(cities, bounds[i], bounds[i + 1]));
+            }
+            execute(pool, cityChunks);
+            checkErrors(this.cityFile, cityChunks);
+            for (CityChunk chunk : cityChunks) {
+                for (int i = 0; i < chunk.count; i++) {
+                    int id = builder.addCity(chunk.names[i], chunk.states[i], chunk.xs[i], chunk.ys[i]);
+                    table.put(chunk.names[i].getBytes(StandardCharsets.UTF_8), id);
+                }
+            }
+
+            List<EdgeChunk> edgeChunks = new ArrayList<>();
+            bounds = this.split(edges);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                edgeChunks.add(new EdgeChunk(edges, bounds[i], bounds[i + 1], table));
+            }
+            execute(pool, edgeChunks);
+            checkErrors(this.edgeFile, edgeChunks);
+            for (EdgeChunk chunk : edgeChunks) {
+                for (int i = 0; i < chunk.count; i++) {
+                    builder.addEdge(chunk.from[i], chunk.to[i], chunk.weights[i]);
+                }
+            }
+
+            Graph graph = builder.build();
+            this.bytesRead = cities.size() + edges.size();
+            this.loadNanos = System.nanoTime() - start;
+            return graph;
+        } finally {
+            if(pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Splits a file into one byte range per thread. Every range
+     * starts at the beginning of a line.
+     * @param channel The file to split
+     * @return The range boundaries, starting at 0 and ending at the size
+     * @throws IOException If the file cannot be read
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parts = (int) Math.max(1, Math.min(this.threads, size / MIN_SPLIT_BYTES));
+        long[] bounds = new long[parts + 1];
+        bounds[parts] = size;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (int k = 1; k < parts; k++) {
+            // Move the guess forward to the first byte after a newline
+            long position = Math.max(bounds[k - 1], size / parts * k) - 1;
+            long boundary = size;
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if(read <= 0) {
+                    break;
+                }
+                int i = 0;
+                while (i < read && buffer.get(i) != '\n') {
+                    i++;
+                }
+                if(i < read) {
+                    boundary = position + i + 1;
+                    break;
+                }
+                position += read;
+            }
+            bounds[k] = boundary;
+        }
+        return bounds;
+    }
+
+    /**
+     * Parses all chunks, on the pool if there is one.
+     * @param pool Worker threads, or null to parse on this thread
+     * @param chunks The chunks to parse
+     * @throws IOException If a file cannot be read
+     */
+    private static void execute(ExecutorService pool, List<? extends Chunk> chunks)
+            throws IOException {
+        if(pool == null || chunks.size() == 1) {
+            for (Chunk chunk : chunks) {
+                chunk.call();
+            }
+            return;
+        }
+
+        List<Future<Chunk>> futures = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            futures.add(pool.submit(chunk));
+        }
+        try {
+            for (Future<Chunk> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading graph.", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Throws the first error of the chunks in file order. The line
+     * number of an error is offset by the lines of earlier chunks.
+     * @param file The file the chunks were read from
+     * @param chunks The parsed chunks
+     * @throws GraphFormatException If any chunk found an error
+     */
+    private static void checkErrors(Path file, List<? extends Chunk> chunks)
+            throws GraphFormatException {
+        long lines = 0;
+        for (Chunk chunk : chunks) {
+            if(chunk.error != null) {
+                throw new GraphFormatException(file.toString(), lines + chunk.errorLine, chunk.error);
+            }
+            lines += chunk.lines;
+        }
+    }
+
+    /**
+     * Parses a decimal number from bytes. Numbers with up to 18
+     * significant digits and small exponents are computed directly,
+     * anything else falls back to Float.parseFloat.
+     * @param bytes The bytes holding the number
+     * @param start Index of the first byte
+     * @param end Index one past the last byte
+     * @return The parsed number
+     * @throws NumberFormatException If the bytes are not a number
+     */
+    static float parseFloat(byte[] bytes, int start, int end) throws NumberFormatException {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i++] == '-';
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            anyDigits = true;
+            if(mantissa != 0 || bytes[i] != '0') {
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+                significant++;
+            }
+        }
+        if(i < end && bytes[i] == '.') {
+            for (i++; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                anyDigits = true;
+                if(mantissa != 0 || bytes[i] != '0') {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    significant++;
+                }
+                exponent--;
+            }
+        }
+        if(anyDigits && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if(j < end && (bytes[j] == '-' || bytes[j] == '+')) {
+                negativeExponent = bytes[j++] == '-';
+            }
+            int value = 0;
+            int digits = 0;
+            for (; j < end && bytes[j] >= '0' && bytes[j] <= '9' && digits < 9; j++, digits++) {
+                value = value * 10 + (bytes[j] - '0');
+            }
+            if(digits > 0) {
+                exponent += negativeExponent ? -value : value;
+                i = j;
+            }
+        }
+
+        if(!anyDigits || i != end || significant > 18
+                || exponent < -22 || exponent > 22 || mantissa >= (1L << 53)) {
+            return Float.parseFloat(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+        }
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+        return (float) (negative ? -value : value);
+    }
+
+    /**
+     * Thrown by a chunk when a line cannot be parsed.
+     */
+    private static class LineException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        LineException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * A byte range of a file that is read and tokenized line by line.
+     * A chunk stops at its first bad line and records the error with
+     * the line number relative to the start of the chunk.
+     */
+    private abstract static class Chunk implements Callable<Chunk> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        protected final int[] tokenStart = new int[MAX_TOKENS];
+        protected final int[] tokenEnd = new int[MAX_TOKENS];
+        long lines = 0;
+        long errorLine = 0;
+        String error = null;
+
+        Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parses one tokenized line.
+         * @param line The buffer holding the line
+         * @param tokens Number of tokens on the line, may exceed MAX_TOKENS
+         * @throws LineException If the line is malformed
+         */
+        protected abstract void parse(byte[] line, int tokens) throws LineException;
+
+        @Override
+        public Chunk call() throws IOException {
+            byte[] buffer = new byte[(int) Math.min(CHUNK_BYTES, Math.max(16, this.end - this.start))];
+            long position = this.start;
+            int carry = 0;
+            try {
+                while (position < this.end) {
+                    int want = (int) Math.min(buffer.length - carry, this.end - position);
+                    int read = this.channel.read(ByteBuffer.wrap(buffer, carry, want), position);
+                    if(read < 0) {
+                        break;
+                    }
+                    position += read;
+                    int filled = carry + read;
+                    int lineStart = 0;
+                    for (int i = 0; i < filled; i++) {
+                        if(buffer[i] == '\n') {
+                            this.line(buffer, lineStart, i);
+                            lineStart = i + 1;
+                        }
+                    }
+                    carry = filled - lineStart;
+                    System.arraycopy(buffer, lineStart, buffer, 0, carry);
+                    if(carry == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                }
+                if(carry > 0) {
+                    this.line(buffer, 0, carry);
+                }
+            } catch (LineException e) {
+                this.errorLine = this.lines;
+                this.error = e.getMessage();
+            }
+            return this;
+        }
+
+        /**
+         * Splits a line on whitespace and passes it to parse.
+         */
+        private void line(byte[] buffer, int start, int end) throws LineException {
+            this.lines++;
+            int tokens = 0;
+            int i = start;
+            while (i < end) {
+                while (i < end && isSpace(buffer[i])) {
+                    i++;
+                }
+                if(i == end) {
+                    break;
+                }
+                int tokenBegin = i;
+                while (i < end && !isSpace(buffer[i])) {
+                    i++;
+                }
+                if(tokens < MAX_TOKENS) {
+                    this.tokenStart[tokens] = tokenBegin;
+                    this.tokenEnd[tokens] = i;
+                }
+                tokens++;
+            }
+            if(tokens > 0) {
+                this.parse(buffer, tokens);
+            }
+        }
+
+        /**
+         * Parses a token as a number.
+         */
+        protected float number(byte[] line, int token) throws LineException {
+            try {
+                return parseFloat(line, this.tokenStart[token], this.tokenEnd[token]);
+            } catch (NumberFormatException e) {
+                throw new LineException("Not a number: " + this.text(line, token));
+            }
+        }
+
+        /**
+         * Decodes a token as a String.
+         */
+        protected String text(byte[] line, int token) {
+            return new String(line, this.tokenStart[token],
+                    this.tokenEnd[token] - this.tokenStart[token], StandardCharsets.UTF_8);
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+        }
+    }
+
+    /**
+     * Parses city lines into parallel arrays.
+     */
+    private static class CityChunk extends Chunk {
+        String[] names = new String[64];
+        String[] states = new String[64];
+        float[] xs = new float[64];
+        float[] ys = new float[64];
+        int count = 0;
+
+        CityChunk(FileChannel channel, long start, long end) {
+            super(channel, start, end);
+        }
+
+        @Override
+        protected void parse(byte[] line, int tokens) throws LineException {
+            if(tokens < 4) {
+                throw new LineException("Expected name state x y");
+            }
+            if(this.count == this.names.length) {
+                int capacity = this.count * 2;
+                this.names = Arrays.copyOf(this.names, capacity);
+                this.states = Arrays.copyOf(this.states, capacity);
+                this.xs = Arrays.copyOf(this.xs, capacity);
+                this.ys = Arrays.copyOf(this.ys, capacity);
+            }
+            this.xs[this.count] = this.number(line, 2);
+            this.ys[this.count] = this.number(line, 3);
+            this.names[this.count] = this.text(line, 0);
+            this.states[this.count] = this.text(line, 1);
+            this.count++;
+        }
+    }
+
+    /**
+     * Parses edge lines into pairs of node ids and weights. City names
+     * are looked up by their bytes without being decoded.
+     */
+    private static class EdgeChunk extends Chunk {
+        private final NameTable table;
+        int[] from = new int[64];
+        int[] to = new int[64];
+        float[] weights = new float[64];
+        int count = 0;
+
+        EdgeChunk(FileChannel channel, long start, long end, NameTable table) {
+            super(channel, start, end);
+            this.table = table;
+        }
+
+        @Override
+        protected void parse(byte[] line, int tokens) throws LineException {
+            if(tokens != 2 && tokens != 3) {
+                throw new LineException("Expected two city names and an optional weight");
+            }
+            if(this.count == this.from.length) {
+                this.from = Arrays.copyOf(this.from, this.count * 2);
+                this.to = Arrays.copyOf(this.to, this.count * 2);
+                this.weights = Arrays.copyOf(this.weights, this.count * 2);
+            }
+            float weight = Float.NaN;
+            if(tokens == 3) {
+                weight = this.number(line, 2);
+                if(!(weight >= 0) || Float.isInfinite(weight)) {
+                    throw new LineException("Bad edge weight: " + this.text(line, 2));
+                }
+            }
+            this.from[this.count] = this.lookup(line, 0);
+            this.to[this.count] = this.lookup(line, 1);
+            this.weights[this.count] = weight;
+            this.count++;
+        }
+
+        private int lookup(byte[] line, int token) throws LineException {
+            int id = this.table.get(line, this.tokenStart[token], this.tokenEnd[token]);
+            if(id < 0) {
+                throw new LineException("No such city: " + this.text(line, token));
+            }
+            return id;
+        }
+    }
+
+    /**
+     * An open addressing hash table from the UTF-8 bytes of a city
+     * name to its node id. It is only written before the edge chunks
+     * start, so concurrent lookups are safe.
+     */
+    private static class NameTable {
+        private byte[][] keys = new byte[64][];
+        private int[] values = new int[64];
+        private int size = 0;
+
+        void put(byte[] key, int value) {
+            if(2 * (this.size + 1) > this.keys.length) {
+                this.resize();
+            }
+            int mask = this.keys.length - 1;
+            int slot = hash(key, 0, key.length) & mask;
+            while (this.keys[slot] != null) {
+                if(Arrays.equals(this.keys[slot], key)) {
+                    this.values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = key;
+            this.values[slot] = value;
+            this.size++;
+        }
+
+        int get(byte[] bytes, int start, int end) {
+            int mask = this.keys.length - 1;
+            int slot = hash(bytes, start, end) & mask;
+            while (this.keys[slot] != null) {
+                if(Arrays.equals(this.keys[slot], 0, this.keys[slot].length, bytes, start, end)) {
+                    return this.values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new byte[oldKeys.length * 2][];
+            this.values = new int[oldKeys.length * 2];
+            this.size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] != null) {
+                    this.put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(byte[] bytes, int start, int end) {
+            int h = 0x811C9DC5;
+            for (int i = start; i < end; i++) {
+                h = (h ^ bytes[i]) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * Reads and writes a Graph as a versioned binary snapshot. The file
+ * holds a header followed by the raw arrays of the graph, so opening
+ * it only maps the file and bulk copies each section instead of
+ * parsing text and rebuilding the adjacency.
+ * <p>
+ * Layout, all values little endian:
+ * <pre>
+ * int magic, int version, int nodes, int edges, int nameBytes,
+ * int metric, float heuristicScale
+ * float xs[nodes], float ys[nodes], int labelRanks[nodes]
+ * int offsets[nodes + 1]
+ * int targets[edges], float weights[edges]
+ * int ascending[edges], int descending[edges]
+ * int stringOffsets[2 * nodes + 1], byte names[nameBytes]
+ * </pre>
+ * The string table holds every city name followed by every state
+ * name as UTF-8. Version 1 files have no metric or heuristic scale
+ * and are read as Euclidean graphs.
+ * @author Andrew Serra
+ */
+public class GraphSnapshot {
+
+    public static final int MAGIC = 0x52475343;
+    public static final int VERSION = 2;
+
+    private static final int V1_HEADER_BYTES = 5 * Integer.BYTES;
+    private static final int HEADER_BYTES = 7 * Integer.BYTES;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Writes a graph to a snapshot file, replacing any existing file.
+     * @param graph The graph to write
+     * @param file Path of the snapshot file
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        int n = graph.size();
+        byte[][] strings = new byte[2 * n][];
+        int[] stringOffsets = new int[2 * n + 1];
+        for (int i = 0; i < n; i++) {
+            strings[i] = graph.names()[i].getBytes(StandardCharsets.UTF_8);
+            strings[n + i] = graph.states()[i].getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < strings.length; i++) {
+            stringOffsets[i + 1] = stringOffsets[i] + strings[i].length;
+        }
+
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING); ) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n)
+                    .putInt(graph.edgeCount()).putInt(stringOffsets[2 * n])
+                    .putInt(graph.getMetric().ordinal()).putFloat(graph.getHeuristicScale());
+
+            putFloats(channel, buffer, graph.xs());
+            putFloats(channel, buffer, graph.ys());
+            putInts(channel, buffer, graph.labelRanks());
+            putInts(channel, buffer, graph.offsets());
+            putInts(channel, buffer, graph.targets());
+            putFloats(channel, buffer, graph.weights());
+            putInts(channel, buffer, graph.ascending());
+            putInts(channel, buffer, graph.descending());
+            putInts(channel, buffer, stringOffsets);
+            for (byte[] string : strings) {
+                if(buffer.remaining() < string.length) {
+                    drain(channel, buffer);
+                }
+                buffer.put(string);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Opens a snapshot file. The file is memory mapped and every
+     * section is copied into the arrays of the graph in bulk.
+     * @param file Path of the snapshot file
+     * @return The Graph object stored in the file
+     * @throws IOException If the file cannot be read or is not a
+     *                     snapshot of a supported version
+     */
+    public static Graph open(Path file) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ); ) {
+            if(channel.size() < V1_HEADER_BYTES) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            ByteBuffer header = map(channel, 0, Math.min(channel.size(), HEADER_BYTES));
+            if(header.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            int version = header.getInt();
+            if(version != 1 && version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int nameBytes = header.getInt();
+            long headerBytes = V1_HEADER_BYTES;
+            DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+            float heuristicScale = 1;
+            if(version >= 2) {
+                if(header.remaining() < 2 * Integer.BYTES) {
+                    throw new IOException("Truncated graph snapshot: " + file);
+                }
+                int ordinal = header.getInt();
+                if(ordinal < 0 || ordinal >= DistanceMetric.values().length) {
+                    throw new IOException("Unknown metric " + ordinal + ": " + file);
+                }
+                metric = DistanceMetric.values()[ordinal];
+                heuristicScale = header.getFloat();
+                headerBytes = HEADER_BYTES;
+            }
+
+            long expected = headerBytes + 4L * (3L * n + (n + 1) + 4L * m + (2L * n + 1)) + nameBytes;
+            if(channel.size() != expected) {
+                throw new IOException("Truncated graph snapshot: " + file);
+            }
+
+            long position = headerBytes;
+            float[] xs = new float[n];
+            float[] ys = new float[n];
+            int[] labelRanks = new int[n];
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[m];
+            float[] weights = new float[m];
+            int[] ascending = new int[m];
+            int[] descending = new int[m];
+            int[] stringOffsets = new int[2 * n + 1];
+            byte[] strings = new byte[nameBytes];
+
+            position = getFloats(channel, position, xs);
+            position = getFloats(channel, position, ys);
+            position = getInts(channel, position, labelRanks);
+            position = getInts(channel, position, offsets);
+            position = getInts(channel, position, targets);
+            position = getFloats(channel, position, weights);
+            position = getInts(channel, position, ascending);
+            position = getInts(channel, position, descending);
+            position = getInts(channel, position, stringOffsets);
+            map(channel, position, nameBytes).get(strings);
+
+            String[] names = new String[n];
+            String[] states = new String[n];
+            HashMap<String, Integer> ids = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                names[i] = new String(strings, stringOffsets[i],
+                        stringOffsets[i + 1] - stringOffsets[i], StandardCharsets.UTF_8);
+                states[i] = new String(strings, stringOffsets[n + i],
+                        stringOffsets[n + i + 1] - stringOffsets[n + i], StandardCharsets.UTF_8);
+                ids.put(names[i], i);
+            }
+
+            return new Graph(names, states, xs, ys, offsets, targets, weights,
+                    ascending, descending, labelRanks, ids, metric, heuristicScale);
+        }
+    }
+
+    /**
+     * Maps a read-only region of the file.
+     */
+    private static MappedByteBuffer map(FileChannel channel, long position, long size)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Copies an int section of the file into an array.
+     * @return The position after the section
+     */
+    private static long getInts(FileChannel channel, long position, int[] values)
+            throws IOException {
+        long size = (long) values.length * Integer.BYTES;
+        map(channel, position, size).asIntBuffer().get(values);
+        return position + size;
+    }
+
+    /**
+     * Copies a float section of the file into an array.
+     * @return The position after the section
+     */
+    private static long getFloats(FileChannel channel, long position, float[] values)
+            throws IOException {
+        long size = (long) values.length * Float.BYTES;
+        map(channel, position, size).asFloatBuffer().get(values);
+        return position + size;
+    }
+
+    /**
+     * Writes an int array through the buffer, draining it when full.
+     */
+    private static void putInts(FileChannel channel, ByteBuffer buffer, int[] values)
+            throws IOException {
+        int i = 0;
+        while (i < values.length) {
+            int count = Math.min(values.length - i, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, i, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            i += count;
+            if(i < values.length) {
+                drain(channel, buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes a float array through the buffer, draining it when full.
+     */
+    private static void putFloats(FileChannel channel, ByteBuffer buffer, float[] values)
+            throws IOException {
+        int i = 0;
+        while (i < values.length) {
+            int count = Math.min(values.length - i, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().put(values, i, count);
+            buffer.position(buffer.position() + count * Float.BYTES);
+            i += count;
+            if(i < values.length) {
+                drain(channel, buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer and clears it.
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,494 @@
+package graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A batch of changes to a Graph: new cities, new and removed edges,
+ * and new edge weights. Every edge change applies to both directions.
+ * Applying the batch builds the next version of the graph and leaves
+ * the given one untouched, so searches still running on it keep a
+ * consistent view. Either every change is applied or, if one of them
+ * is invalid, none is.
+ * <p>
+ * The arrays a batch does not touch are shared with the previous
+ * version. A batch that only changes weights copies just the weights,
+ * and one that only adds cities does not copy the edge arrays at all.
+ * One that adds or removes edges copies the edge arrays once, and
+ * new cities are given the next node ids, so the ids of existing
+ * cities never change. A new weight below the distance between its
+ * cities lowers the heuristic scale, which is never raised again, so
+ * estimates stay below every edge weight.
+ * @author Andrew Serra
+ */
+public class GraphUpdate {
+
+    private static final int ADD_CITY = 0;
+    private static final int ADD_EDGE = 1;
+    private static final int REMOVE_EDGE = 2;
+    private static final int SET_WEIGHT = 3;
+    private static final float REMOVED = Float.NEGATIVE_INFINITY;
+
+    private final ArrayList<Change> changes = new ArrayList<>();
+
+    /**
+     * Adds a city to the graph.
+     * @param name String of the name of the city, which must be new
+     * @param state String of the name of the state
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void addCity(String name, String state, float x, float y) {
+        this.changes.add(new Change(ADD_CITY, name, state, x, y, Float.NaN));
+    }
+
+    /**
+     * Creates a bidirectional edge weighted by the distance metric.
+     * @param name1 Name of the first city
+     * @param name2 Name of the second city
+     */
+    public void addEdge(String name1, String name2) {
+        this.addEdge(name1, name2, Float.NaN);
+    }
+
+    /**
+     * Creates a bidirectional edge between two cities.
+     * @param name1 Name of the first city
+     * @param name2 Name of the second city
+     * @param weight Weight of the edge, or NaN to use the metric
+     * @throws IllegalArgumentException If the weight is negative
+     */
+    public void addEdge(String name1, String name2, float weight) throws IllegalArgumentException {
+        if(weight < 0) {
+            throw new IllegalArgumentException("Negative edge weight: " + weight);
+        }
+        this.changes.add(new Change(ADD_EDGE, name1, name2, 0, 0, weight));
+    }
+
+    /**
+     * Removes the edge between two cities, such as a closed road.
+     * @param name1 Name of the first city
+     * @param name2 Name of the second city
+     */
+    public void removeEdge(String name1, String name2) {
+        this.changes.add(new Change(REMOVE_EDGE, name1, name2, 0, 0, Float.NaN));
+    }
+
+    /**
+     * Changes the weight of the edge between two cities.
+     * @param name1 Name of the first city
+     * @param name2 Name of the second city
+     * @param weight New weight of the edge
+     * @throws IllegalArgumentException If the weight is negative or NaN
+     */
+    public void setWeight(String name1, String name2, float weight) throws IllegalArgumentException {
+        if(!(weight >= 0)) {
+            throw new IllegalArgumentException("Invalid edge weight: " + weight);
+        }
+        this.changes.add(new Change(SET_WEIGHT, name1, name2, 0, 0, weight));
+    }
+
+    /**
+     * Get the number of changes in the batch.
+     * @return The number of changes
+     */
+    public int size() {
+        return this.changes.size();
+    }
+
+    /**
+     * Reads a batch of changes, one per line:
+     * <pre>
+     *     addCity name state x y
+     *     addEdge name1 name2 [weight]
+     *     removeEdge name1 name2
+     *     setWeight name1 name2 weight
+     * </pre>
+     * Blank lines and lines starting with # are skipped.
+     * @param input Reader positioned at the first change
+     * @param source Name of the input used in error messages
+     * @return The GraphUpdate object
+     * @throws GraphFormatException If a line is not a valid change
+     * @throws IOException If reading the input fails
+     */
+    public static GraphUpdate parse(BufferedReader input, String source) throws IOException {
+        GraphUpdate update = new GraphUpdate();
+        String line;
+        long lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            String[] contents = line.trim().split("\\s+");
+            if(contents[0].isEmpty() || contents[0].startsWith("#")) {
+                continue;
+            }
+            try {
+                if(contents[0].equals("addCity") && contents.length == 5) {
+                    update.addCity(contents[1], contents[2],
+                            Float.parseFloat(contents[3]), Float.parseFloat(contents[4]));
+                } else if(contents[0].equals("addEdge") && contents.length == 3) {
+                    update.addEdge(contents[1], contents[2]);
+                } else if(contents[0].equals("addEdge") && contents.length == 4) {
+                    update.addEdge(contents[1], contents[2], Float.parseFloat(contents[3]));
+                } else if(contents[0].equals("removeEdge") && contents.length == 3) {
+                    update.removeEdge(contents[1], contents[2]);
+                } else if(contents[0].equals("setWeight") && contents.length == 4) {
+                    update.setWeight(contents[1], contents[2], Float.parseFloat(contents[3]));
+                } else {
+                    throw new GraphFormatException(source, lineNumber,
+                            "expected addCity, addEdge, removeEdge or setWeight");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new GraphFormatException(source, lineNumber, e.getMessage());
+            }
+        }
+        return update;
+    }
+
+    /**
+     * Builds the next version of a graph with every change applied in
+     * order. A batch without changes returns the graph itself.
+     * @param graph The current version of the graph
+     * @return The new version
+     * @throws IllegalArgumentException If a city is added twice, a
+     *                                  change names a missing city,
+     *                                  an added edge exists or a
+     *                                  removed or changed edge does not
+     */
+    public Graph applyTo(Graph graph) throws IllegalArgumentException {
+        if(this.changes.isEmpty()) {
+            return graph;
+        }
+        int n = graph.size();
+        int cityCount = 0;
+        for (Change change : this.changes) {
+            if(change.kind == ADD_CITY) {
+                cityCount++;
+            }
+        }
+        String[] names = cityCount > 0 ? Arrays.copyOf(graph.names(), n + cityCount) : graph.names();
+        String[] states = cityCount > 0 ? Arrays.copyOf(graph.states(), n + cityCount) : graph.states();
+        float[] xs = cityCount > 0 ? Arrays.copyOf(graph.xs(), n + cityCount) : graph.xs();
+        float[] ys = cityCount > 0 ? Arrays.copyOf(graph.ys(), n + cityCount) : graph.ys();
+        DistanceMetric metric = graph.getMetric();
+
+        // Replay the changes, keeping the final weight of every
+        // directed edge touched, or REMOVED
+        HashMap<String, Integer> added = new HashMap<>();
+        LinkedHashMap<Long, Float> edits = new LinkedHashMap<>();
+        int size = n;
+        for (Change change : this.changes) {
+            if(change.kind == ADD_CITY) {
+                if(graph.indexOf(change.a) >= 0 || added.containsKey(change.a)) {
+                    throw new IllegalArgumentException("City exists: " + change.a);
+                }
+                names[size] = change.a;
+                states[size] = change.b;
+                xs[size] = change.x;
+                ys[size] = change.y;
+                added.put(change.a, size++);
+                continue;
+            }
+
+            int a = idOf(graph, added, change.a);
+            int b = idOf(graph, added, change.b);
+            boolean exists = exists(graph, edits, a, b);
+            float weight = change.weight;
+            if(change.kind == ADD_EDGE) {
+                if(exists) {
+                    throw new IllegalArgumentException(
+                            "Connection exists: " + change.a + " <-> " + change.b);
+                }
+                if(Float.isNaN(weight)) {
+                    weight = metric.distance(xs[a], ys[a], xs[b], ys[b]);
+                }
+            } else if(!exists) {
+                throw new IllegalArgumentException("No connection: " + change.a + " <-> " + change.b);
+            } else if(change.kind == REMOVE_EDGE) {
+                weight = REMOVED;
+            }
+            edits.put(key(a, b), weight);
+            edits.put(key(b, a), weight);
+        }
+
+        float heuristicScale = graph.getHeuristicScale();
+        boolean structural = false;
+        int count = edits.size();
+        int[] from = new int[count];
+        int[] to = new int[count];
+        float[] weight = new float[count];
+        boolean[] inBase = new boolean[count];
+        int i = 0;
+        for (Map.Entry<Long, Float> edit : edits.entrySet()) {
+            from[i] = (int) (edit.getKey() >>> 32);
+            to[i] = (int) (long) edit.getKey();
+            weight[i] = edit.getValue();
+            inBase[i] = from[i] < n && to[i] < n && !Float.isNaN(graph.weightBetween(from[i], to[i]));
+            structural |= inBase[i] == (weight[i] == REMOVED);
+            if(weight[i] != REMOVED) {
+                float distance = metric.distance(xs[from[i]], ys[from[i]], xs[to[i]], ys[to[i]]);
+                if(weight[i] < distance) {
+                    heuristicScale = Math.min(heuristicScale, weight[i] / distance);
+                }
+            }
+            i++;
+        }
+
+        int[] ranks = cityCount > 0 ? mergeRanks(graph, names, states, size) : graph.labelRanks();
+        HashMap<String, Integer> ids = graph.ids();
+        if(cityCount > 0) {
+            ids = new HashMap<>(graph.ids());
+            ids.putAll(added);
+        }
+        if(structural) {
+            return rebuildEdges(graph, size, from, to, weight, inBase, ranks, names, states, xs, ys,
+                    ids, heuristicScale);
+        }
+
+        // No edge was added or removed, so the edge arrays are shared and
+        // new cities only get empty rows at the end
+        int[] offsets = graph.offsets();
+        if(cityCount > 0) {
+            offsets = Arrays.copyOf(offsets, size + 1);
+            Arrays.fill(offsets, n + 1, size + 1, offsets[n]);
+        }
+        float[] weights = graph.weights();
+        if(count > 0) {
+            weights = weights.clone();
+            for (int j = 0; j < count; j++) {
+                if(!inBase[j]) {
+                    // An edge added and removed again in this batch,
+                    // possibly to a new city, has nothing to patch
+                    continue;
+                }
+                for (int e = graph.firstEdge(from[j]); e < graph.endEdge(from[j]); e++) {
+                    if(graph.getTarget(e) == to[j]) {
+                        weights[e] = weight[j];
+                        break;
+                    }
+                }
+            }
+        }
+        return new Graph(names, states, xs, ys, offsets, graph.targets(), weights,
+                graph.ascending(), graph.descending(), ranks, ids,
+                metric, heuristicScale, graph.getVersion() + 1);
+    }
+
+    /**
+     * Builds the edge arrays of the new version. Rows without edits
+     * are copied as they are: their targets keep the same relative
+     * label order even when new cities shift the ranks. Edited rows
+     * keep their remaining edges in place, append the new ones in the
+     * order they were added, and are sorted again by label.
+     */
+    private static Graph rebuildEdges(Graph graph, int size, int[] from, int[] to, float[] weight,
+                                      boolean[] inBase, int[] ranks, String[] names, String[] states,
+                                      float[] xs, float[] ys, HashMap<String, Integer> ids,
+                                      float heuristicScale) {
+        int n = graph.size();
+        int count = from.length;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // Stable, so the edits of a row stay in the order they were made
+        Arrays.sort(order, (p, q) -> Integer.compare(from[p], from[q]));
+
+        int[] offsets = new int[size + 1];
+        for (int node = 0; node < n; node++) {
+            offsets[node + 1] = graph.degree(node);
+        }
+        for (int i = 0; i < count; i++) {
+            if(!inBase[i] && weight[i] != REMOVED) {
+                offsets[from[i] + 1]++;
+            } else if(inBase[i] && weight[i] == REMOVED) {
+                offsets[from[i] + 1]--;
+            }
+        }
+        for (int node = 0; node < size; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+
+        int m = offsets[size];
+        int[] targets = new int[m];
+        float[] weights = new float[m];
+        int[] ascending = new int[m];
+        int[] descending = new int[m];
+        int[] oldTargets = graph.targets();
+        float[] oldWeights = graph.weights();
+        int[] oldAscending = graph.ascending();
+        int[] oldDescending = graph.descending();
+        int next = 0;
+        for (int node = 0; node < size; node++) {
+            int start = offsets[node];
+            if(next == count || from[order[next]] != node) {
+                if(node < n) {
+                    int first = graph.firstEdge(node);
+                    int degree = graph.degree(node);
+                    System.arraycopy(oldTargets, first, targets, start, degree);
+                    System.arraycopy(oldWeights, first, weights, start, degree);
+                    System.arraycopy(oldAscending, first, ascending, start, degree);
+                    System.arraycopy(oldDescending, first, descending, start, degree);
+                }
+                continue;
+            }
+
+            int last = next;
+            while (last < count && from[order[last]] == node) {
+                last++;
+            }
+            int write = start;
+            if(node < n) {
+                for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++) {
+                    float w = oldWeights[e];
+                    for (int j = next; j < last; j++) {
+                        if(to[order[j]] == oldTargets[e]) {
+                            w = weight[order[j]];
+                            break;
+                        }
+                    }
+                    if(w != REMOVED) {
+                        targets[write] = oldTargets[e];
+                        weights[write++] = w;
+                    }
+                }
+            }
+            for (int j = next; j < last; j++) {
+                int edit = order[j];
+                if(!inBase[edit] && weight[edit] != REMOVED) {
+                    targets[write] = to[edit];
+                    weights[write++] = weight[edit];
+                }
+            }
+            next = last;
+
+            // Rows are short, so an insertion sort by rank is enough
+            for (int e = start; e < write; e++) {
+                int target = targets[e];
+                int k = e - 1;
+                for (; k >= start && ranks[ascending[k]] > ranks[target]; k--) {
+                    ascending[k + 1] = ascending[k];
+                }
+                ascending[k + 1] = target;
+            }
+            for (int e = start; e < write; e++) {
+                descending[e] = ascending[start + write - 1 - e];
+            }
+        }
+
+        return new Graph(names, states, xs, ys, offsets, targets, weights, ascending, descending,
+                ranks, ids, graph.getMetric(), heuristicScale, graph.getVersion() + 1);
+    }
+
+    /**
+     * Ranks the nodes by their "city, state" representation after new
+     * cities were appended. Each new label is placed among the old
+     * ones by binary search, which keeps the order of the old nodes.
+     * @param graph The graph before the update
+     * @param names City names of every node, new cities included
+     * @param states State names of every node, new cities included
+     * @param size Number of nodes including the new cities
+     * @return The rank of every node
+     */
+    private static int[] mergeRanks(Graph graph, String[] names, String[] states, int size) {
+        int n = graph.size();
+        int[] byRank = new int[n];
+        for (int node = 0; node < n; node++) {
+            byRank[graph.labelRank(node)] = node;
+        }
+        int fresh = size - n;
+        Integer[] order = new Integer[fresh];
+        for (int i = 0; i < fresh; i++) {
+            order[i] = n + i;
+        }
+        Arrays.sort(order, (a, b) -> label(names, states, a).compareTo(label(names, states, b)));
+
+        // Number of old labels before each new one
+        int[] before = new int[fresh];
+        for (int i = 0; i < fresh; i++) {
+            String label = label(names, states, order[i]);
+            int low = 0;
+            int high = n;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if(label(names, states, byRank[mid]).compareTo(label) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            before[i] = low;
+        }
+
+        int[] ranks = new int[size];
+        int j = 0;
+        for (int rank = 0; rank < n; rank++) {
+            while (j < fresh && before[j] <= rank) {
+                ranks[order[j]] = before[j] + j;
+                j++;
+            }
+            ranks[byRank[rank]] = rank + j;
+        }
+        for (; j < fresh; j++) {
+            ranks[order[j]] = before[j] + j;
+        }
+        return ranks;
+    }
+
+    private static String label(String[] names, String[] states, int node) {
+        return names[node] + ", " + states[node];
+    }
+
+    private static int idOf(Graph graph, HashMap<String, Integer> added, String name) {
+        int id = graph.indexOf(name);
+        if(id < 0) {
+            Integer fresh = added.get(name);
+            if(fresh == null) {
+                throw new IllegalArgumentException("No such city: " + name);
+            }
+            id = fresh;
+        }
+        return id;
+    }
+
+    /**
+     * Checks if an edge exists after the edits replayed so far.
+     */
+    private static boolean exists(Graph graph, HashMap<Long, Float> edits, int a, int b) {
+        Float edit = edits.get(key(a, b));
+        if(edit != null) {
+            return edit != REMOVED;
+        }
+        return a < graph.size() && b < graph.size() && !Float.isNaN(graph.weightBetween(a, b));
+    }
+
+    private static long key(int a, int b) {
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    /**
+     * One change of the batch. Edge changes keep the two city names
+     * in a and b; a new city keeps its name in a and its state in b.
+     */
+    private static final class Change {
+        private final int kind;
+        private final String a;
+        private final String b;
+        private final float x;
+        private final float y;
+        private final float weight;
+
+        Change(int kind, String a, String b, float x, float y, float weight) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.x = x;
+            this.y = y;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package query;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event of one route query answered by a
+ * QueryExecutor. It costs next to nothing unless a recording with
+ * the event enabled is running, for example one started with
+ * -XX:StartFlightRecording.
+ * @author Andrew Serra
+ */
+@Name("csci630.RouteQuery")
+@Label("Route Query")
+@Category("Search")
+@Description("A route query answered by a QueryExecutor")
+@StackTrace(false)
+class QueryEvent extends Event {
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Source")
+    @Description("Node id of the starting city")
+    int source;
+
+    @Label("Sink")
+    @Description("Node id of the city being searched")
+    int sink;
+
+    @Label("Path Found")
+    boolean found;
+
+    @Label("Cached")
+    @Description("True if no search was run for the answer")
+    boolean cached;
+
+    @Label("Hops")
+    int hops;
+
+    @Label("Nodes Expanded")
+    long expanded;
+
+    @Label("Edges Relaxed")
+    long relaxed;
+
+    @Label("Peak Frontier")
+    int peakFrontier;
+}
@@ -0,0 +1,420 @@
+package query;
+
+import graph.Graph;
+import graph.GraphUpdate;
+import search.Algorithm;
+import search.AllPairsTable;
+import search.BoundedSearchBase;
+import search.CompactPath;
+import search.ContractionHierarchy;
+import search.GraphSearchBase;
+import search.Heuristic;
+import search.Landmarks;
+import search.SearchStats;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs independent route queries on a fixed pool of worker
+ * threads. Results are handed back on the calling thread either
+ * in the order the queries were read or as soon as they finish.
+ * The number of queries in flight is bounded, so a long stream of
+ * queries is never buffered in memory all at once.
+ * <p>
+ * The graph can be updated while queries run. Each query reads the
+ * current version once and runs on it to the end, while queries
+ * started after an update see the new version. Caches and
+ * precomputed tables belong to one version. The route cache is
+ * emptied once a query on a newer version reaches it, and all-pairs
+ * tables and landmarks of an older version are no longer used. A
+ * hierarchy is built in the background for the first contraction
+ * hierarchy query on a version, and again right after every update
+ * once such queries have been seen. Until it is ready, contraction
+ * hierarchy queries run Dijkstra instead, which finds a shortest
+ * route as well, so no query waits for a build or counts its time.
+ * The same goes for queries still running on an older version.
+ * @author Andrew Serra
+ */
+public class QueryExecutor implements AutoCloseable {
+
+    private volatile Graph graph;
+    private final boolean ordered;
+    private final int maxInFlight;
+    private final ExecutorService pool;
+    private final ExecutorService builder;
+    private RouteCache cache = null;
+    private AllPairsTable allPairs = null;
+    private Landmarks landmarks = null;
+    private final AtomicReference<HierarchyBuild> hierarchy = new AtomicReference<>();
+    private int nodeBudget = BoundedSearchBase.DEFAULT_NODE_BUDGET;
+    private QueryMetrics metrics = null;
+
+    /**
+     * Creates a QueryExecutor object.
+     * @param graph The graph every query runs on
+     * @param parallelism Number of worker threads
+     * @param ordered True to deliver results in query order
+     */
+    public QueryExecutor(Graph graph, int parallelism, boolean ordered) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.graph = graph;
+        this.ordered = ordered;
+        this.maxInFlight = parallelism * 4;
+
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "search-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.builder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "hierarchy-build");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Getter method for the current version of the graph.
+     * @return The Graph object new queries run on
+     */
+    public Graph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Applies a batch of changes to the graph and publishes the new
+     * version to the queries that start from now on. Updates are
+     * applied one at a time, each to the version the last one made.
+     * @param update The changes to apply
+     * @return The new version of the graph
+     * @throws IllegalArgumentException If a change is invalid, in
+     *                                  which case the graph is unchanged
+     */
+    public synchronized Graph update(GraphUpdate update) throws IllegalArgumentException {
+        Graph graph = update.applyTo(this.graph);
+        this.graph = graph;
+        if(this.hierarchy.get() != null) {
+            // Contraction hierarchy queries are in use, so start on the
+            // hierarchy of the new version before the next one arrives
+            this.hierarchy(graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Puts a route cache in front of the searches.
+     * @param cache The cache to use, or null for none
+     */
+    public void setCache(RouteCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Answers A* queries from a precomputed all-pairs table instead
+     * of searching. The table is ignored if it was built on a
+     * different graph, or if A* on the graph may miss the shortest
+     * route, since the table would then change its answers.
+     * @param allPairs The table to use, or null for none
+     */
+    public void setAllPairs(AllPairsTable allPairs) {
+        this.allPairs = allPairs;
+    }
+
+    /**
+     * Gives the A* searches a landmark heuristic. The landmarks are
+     * ignored if they were picked on a different graph.
+     * @param landmarks The landmarks to use, or null for the graph's
+     *                  own estimate
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Sets the contraction hierarchy used by contraction hierarchy
+     * queries. Without one, or with one built on a different graph,
+     * a hierarchy is built in the background when the first such
+     * query arrives.
+     * @param hierarchy The hierarchy to use, or null
+     */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy.set(hierarchy == null ? null : new HierarchyBuild(hierarchy));
+    }
+
+    /**
+     * Sets the node budget of the memory-bounded IDA* and SMA* queries.
+     * @param nodeBudget Largest number of search nodes, at least 2
+     */
+    public void setNodeBudget(int nodeBudget) {
+        if(nodeBudget < 2) {
+            throw new IllegalArgumentException("Node budget must be at least 2.");
+        }
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Records the latency and search statistics of every query
+     * answered from now on.
+     * @param metrics Where to record, or null to stop recording
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the contraction hierarchy of a graph version if it is
+     * ready. The first call on a version starts building it on the
+     * build thread, and no call waits for the build to finish.
+     * @param graph The graph version of the query
+     * @return The ContractionHierarchy object, or null if it is still
+     *         being built or a newer version has taken its place
+     * @throws RuntimeException If building the hierarchy failed
+     */
+    private ContractionHierarchy hierarchy(Graph graph) {
+        HierarchyBuild build = this.hierarchy.get();
+        while (build == null || build.graph != graph) {
+            if(build != null && graph.getVersion() < build.graph.getVersion()) {
+                return null;
+            }
+            HierarchyBuild started = new HierarchyBuild(graph);
+            if(this.hierarchy.compareAndSet(build, started)) {
+                this.builder.execute(() -> {
+                    try {
+                        started.future.complete(ContractionHierarchy.build(graph));
+                    } catch (RuntimeException | Error e) {
+                        started.future.completeExceptionally(e);
+                    }
+                });
+                return null;
+            }
+            build = this.hierarchy.get();
+        }
+        if(!build.future.isDone()) {
+            return null;
+        }
+        try {
+            return build.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Answers a single query on the current thread, from the
+     * all-pairs table or the cache if one is set and holds the route.
+     * The query is recorded in the metrics, if set, and emitted as a
+     * flight recorder event.
+     * @param query The query to run
+     * @return The result of the query
+     */
+    public RouteResult answer(RouteQuery query) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        RouteResult result = this.lookUpOrSearch(query);
+        long nanos = System.nanoTime() - start;
+        event.end();
+
+        QueryMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.record(result, nanos);
+        }
+        if(event.shouldCommit()) {
+            event.algorithm = query.getAlgorithm().name().toLowerCase();
+            event.source = query.getSrcId();
+            event.sink = query.getDstId();
+            event.found = result.hasPath();
+            event.cached = result.isCached();
+            event.hops = result.hasPath() ? result.getPath().size() - 1 : -1;
+            SearchStats stats = result.getStats();
+            if(stats != null) {
+                event.expanded = stats.getNodesExpanded();
+                event.relaxed = stats.getEdgesRelaxed();
+                event.peakFrontier = stats.getPeakFrontier();
+            }
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Answers a query from the all-pairs table or the cache, or
+     * runs its search.
+     * @param query The query to run
+     * @return The result of the query
+     */
+    private RouteResult lookUpOrSearch(RouteQuery query) {
+        Graph graph = this.graph;
+        AllPairsTable allPairs = this.allPairs;
+        if(allPairs != null && allPairs.getGraph() == graph
+                && query.getAlgorithm() == Algorithm.ASTAR && graph.isEstimateAdmissible()) {
+            return new RouteResult(graph, query,
+                    allPairs.path(query.getSrcId(), query.getDstId()), false);
+        }
+
+        RouteCache cache = this.cache;
+        if(cache != null) {
+            CompactPath cached = cache.get(graph, query);
+            if(cached != null) {
+                return new RouteResult(graph, query, cached, true);
+            }
+        }
+
+        Landmarks landmarks = this.landmarks;
+        Heuristic heuristic = landmarks != null && landmarks.getGraph() == graph
+                ? landmarks : graph::estimate;
+        ContractionHierarchy hierarchy = query.getAlgorithm() == Algorithm.CH
+                ? this.hierarchy(graph) : null;
+        // Without a hierarchy it is still being built, or the graph
+        // changed since the query started, and Dijkstra finds a shortest
+        // route without one
+        Algorithm algorithm = query.getAlgorithm() == Algorithm.CH && hierarchy == null
+                ? Algorithm.DIJKSTRA : query.getAlgorithm();
+        GraphSearchBase search = algorithm.create(graph, query.getSrcId(), query.getDstId(),
+                heuristic, this.nodeBudget, hierarchy);
+        search.run();
+        CompactPath path = search.hasPath() ? search.getCompactPath() : null;
+        if(path != null && cache != null) {
+            cache.put(graph, query, path);
+        }
+        boolean exhausted = search instanceof BoundedSearchBase
+                && ((BoundedSearchBase) search).isExhausted();
+        return new RouteResult(graph, query, path, false, search.getStats(), exhausted);
+    }
+
+    /**
+     * Answers a query on a worker thread. Unlike run(), nothing
+     * bounds the number of queries submitted this way, so the caller
+     * has to limit them itself.
+     * @param query The query to run
+     * @return A future completed with the result on the worker thread
+     */
+    public CompletableFuture<RouteResult> submit(RouteQuery query) {
+        return CompletableFuture.supplyAsync(() -> this.answer(query), this.pool);
+    }
+
+    /**
+     * Runs every query of the iterator on the worker threads and
+     * passes each result to the handler on the calling thread.
+     * @param queries The queries to run, read lazily
+     * @param handler Receiver of the results
+     * @throws IOException If the handler fails
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public void run(Iterator<RouteQuery> queries, ResultHandler handler)
+            throws IOException, InterruptedException {
+        if(this.ordered) {
+            this.runOrdered(queries, handler);
+        } else {
+            this.runUnordered(queries, handler);
+        }
+    }
+
+    /**
+     * Delivers results in the order the queries were read.
+     */
+    private void runOrdered(Iterator<RouteQuery> queries, ResultHandler handler)
+            throws IOException, InterruptedException {
+        ArrayDeque<Future<RouteResult>> pending = new ArrayDeque<>();
+        while (queries.hasNext()) {
+            if(pending.size() >= this.maxInFlight) {
+                handler.accept(await(pending.removeFirst()));
+            }
+            RouteQuery query = queries.next();
+            pending.addLast(this.pool.submit(() -> this.answer(query)));
+        }
+        while (!pending.isEmpty()) {
+            handler.accept(await(pending.removeFirst()));
+        }
+    }
+
+    /**
+     * Delivers results as soon as they finish.
+     */
+    private void runUnordered(Iterator<RouteQuery> queries, ResultHandler handler)
+            throws IOException, InterruptedException {
+        CompletionService<RouteResult> done = new ExecutorCompletionService<>(this.pool);
+        int inFlight = 0;
+        while (queries.hasNext()) {
+            if(inFlight >= this.maxInFlight) {
+                handler.accept(await(done.take()));
+                inFlight--;
+            }
+            RouteQuery query = queries.next();
+            done.submit(() -> this.answer(query));
+            inFlight++;
+        }
+        for (; inFlight > 0; inFlight--) {
+            handler.accept(await(done.take()));
+        }
+    }
+
+    /**
+     * Waits for a query to finish, rethrowing anything it threw.
+     * @param future The pending result
+     * @return The result of the query
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    private static RouteResult await(Future<RouteResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Contraction hierarchy of one graph version, complete once it
+     * has been built.
+     */
+    private static final class HierarchyBuild {
+        private final Graph graph;
+        private final CompletableFuture<ContractionHierarchy> future;
+
+        HierarchyBuild(Graph graph) {
+            this.graph = graph;
+            this.future = new CompletableFuture<>();
+        }
+
+        HierarchyBuild(ContractionHierarchy hierarchy) {
+            this.graph = hierarchy.getGraph();
+            this.future = CompletableFuture.completedFuture(hierarchy);
+        }
+    }
+
+    /**
+     * Stops the worker threads and the hierarchy build thread.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdownNow();
+        this.builder.shutdownNow();
+    }
+}
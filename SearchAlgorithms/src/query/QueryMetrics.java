@@ -0,0 +1,156 @@
+package query;
+
+import search.Algorithm;
+import search.SearchStats;
+import utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the queries answered by one or
+ * more QueryExecutors. Every worker thread records into it at once,
+ * and it can be reported at any time, for example periodically while
+ * a batch is running. A report taken mid-run may mix counts from
+ * slightly different moments.
+ * @author Andrew Serra
+ */
+public class QueryMetrics {
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder found = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder expanded = new LongAdder();
+    private final LongAdder relaxed = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final EnumMap<Algorithm, LatencyHistogram> byAlgorithm = new EnumMap<>(Algorithm.class);
+
+    /**
+     * Creates a QueryMetrics object.
+     */
+    public QueryMetrics() {
+        // Filled up front so recording threads only ever read the map
+        for (Algorithm algorithm : Algorithm.values()) {
+            this.byAlgorithm.put(algorithm, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records an answered query.
+     * @param result The result of the query
+     * @param nanos Wall time taken to answer it
+     */
+    public void record(RouteResult result, long nanos) {
+        this.queries.increment();
+        if(result.isCached()) {
+            this.cached.increment();
+        }
+        if(result.hasPath()) {
+            this.found.increment();
+        } else if(result.isExhausted()) {
+            this.exhausted.increment();
+        }
+        SearchStats stats = result.getStats();
+        if(stats != null) {
+            this.expanded.add(stats.getNodesExpanded());
+            this.relaxed.add(stats.getEdgesRelaxed());
+        }
+        this.latency.record(nanos);
+        this.byAlgorithm.get(result.getQuery().getAlgorithm()).record(nanos);
+    }
+
+    /**
+     * Get the number of queries answered.
+     * @return The query count
+     */
+    public long getQueries() {
+        return this.queries.sum();
+    }
+
+    /**
+     * Get the number of queries answered from a cache.
+     * @return The cache hit count
+     */
+    public long getCacheHits() {
+        return this.cached.sum();
+    }
+
+    /**
+     * Get the number of queries that found a path.
+     * @return The count of paths found
+     */
+    public long getPathsFound() {
+        return this.found.sum();
+    }
+
+    /**
+     * Get the number of queries that ran out of their node budget.
+     * @return The count of exhausted searches
+     */
+    public long getExhausted() {
+        return this.exhausted.sum();
+    }
+
+    /**
+     * Get the number of nodes expanded by all searches.
+     * @return The total of expanded nodes
+     */
+    public long getNodesExpanded() {
+        return this.expanded.sum();
+    }
+
+    /**
+     * Get the number of edges relaxed by all searches.
+     * @return The total of relaxed edges
+     */
+    public long getEdgesRelaxed() {
+        return this.relaxed.sum();
+    }
+
+    /**
+     * Getter method for the latency of all queries.
+     * @return The histogram in nanoseconds
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Getter method for the latency of the queries of one algorithm.
+     * @param algorithm The algorithm
+     * @return The histogram in nanoseconds
+     */
+    public LatencyHistogram getLatency(Algorithm algorithm) {
+        return this.byAlgorithm.get(algorithm);
+    }
+
+    /**
+     * Writes the counters and the p50, p99 and maximum latency of all
+     * queries and of every algorithm that was queried.
+     * @param out Where to write the report
+     * @throws IOException If the report cannot be written
+     */
+    public void report(Appendable out) throws IOException {
+        String ls = System.getProperty("line.separator");
+        out.append("Queries = " + this.getQueries() + ", cache hits = " + this.getCacheHits()
+                + ", paths found = " + this.getPathsFound()
+                + ", out of budget = " + this.getExhausted() + "." + ls);
+        out.append("Nodes expanded = " + this.getNodesExpanded()
+                + ", edges relaxed = " + this.getEdgesRelaxed() + "." + ls);
+        out.append(latencyLine("All queries", this.latency) + ls);
+        for (Algorithm algorithm : Algorithm.values()) {
+            LatencyHistogram histogram = this.byAlgorithm.get(algorithm);
+            if(histogram.count() > 0) {
+                out.append(latencyLine(algorithm.getTitle(), histogram) + ls);
+            }
+        }
+    }
+
+    private static String latencyLine(String title, LatencyHistogram histogram) {
+        return String.format("%s: %d queries, p50 = %.3f ms, p99 = %.3f ms, max = %.3f ms.",
+                title, histogram.count(), histogram.percentile(0.5) / 1e6,
+                histogram.percentile(0.99) / 1e6, histogram.max() / 1e6);
+    }
+}
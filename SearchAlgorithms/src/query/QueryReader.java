@@ -0,0 +1,107 @@
+package query;
+
+import graph.Graph;
+import search.Algorithm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads route queries lazily from lines of "source sink [algorithm]".
+ * A line without an algorithm becomes a BFS, a DFS and an A* query.
+ * Malformed lines are reported on standard error and skipped.
+ * @author Andrew Serra
+ */
+public class QueryReader implements Iterator<RouteQuery> {
+
+    private final BufferedReader input;
+    private final Graph graph;
+    private final ArrayDeque<RouteQuery> buffered = new ArrayDeque<>();
+    private int lineNumber = 0;
+    private boolean finished = false;
+
+    /**
+     * Creates a QueryReader object.
+     * @param input Reader positioned at the first query line
+     * @param graph The graph used to resolve city names
+     */
+    public QueryReader(BufferedReader input, Graph graph) {
+        this.input = input;
+        this.graph = graph;
+    }
+
+    /**
+     * Returns true if there is another query.
+     * @return True if next() will return a query
+     * @throws UncheckedIOException If reading the input fails
+     */
+    @Override
+    public boolean hasNext() {
+        while (this.buffered.isEmpty() && !this.finished) {
+            this.readLine();
+        }
+        return !this.buffered.isEmpty();
+    }
+
+    /**
+     * Returns the next query.
+     * @return The next RouteQuery
+     * @throws NoSuchElementException If there are no more queries
+     */
+    @Override
+    public RouteQuery next() {
+        if(!this.hasNext()) {
+            throw new NoSuchElementException("No more queries.");
+        }
+        return this.buffered.removeFirst();
+    }
+
+    /**
+     * Reads one line and buffers the queries it contains.
+     */
+    private void readLine() {
+        String line;
+        try {
+            line = this.input.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if(line == null) {
+            this.finished = true;
+            return;
+        }
+        this.lineNumber++;
+
+        String[] contents = line.trim().split("\\s+");
+        if(contents.length == 1 && contents[0].isEmpty()) {
+            return;
+        }
+        if(contents.length < 2 || contents.length > 3) {
+            System.err.printf("Line %d: expected source sink [algorithm]\n", this.lineNumber);
+            return;
+        }
+
+        int srcId = this.graph.indexOf(contents[0]);
+        int dstId = this.graph.indexOf(contents[1]);
+        if(srcId < 0) {
+            System.err.printf("Line %d: No such city: %s\n", this.lineNumber, contents[0]);
+        } else if(dstId < 0) {
+            System.err.printf("Line %d: No such city: %s\n", this.lineNumber, contents[1]);
+        } else if(contents.length == 3) {
+            try {
+                Algorithm algorithm = Algorithm.fromName(contents[2]);
+                this.buffered.addLast(new RouteQuery(srcId, dstId, algorithm));
+            } catch (IllegalArgumentException e) {
+                System.err.printf("Line %d: %s\n", this.lineNumber, e.getMessage());
+            }
+        } else {
+            for (Algorithm algorithm : Algorithm.defaults()) {
+                this.buffered.addLast(new RouteQuery(srcId, dstId, algorithm));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package query;
+
+/**
+ * The formats a ResultWriter can write route results in.
+ * @author Andrew Serra
+ */
+public enum ResultFormat {
+
+    /**
+     * The report the Search program has always written: a title, one
+     * city per line, the hops and the total distance.
+     */
+    TEXT("text/plain; charset=utf-8"),
+
+    /**
+     * JSON lines: one JSON object per result and line.
+     */
+    JSON("application/x-ndjson"),
+
+    /**
+     * Little-endian binary records of node ids and distances, described
+     * in ResultWriter.
+     */
+    BINARY("application/octet-stream");
+
+    private final String contentType;
+
+    ResultFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Getter method for the media type of the format.
+     * @return The HTTP content type
+     */
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    /**
+     * Looks up a format by name. Case is ignored.
+     * @param name Name of the format, "text", "json" or "binary"
+     * @return The matching ResultFormat
+     * @throws IllegalArgumentException If no format matches
+     */
+    public static ResultFormat fromName(String name) throws IllegalArgumentException {
+        for (ResultFormat format : values()) {
+            if(format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("No such format: " + name);
+    }
+}
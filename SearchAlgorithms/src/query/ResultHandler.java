@@ -0,0 +1,19 @@
+package query;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of a QueryExecutor. The handler is always
+ * called from the thread that runs the executor, never from a
+ * worker, so it may write to an unsynchronized Writer.
+ * @author Andrew Serra
+ */
+public interface ResultHandler {
+
+    /**
+     * Handles one finished query.
+     * @param result The result of the query
+     * @throws IOException If writing the result fails
+     */
+    void accept(RouteResult result) throws IOException;
+}
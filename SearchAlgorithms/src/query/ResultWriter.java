@@ -0,0 +1,411 @@
+package query;
+
+import graph.Graph;
+import search.Algorithm;
+import search.CompactPath;
+import search.SearchStats;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The output stage of route results. Every result is encoded into a
+ * text buffer and a byte buffer that are reused for the next one, and
+ * the bytes are written to the stream only when the buffer fills up,
+ * so a long batch allocates next to nothing per result and makes few
+ * system calls. Names and distances are read from the graph version
+ * each result was found on and from its CompactPath, without building
+ * City objects. A ResultWriter belongs to one stream and one thread,
+ * such as the thread a QueryExecutor delivers its results on.
+ * <p>
+ * Text is the report the Search program has always written. JSON is
+ * one object per line. Binary starts with the ints MAGIC and VERSION,
+ * followed by one record per result, all little-endian:
+ * <pre>
+ *     int       source node id
+ *     int       sink node id
+ *     byte      algorithm, the ordinal of Algorithm
+ *     byte      flags: 1 found, 2 cached, 4 out of node budget,
+ *               8 statistics follow
+ *     int       n, the number of path nodes, 0 without a path
+ *     int[n]    node ids from source to sink
+ *     float[n]  distance from the source to each node
+ *     long      nodes expanded, long edges relaxed, int peak frontier,
+ *               long setup, search and path nanoseconds, and long
+ *               bytes allocated or -1, if flag 8 is set
+ * </pre>
+ * @author Andrew Serra
+ */
+public class ResultWriter implements ResultHandler, Flushable, Closeable {
+
+    public static final int MAGIC = 0x53455452;
+    public static final int VERSION = 1;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int FLAG_FOUND = 1;
+    private static final int FLAG_CACHED = 2;
+    private static final int FLAG_EXHAUSTED = 4;
+    private static final int FLAG_STATS = 8;
+    private static final int STATS_BYTES = 6 * Long.BYTES + Integer.BYTES;
+
+    private final OutputStream out;
+    private final ResultFormat format;
+    private final ByteBuffer buffer;
+    private final StringBuilder text = new StringBuilder(256);
+    private final String ls = System.getProperty("line.separator");
+    private boolean stats = false;
+    private boolean autoFlush = false;
+
+    /**
+     * Creates a ResultWriter object with a 64 KB buffer.
+     * @param out The stream to write to
+     * @param format The format of the results
+     */
+    public ResultWriter(OutputStream out, ResultFormat format) {
+        this(out, format, BUFFER_BYTES);
+    }
+
+    /**
+     * Creates a ResultWriter object.
+     * @param out The stream to write to
+     * @param format The format of the results
+     * @param bufferBytes Size of the byte buffer, at least 64
+     */
+    public ResultWriter(OutputStream out, ResultFormat format, int bufferBytes) {
+        this.out = out;
+        this.format = format;
+        this.buffer = ByteBuffer.allocate(Math.max(64, bufferBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        if(format == ResultFormat.BINARY) {
+            this.buffer.putInt(MAGIC).putInt(VERSION);
+        }
+    }
+
+    /**
+     * Sets if the statistics of every search are written with its
+     * result.
+     * @param stats True to write the statistics
+     */
+    public void setStats(boolean stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Sets if the stream is flushed after every result, for a reader
+     * waiting on each answer such as a terminal.
+     * @param autoFlush True to flush after every result
+     */
+    public void setAutoFlush(boolean autoFlush) {
+        this.autoFlush = autoFlush;
+    }
+
+    /**
+     * Writes the result of one query.
+     * @param result The result of the query
+     * @throws IOException If writing to the stream fails
+     */
+    @Override
+    public void accept(RouteResult result) throws IOException {
+        if(this.format == ResultFormat.BINARY) {
+            this.putBinary(result);
+        } else {
+            if(this.format == ResultFormat.TEXT) {
+                this.appendText(result);
+            } else {
+                this.appendJson(result);
+            }
+            this.putText();
+        }
+        if(this.autoFlush) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Appends the text report of one query. An unreachable sink is
+     * reported instead of a path. With statistics on they follow;
+     * otherwise the memory-bounded searches still report their peak
+     * frontier size.
+     * @param result The result of the query
+     */
+    private void appendText(RouteResult result) throws IOException {
+        Algorithm algorithm = result.getQuery().getAlgorithm();
+        Graph graph = result.getGraph();
+        SearchStats stats = result.getStats();
+        String ls = this.ls;
+        StringBuilder sb = this.text;
+        if(result.hasPath()) {
+            this.appendPathData(graph, algorithm.getTitle(), result.getPath(),
+                    this.stats ? stats : null);
+        } else {
+            sb.append(ls).append(algorithm.getTitle()).append(" Results:").append(ls);
+            sb.append("No path from ").append(graph.getName(result.getQuery().getSrcId()))
+                    .append(" to ").append(graph.getName(result.getQuery().getDstId()))
+                    .append(result.isExhausted() ? " within the node budget." : ".").append(ls);
+            if(this.stats && stats != null) {
+                this.appendStats(stats);
+            }
+        }
+        if(!this.stats && stats != null && algorithm.isMemoryBounded()) {
+            sb.append("Peak frontier = ").append(stats.getPeakFrontier()).append(" nodes.").append(ls);
+        }
+        sb.append(ls);
+    }
+
+    /**
+     * Appends the cities of a path, one per line, followed by the
+     * number of hops and the total distance. The distance is the last
+     * of the cumulative distances of the path, the sum of its edge
+     * weights. Long paths are moved to the byte buffer as they grow.
+     * @param graph The graph the path was found on
+     * @param title Name of the algorithm to be printed
+     * @param path The path from source to sink
+     * @param stats Statistics of the search to write after the path,
+     *              or null to leave them out
+     */
+    private void appendPathData(Graph graph, String title, CompactPath path, SearchStats stats)
+            throws IOException {
+        String ls = this.ls;
+        StringBuilder sb = this.text;
+        sb.append(ls).append(title).append(" Results:").append(ls);
+        for (int i = 0; i < path.size(); i++) {
+            sb.append(graph.getName(path.getNode(i))).append(ls);
+            if(sb.length() >= this.buffer.capacity()) {
+                this.putText();
+            }
+        }
+        sb.append("That took ").append(path.size() - 1).append(" hops to find.").append(ls);
+        sb.append("Total distance = ").append((int) path.getDistance()).append(" miles.").append(ls);
+        if(stats != null) {
+            this.appendStats(stats);
+        }
+    }
+
+    /**
+     * Appends the statistics of a search.
+     * @param stats Statistics of the search
+     */
+    private void appendStats(SearchStats stats) {
+        String ls = this.ls;
+        StringBuilder sb = this.text;
+        sb.append("Nodes expanded = ").append(stats.getNodesExpanded())
+                .append(", edges relaxed = ").append(stats.getEdgesRelaxed())
+                .append(", peak frontier = ").append(stats.getPeakFrontier()).append('.').append(ls);
+        sb.append("Setup = ");
+        this.appendMillis(stats.getSetupNanos());
+        sb.append(" ms, search = ");
+        this.appendMillis(stats.getSearchNanos());
+        sb.append(" ms, path = ");
+        this.appendMillis(stats.getPathNanos());
+        sb.append(" ms.").append(ls);
+        if(stats.getAllocatedBytes() >= 0) {
+            sb.append("Allocated = ").append(stats.getAllocatedBytes()).append(" bytes.").append(ls);
+        }
+    }
+
+    /**
+     * Appends nanoseconds as milliseconds with three decimals.
+     */
+    private void appendMillis(long nanos) {
+        long micros = (nanos + 500) / 1000;
+        int fraction = (int) (micros % 1000);
+        this.text.append(micros / 1000).append('.');
+        if(fraction < 100) {
+            this.text.append('0');
+        }
+        if(fraction < 10) {
+            this.text.append('0');
+        }
+        this.text.append(fraction);
+    }
+
+    /**
+     * Appends the result of one query as a JSON object on one line,
+     * with the city names of the path, the distance to each of them,
+     * its hops and its total distance. A result without a path has a
+     * null path.
+     * @param result The result of the query
+     */
+    private void appendJson(RouteResult result) throws IOException {
+        RouteQuery query = result.getQuery();
+        Graph graph = result.getGraph();
+        StringBuilder sb = this.text;
+        sb.append("{\"algorithm\":\"").append(query.getAlgorithm().name().toLowerCase()).append('"');
+        sb.append(",\"source\":");
+        appendQuoted(sb, graph.getName(query.getSrcId()));
+        sb.append(",\"sink\":");
+        appendQuoted(sb, graph.getName(query.getDstId()));
+        sb.append(",\"found\":").append(result.hasPath());
+        sb.append(",\"cached\":").append(result.isCached());
+        sb.append(",\"exhausted\":").append(result.isExhausted());
+        if(result.hasPath()) {
+            CompactPath path = result.getPath();
+            sb.append(",\"hops\":").append(path.size() - 1);
+            sb.append(",\"distance\":").append(path.getDistance());
+            sb.append(",\"path\":[");
+            for (int i = 0; i < path.size(); i++) {
+                if(i > 0) {
+                    sb.append(',');
+                }
+                appendQuoted(sb, graph.getName(path.getNode(i)));
+                if(sb.length() >= this.buffer.capacity()) {
+                    this.putText();
+                }
+            }
+            sb.append("],\"distances\":[");
+            for (int i = 0; i < path.size(); i++) {
+                if(i > 0) {
+                    sb.append(',');
+                }
+                sb.append(path.getDistanceTo(i));
+                if(sb.length() >= this.buffer.capacity()) {
+                    this.putText();
+                }
+            }
+            sb.append(']');
+        } else {
+            sb.append(",\"path\":null");
+        }
+
+        SearchStats stats = result.getStats();
+        if(stats != null && (this.stats || query.getAlgorithm().isMemoryBounded())) {
+            sb.append(",\"stats\":{\"nodesExpanded\":").append(stats.getNodesExpanded());
+            sb.append(",\"edgesRelaxed\":").append(stats.getEdgesRelaxed());
+            sb.append(",\"peakFrontier\":").append(stats.getPeakFrontier());
+            if(this.stats) {
+                sb.append(",\"setupNanos\":").append(stats.getSetupNanos());
+                sb.append(",\"searchNanos\":").append(stats.getSearchNanos());
+                sb.append(",\"pathNanos\":").append(stats.getPathNanos());
+                if(stats.getAllocatedBytes() >= 0) {
+                    sb.append(",\"allocatedBytes\":").append(stats.getAllocatedBytes());
+                }
+            }
+            sb.append('}');
+        }
+        sb.append("}\n");
+    }
+
+    /**
+     * Appends a city name as a JSON string, with quotes, backslashes
+     * and control characters escaped.
+     */
+    private static void appendQuoted(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if(c < 0x20) {
+                sb.append("\\u00").append(Character.forDigit(c >> 4, 16))
+                        .append(Character.forDigit(c & 0xF, 16));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Moves the text buffer into the byte buffer as UTF-8 and empties it.
+     */
+    private void putText() throws IOException {
+        StringBuilder sb = this.text;
+        ByteBuffer buffer = this.buffer;
+        for (int i = 0, n = sb.length(); i < n; i++) {
+            if(buffer.remaining() < 4) {
+                this.drain();
+            }
+            char c = sb.charAt(i);
+            if(c < 0x80) {
+                buffer.put((byte) c);
+            } else if(c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if(Character.isHighSurrogate(c) && i + 1 < n
+                    && Character.isLowSurrogate(sb.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, sb.charAt(++i));
+                buffer.put((byte) (0xF0 | code >> 18)).put((byte) (0x80 | code >> 12 & 0x3F))
+                        .put((byte) (0x80 | code >> 6 & 0x3F)).put((byte) (0x80 | code & 0x3F));
+            } else if(Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F))
+                        .put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        sb.setLength(0);
+    }
+
+    /**
+     * Writes the binary record of one query.
+     * @param result The result of the query
+     */
+    private void putBinary(RouteResult result) throws IOException {
+        CompactPath path = result.getPath();
+        int n = path == null ? 0 : path.size();
+        SearchStats stats = this.stats ? result.getStats() : null;
+        int flags = (result.hasPath() ? FLAG_FOUND : 0) | (result.isCached() ? FLAG_CACHED : 0)
+                | (result.isExhausted() ? FLAG_EXHAUSTED : 0) | (stats != null ? FLAG_STATS : 0);
+
+        ByteBuffer buffer = this.buffer;
+        if(buffer.remaining() < 3 * Integer.BYTES + 2) {
+            this.drain();
+        }
+        buffer.putInt(result.getQuery().getSrcId()).putInt(result.getQuery().getDstId())
+                .put((byte) result.getQuery().getAlgorithm().ordinal()).put((byte) flags).putInt(n);
+        for (int i = 0; i < n; i++) {
+            if(buffer.remaining() < Integer.BYTES) {
+                this.drain();
+            }
+            buffer.putInt(path.getNode(i));
+        }
+        for (int i = 0; i < n; i++) {
+            if(buffer.remaining() < Float.BYTES) {
+                this.drain();
+            }
+            buffer.putFloat(path.getDistanceTo(i));
+        }
+        if(stats != null) {
+            if(buffer.remaining() < STATS_BYTES) {
+                this.drain();
+            }
+            buffer.putLong(stats.getNodesExpanded()).putLong(stats.getEdgesRelaxed())
+                    .putInt(stats.getPeakFrontier()).putLong(stats.getSetupNanos())
+                    .putLong(stats.getSearchNanos()).putLong(stats.getPathNanos())
+                    .putLong(stats.getAllocatedBytes());
+        }
+    }
+
+    /**
+     * Writes out everything in the byte buffer and clears it.
+     */
+    private void drain() throws IOException {
+        this.out.write(this.buffer.array(), 0, this.buffer.position());
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes out the buffered results and flushes the stream.
+     * @throws IOException If writing to the stream fails
+     */
+    @Override
+    public void flush() throws IOException {
+        this.drain();
+        this.out.flush();
+    }
+
+    /**
+     * Writes out the buffered results and closes the stream.
+     * @throws IOException If writing to the stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.out.close();
+        }
+    }
+}
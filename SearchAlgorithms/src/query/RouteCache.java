@@ -0,0 +1,288 @@
+package query;
+
+import graph.Graph;
+import search.Algorithm;
+import search.CompactPath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of found routes keyed by source, sink and
+ * algorithm. Routes are stored as CompactPath objects and evicted
+ * once either the entry limit or the limit on stored nodes is
+ * reached. The cache is split into segments with their own lock so
+ * concurrent queries rarely wait on each other. The limits are split
+ * between the segments so they add up to the limits of the cache,
+ * and small caches get fewer segments so each holds at least one
+ * route. Every segment evicts its own least recently used route, so
+ * eviction is only approximately LRU across the whole cache.
+ * <p>
+ * A cache belongs to one Graph. When it is used with a different
+ * graph, every entry is dropped first, so a changed graph never
+ * serves stale routes. Lookups on an older version of the current
+ * graph, made by queries that started before an update, are misses
+ * and leave the cache as it is. Every route also keeps the graph it
+ * was found on and only answers lookups on that graph, so a route
+ * stored by a query that finished after the switch is never served
+ * for the new graph.
+ * @author Andrew Serra
+ */
+public class RouteCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile Graph graph = null;
+
+    /**
+     * Creates a RouteCache object.
+     * @param maxEntries Largest number of routes kept
+     * @param maxNodes Largest total number of path nodes kept
+     */
+    public RouteCache(int maxEntries, long maxNodes) {
+        if(maxEntries < 1 || maxNodes < 1) {
+            throw new IllegalArgumentException("Cache limits must be at least 1.");
+        }
+        int count = Integer.highestOneBit((int) Math.min(SEGMENTS, Math.min(maxEntries, maxNodes)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0),
+                    maxNodes / count + (i < maxNodes % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Looks up a route. On an undirected graph a symmetric algorithm
+     * may also be answered by the reversed route from sink to source.
+     * @param graph The graph the query runs on
+     * @param query The query to look up
+     * @return The cached path, or null on a miss
+     */
+    public CompactPath get(Graph graph, RouteQuery query) {
+        if(!this.useGraph(graph)) {
+            this.misses.increment();
+            return null;
+        }
+        Algorithm algorithm = query.getAlgorithm();
+        CompactPath path = this.lookup(graph, query.getSrcId(), query.getDstId(), algorithm);
+        if(path == null && algorithm.isSymmetric()) {
+            CompactPath reversed = this.lookup(graph, query.getDstId(), query.getSrcId(), algorithm);
+            if(reversed != null) {
+                path = reversed.reverse(graph);
+            }
+        }
+
+        if(path == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return path;
+    }
+
+    /**
+     * Stores a route. Routes found on a graph that is no longer the
+     * current one are dropped.
+     * @param graph The graph the route was found on
+     * @param query The query that was answered
+     * @param path The path found
+     */
+    public void put(Graph graph, RouteQuery query, CompactPath path) {
+        if(graph != this.graph) {
+            return;
+        }
+        Key key = new Key(query.getSrcId(), query.getDstId(), query.getAlgorithm());
+        this.segmentOf(key).put(key, new Entry(graph, path));
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void invalidate() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Get the number of routes in the cache.
+     * @return The number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Getter method for the number of lookups answered.
+     * @return The hit count
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Getter method for the number of lookups not answered.
+     * @return The miss count
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Getter method for the number of routes evicted.
+     * @return The eviction count
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Representation of the cache counters.
+     * @return String with the size, hits, misses and evictions
+     */
+    @Override
+    public String toString() {
+        return String.format("RouteCache(size=%d, hits=%d, misses=%d, evictions=%d)",
+                this.size(), this.getHits(), this.getMisses(), this.getEvictions());
+    }
+
+    /**
+     * Switches the cache to a graph, dropping all entries if it differs
+     * from the current one, unless it is an older version.
+     * @param graph The graph being queried
+     * @return False if the graph is older than the current one
+     */
+    private boolean useGraph(Graph graph) {
+        if(graph != this.graph) {
+            synchronized (this) {
+                Graph current = this.graph;
+                if(current != null && graph.getVersion() < current.getVersion()) {
+                    return false;
+                }
+                if(graph != current) {
+                    this.graph = graph;
+                    this.invalidate();
+                }
+            }
+        }
+        return true;
+    }
+
+    private CompactPath lookup(Graph graph, int srcId, int dstId, Algorithm algorithm) {
+        Key key = new Key(srcId, dstId, algorithm);
+        return this.segmentOf(key).get(key, graph);
+    }
+
+    private Segment segmentOf(Key key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return this.segments[(hash >>> 16 ^ hash) & (this.segments.length - 1)];
+    }
+
+    /**
+     * Cache key of a route.
+     */
+    private static final class Key {
+        private final int srcId;
+        private final int dstId;
+        private final Algorithm algorithm;
+
+        Key(int srcId, int dstId, Algorithm algorithm) {
+            this.srcId = srcId;
+            this.dstId = dstId;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(obj instanceof Key) {
+                Key other = (Key) obj;
+                return this.srcId == other.srcId && this.dstId == other.dstId
+                        && this.algorithm == other.algorithm;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.srcId * 31 + this.dstId) * 31 + this.algorithm.ordinal();
+        }
+    }
+
+    /**
+     * Cached route and the graph it was found on.
+     */
+    private static final class Entry {
+        private final Graph graph;
+        private final CompactPath path;
+
+        Entry(Graph graph, CompactPath path) {
+            this.graph = graph;
+            this.path = path;
+        }
+    }
+
+    /**
+     * One LRU segment of the cache, guarded by its own lock.
+     */
+    private final class Segment {
+        private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxEntries;
+        private final long maxNodes;
+        private long nodes = 0;
+
+        Segment(int maxEntries, long maxNodes) {
+            this.maxEntries = maxEntries;
+            this.maxNodes = maxNodes;
+        }
+
+        synchronized CompactPath get(Key key, Graph graph) {
+            Entry entry = this.map.get(key);
+            if(entry == null) {
+                return null;
+            }
+            if(entry.graph != graph) {
+                // Stored by a query on a graph that has been replaced
+                this.map.remove(key);
+                this.nodes -= entry.path.size();
+                return null;
+            }
+            return entry.path;
+        }
+
+        synchronized void put(Key key, Entry value) {
+            Entry old = this.map.put(key, value);
+            if(old != null) {
+                this.nodes -= old.path.size();
+            }
+            this.nodes += value.path.size();
+
+            Iterator<Map.Entry<Key, Entry>> eldest = this.map.entrySet().iterator();
+            while ((this.map.size() > this.maxEntries || this.nodes > this.maxNodes)
+                    && this.map.size() > 1) {
+                Map.Entry<Key, Entry> entry = eldest.next();
+                this.nodes -= entry.getValue().path.size();
+                eldest.remove();
+                RouteCache.this.evictions.increment();
+            }
+        }
+
+        synchronized void clear() {
+            this.map.clear();
+            this.nodes = 0;
+        }
+
+        synchronized int size() {
+            return this.map.size();
+        }
+    }
+}
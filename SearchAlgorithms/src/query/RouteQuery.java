@@ -0,0 +1,51 @@
+package query;
+
+import search.Algorithm;
+
+/**
+ * A single route request: run one algorithm from a source
+ * node to a sink node. It is immutable.
+ * @author Andrew Serra
+ */
+public class RouteQuery {
+
+    private final int srcId;
+    private final int dstId;
+    private final Algorithm algorithm;
+
+    /**
+     * Creates a RouteQuery object.
+     * @param srcId Node id of the source city
+     * @param dstId Node id of the sink city
+     * @param algorithm The algorithm to run
+     */
+    public RouteQuery(int srcId, int dstId, Algorithm algorithm) {
+        this.srcId = srcId;
+        this.dstId = dstId;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Getter method for the source node id.
+     * @return The source node id
+     */
+    public int getSrcId() {
+        return this.srcId;
+    }
+
+    /**
+     * Getter method for the sink node id.
+     * @return The sink node id
+     */
+    public int getDstId() {
+        return this.dstId;
+    }
+
+    /**
+     * Getter method for the algorithm.
+     * @return The algorithm to run
+     */
+    public Algorithm getAlgorithm() {
+        return this.algorithm;
+    }
+}
@@ -0,0 +1,109 @@
+package query;
+
+import graph.Graph;
+import search.CompactPath;
+import search.SearchStats;
+
+/**
+ * The answer to a RouteQuery. The path is null when the
+ * sink cannot be reached from the source. The result keeps the
+ * version of the graph it was found on, which may be older than the
+ * current one by the time it is written.
+ * @author Andrew Serra
+ */
+public class RouteResult {
+
+    private final Graph graph;
+    private final RouteQuery query;
+    private final CompactPath path;
+    private final boolean cached;
+    private final SearchStats stats;
+    private final boolean exhausted;
+
+    /**
+     * Creates a RouteResult object.
+     * @param graph The graph the query was answered on
+     * @param query The query that was answered
+     * @param path Path of the nodes from source to sink, or null
+     * @param cached True if the path came from a RouteCache
+     */
+    public RouteResult(Graph graph, RouteQuery query, CompactPath path, boolean cached) {
+        this(graph, query, path, cached, null, false);
+    }
+
+    /**
+     * Creates a RouteResult object of a search that was run.
+     * @param graph The graph the query was answered on
+     * @param query The query that was answered
+     * @param path Path of the nodes from source to sink, or null
+     * @param cached True if the path came from a RouteCache
+     * @param stats Statistics of the search, or null if none was run
+     * @param exhausted True if the search ran out of its node budget
+     */
+    public RouteResult(Graph graph, RouteQuery query, CompactPath path, boolean cached,
+                       SearchStats stats, boolean exhausted) {
+        this.graph = graph;
+        this.query = query;
+        this.path = path;
+        this.cached = cached;
+        this.stats = stats;
+        this.exhausted = exhausted;
+    }
+
+    /**
+     * Getter method for the graph the query was answered on.
+     * @return The Graph object
+     */
+    public Graph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Getter method for the query.
+     * @return The query that was answered
+     */
+    public RouteQuery getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Checks if a path was found.
+     * @return True if the sink was reached
+     */
+    public boolean hasPath() {
+        return this.path != null;
+    }
+
+    /**
+     * Getter method for the path.
+     * @return The node ids from source to sink, or null
+     */
+    public CompactPath getPath() {
+        return this.path;
+    }
+
+    /**
+     * Checks if the answer was served from a cache.
+     * @return True if no search was run for this result
+     */
+    public boolean isCached() {
+        return this.cached;
+    }
+
+    /**
+     * Getter method for the statistics of the search.
+     * @return The SearchStats object, or null if the answer was looked
+     *         up without a search
+     */
+    public SearchStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Checks if the search gave up because its node budget ran out.
+     * @return True if the search stopped before it could finish
+     */
+    public boolean isExhausted() {
+        return this.exhausted;
+    }
+}
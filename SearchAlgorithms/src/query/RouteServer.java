@@ -0,0 +1,323 @@
+package query;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import graph.Graph;
+import graph.GraphUpdate;
+import search.Algorithm;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Answers route queries over HTTP on a graph that stays loaded, so
+ * the start-up, graph loading and JIT warm-up of the Search program
+ * are only paid once. A query is a GET request such as
+ * <pre>
+ *     /route?from=Denver&amp;to=Boston&amp;algorithm=astar&amp;format=json
+ * </pre>
+ * where the algorithm is optional, as in a batch input line, and the
+ * format is one of the ResultFormat names: text, the report of the
+ * Search program, json, one object per result and line, or binary.
+ * stats=true adds the statistics of every search. /metrics reports
+ * the query metrics, if set.
+ * <p>
+ * A POST to /update applies the GraphUpdate in its body, in the
+ * format GraphUpdate.parse reads, and publishes the new graph
+ * version. Queries already running finish on the version they
+ * started on.
+ * <p>
+ * Requests are read on a single dispatcher thread and their queries
+ * are answered on the worker threads of a QueryExecutor, which also
+ * write the responses. At most maxInFlight queries are waiting or
+ * running at once. A request that would go over is turned away at
+ * once with 503 Service Unavailable instead of being queued, so a
+ * client that sends more than the server can answer sees it quickly
+ * and the latency of accepted queries stays bounded. Each query of a
+ * request counts, and a request of more queries than the limit is
+ * refused with 400 Bad Request, as it could never be answered.
+ * @author Andrew Serra
+ */
+public class RouteServer implements AutoCloseable {
+
+    private static final int BACKLOG = 128;
+    private static final int RESPONSE_BUFFER_BYTES = 4096;
+
+    private final QueryExecutor executor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private QueryMetrics metrics = null;
+    private HttpServer server = null;
+
+    /**
+     * Creates a RouteServer object. The server owns the executor and
+     * closes it when it is closed.
+     * @param executor Answers the queries on its worker threads, and
+     *                 holds the graph they run on
+     * @param maxInFlight Largest number of queries waiting or running
+     */
+    public RouteServer(QueryExecutor executor, int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in-flight queries must be at least 1.");
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Sets the metrics reported at /metrics. They should be the
+     * metrics the executor records into.
+     * @param metrics The metrics, or null to report none
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts accepting requests.
+     * @param address Address and port to listen on, port 0 for any
+     * @throws IOException If the address cannot be bound
+     */
+    public void start(InetSocketAddress address) throws IOException {
+        this.server = HttpServer.create(address, BACKLOG);
+        this.server.createContext("/route", this::route);
+        this.server.createContext("/metrics", this::metrics);
+        this.server.createContext("/update", this::update);
+        this.server.start();
+    }
+
+    /**
+     * Getter method for the address the server listens on.
+     * @return The bound address
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Get the number of queries waiting or running.
+     * @return The queries in flight
+     */
+    public int getInFlight() {
+        return this.maxInFlight - this.inFlight.availablePermits();
+    }
+
+    /**
+     * Parses a route request and hands its queries to the workers.
+     * Runs on the dispatcher thread.
+     * @param exchange The request
+     */
+    private void route(HttpExchange exchange) {
+        try {
+            if(!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "text/plain", "Only GET is supported.\n");
+                return;
+            }
+            Map<String, String> params = parameters(exchange.getRequestURI().getRawQuery());
+            String from = params.get("from");
+            String to = params.get("to");
+            if(from == null || to == null) {
+                respond(exchange, 400, "text/plain", "Expected from and to parameters.\n");
+                return;
+            }
+            Graph graph = this.executor.getGraph();
+            int srcId = graph.indexOf(from);
+            int dstId = graph.indexOf(to);
+            if(srcId < 0 || dstId < 0) {
+                respond(exchange, 400, "text/plain", "No such city: " + (srcId < 0 ? from : to) + "\n");
+                return;
+            }
+            Algorithm[] algorithms;
+            try {
+                algorithms = params.containsKey("algorithm")
+                        ? new Algorithm[] { Algorithm.fromName(params.get("algorithm")) }
+                        : Algorithm.defaults();
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+                return;
+            }
+            ResultFormat format;
+            try {
+                format = ResultFormat.fromName(params.getOrDefault("format", "text"));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+                return;
+            }
+            boolean stats = "true".equals(params.get("stats"));
+
+            // One permit per query, so a request of several algorithms can
+            // never run more queries than the limit
+            int permits = algorithms.length;
+            if(permits > this.maxInFlight) {
+                respond(exchange, 400, "text/plain", "A request of " + permits
+                        + " queries exceeds the limit of " + this.maxInFlight
+                        + " queries in flight; name one algorithm.\n");
+                return;
+            }
+            if(!this.inFlight.tryAcquire(permits)) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "text/plain",
+                        "Busy: " + this.maxInFlight + " queries in flight.\n");
+                return;
+            }
+
+            List<CompletableFuture<RouteResult>> results = new ArrayList<>(algorithms.length);
+            try {
+                for (Algorithm algorithm : algorithms) {
+                    results.add(this.executor.submit(new RouteQuery(srcId, dstId, algorithm)));
+                }
+            } catch (RuntimeException e) {
+                this.inFlight.release(permits);
+                throw e;
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((done, error) -> {
+                try {
+                    if(error != null) {
+                        respond(exchange, 500, "text/plain", "Query failed: " + error.getCause() + "\n");
+                    } else {
+                        this.respondResults(exchange, results, format, stats);
+                    }
+                } catch (IOException e) {
+                    exchange.close();
+                } finally {
+                    this.inFlight.release(permits);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes the results of a request in query order. Runs on the
+     * worker thread that finished the last query.
+     */
+    private void respondResults(HttpExchange exchange, List<CompletableFuture<RouteResult>> results,
+                                ResultFormat format, boolean stats) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try ( ResultWriter writer = new ResultWriter(body, format, RESPONSE_BUFFER_BYTES); ) {
+            writer.setStats(stats);
+            for (CompletableFuture<RouteResult> result : results) {
+                writer.accept(result.join());
+            }
+        }
+        respond(exchange, 200, format.getContentType(), body.toByteArray());
+    }
+
+    /**
+     * Applies a batch of graph changes. Runs on the dispatcher thread,
+     * so requests wait while a large graph is copied, but queries that
+     * are already running are not held up.
+     * @param exchange The request
+     */
+    private void update(HttpExchange exchange) {
+        try {
+            if(!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "text/plain", "Only POST is supported.\n");
+                return;
+            }
+            GraphUpdate update;
+            try ( BufferedReader body = new BufferedReader(new InputStreamReader(
+                    exchange.getRequestBody(), StandardCharsets.UTF_8)); ) {
+                update = GraphUpdate.parse(body, "update");
+            }
+            Graph graph = this.executor.update(update);
+            respond(exchange, 200, "text/plain", "Graph version " + graph.getVersion() + ": "
+                    + graph.size() + " cities, " + graph.edgeCount() / 2 + " edges.\n");
+        } catch (IOException | IllegalArgumentException e) {
+            try {
+                respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+            } catch (IOException ignored) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Reports the query metrics. Runs on the dispatcher thread.
+     * @param exchange The request
+     */
+    private void metrics(HttpExchange exchange) {
+        try {
+            QueryMetrics metrics = this.metrics;
+            if(metrics == null) {
+                respond(exchange, 404, "text/plain", "Metrics are not recorded.\n");
+                return;
+            }
+            StringBuilder report = new StringBuilder();
+            metrics.report(report);
+            report.append("In flight = " + this.getInFlight() + " of " + this.maxInFlight + ".\n");
+            respond(exchange, 200, "text/plain", report.toString());
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends a complete response and closes the exchange.
+     */
+    private static void respond(HttpExchange exchange, int status, String type, String body)
+            throws IOException {
+        respond(exchange, status, type + "; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a complete response and closes the exchange.
+     */
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] bytes)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try ( OutputStream out = exchange.getResponseBody(); ) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Splits a raw query string into decoded names and values. A
+     * name without a value maps to "true".
+     * @param query The raw query of the request URI, or null
+     * @return The parameters, the last one winning for repeated names
+     */
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> params = new HashMap<>();
+        if(query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            if(pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "true" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Stops accepting requests and stops the worker threads.
+     */
+    @Override
+    public void close() {
+        if(this.server != null) {
+            this.server.stop(0);
+        }
+        this.executor.close();
+    }
+}
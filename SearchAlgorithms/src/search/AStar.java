@@ -5,6 +5,7 @@ import utils.CityQueue;
 import utils.Pair;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 
 /**
@@ -17,7 +18,7 @@ public class AStar extends SearchAlgorithmBase {
     private final City dst;
     private final HashMap<City, Pair<City, Float>> reverse = new HashMap<>();
     private final CityQueue queue = new CityQueue();
-    private final LinkedList<City> visited = new LinkedList<>();
+    private final HashSet<City> visited = new HashSet<>();
 
     /**
      * Creates a AStar object.
@@ -34,14 +35,18 @@ public class AStar extends SearchAlgorithmBase {
      * Sorts the strings in increasing order depending on the f value.The
      * f value is defined as f(n) = g(n) + h(n) where g(n) is the current
      * distance travelled, and h(n) is the distance to the destination.
+     * The shared connection list of the city is copied, never reordered.
      * @param nextHops Children nodes of the current City object
+     * @return The sorted copy of the children
      */
-    private void sortChildren(City c, LinkedList<City> nextHops) {
-        nextHops.sort((c1, c2) -> {
+    private LinkedList<City> sortChildren(City c, LinkedList<City> nextHops) {
+        LinkedList<City> sorted = new LinkedList<>(nextHops);
+        sorted.sort((c1, c2) -> {
             float f1 = c.distanceTo(c1) + this.dst.distanceTo(c1);
             float f2 = c.distanceTo(c2) + this.dst.distanceTo(c2);
             return (int) (f1 - f2);
         });
+        return sorted;
     }
 
     /**
@@ -50,6 +55,7 @@ public class AStar extends SearchAlgorithmBase {
      * @param dstNode Destination City object
      */
     private void findPath(City dstNode) {
+        long start = System.nanoTime();
         this.path = new LinkedList<>();
         City parentNode = dstNode;
 
@@ -58,13 +64,16 @@ public class AStar extends SearchAlgorithmBase {
             parentNode = this.reverse.get(parentNode).getFirst();
         }
         this.path.addFirst(this.src);
+        this.stats.addPathNanos(System.nanoTime() - start);
     }
 
     /**
      * Executes the search of the destination city iteratively.
      */
-    private void search() {
+    @Override
+    protected void search() {
         while(!this.queue.isEmpty()) {
+            this.stats.expand(this.queue.size());
             Pair<City, City> pair = this.queue.remove();
             City _curr = pair.getFirst();
             City _from = pair.getSecond();
@@ -74,14 +83,14 @@ public class AStar extends SearchAlgorithmBase {
             this.reverse.put(_curr, new Pair<>(_from, dist));
             this.visited.add(_curr);
 
-            LinkedList<City> connections = _curr.getConnections();
-            sortChildren(_curr, connections);
+            LinkedList<City> connections = sortChildren(_curr, _curr.getConnections());
 
             if(this.dst == _curr) {
                 findPath(_curr);
                 break;
             }
 
+            this.stats.relax(connections.size());
             for (City connection : connections) {
                 if (!this.visited.contains(connection)) {
                     this.queue.add(connection, _curr);
@@ -90,10 +99,4 @@ public class AStar extends SearchAlgorithmBase {
         }
     }
 
-    /**
-     * Runs the thread.
-     */
-    public void run() {
-        this.search();
-    }
 }
@@ -0,0 +1,187 @@
+package search;
+
+import graph.Graph;
+
+/**
+ * The search algorithms that can be run on a compact Graph,
+ * together with the title printed above their results.
+ * @author Andrew Serra
+ */
+public enum Algorithm {
+    BFS("Breadth-First Search", false),
+    DFS("Depth-First Search", false),
+    ASTAR("A* Search", true),
+    BIBFS("Bidirectional Breadth-First Search", false),
+    BIASTAR("Bidirectional A* Search", true),
+    CH("Contraction Hierarchy Search", true),
+    DIJKSTRA("Dijkstra Search", true),
+    IDASTAR("Iterative Deepening A* Search", true),
+    SMASTAR("Simplified Memory-Bounded A* Search", false),
+    PBFS("Parallel Breadth-First Search", false);
+
+    private final String title;
+    private final boolean symmetric;
+
+    /**
+     * Creates an Algorithm constant.
+     * @param title Name of the algorithm to be printed
+     * @param symmetric True if the reversed answer of dst to src is
+     *                  a valid answer of src to dst
+     */
+    Algorithm(String title, boolean symmetric) {
+        this.title = title;
+        this.symmetric = symmetric;
+    }
+
+    /**
+     * Getter method for the printed name of the algorithm.
+     * @return The title as a string
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Checks if a path found from the sink to the source can be
+     * reversed to answer the query on an undirected graph. This holds
+     * for algorithms that return a shortest route, but not for BFS
+     * and DFS, whose answers depend on the side they start from.
+     * @return True if reversed answers may be reused
+     */
+    public boolean isSymmetric() {
+        return this.symmetric;
+    }
+
+    /**
+     * Checks if the algorithm searches within a node budget.
+     * @return True for IDA* and SMA*
+     */
+    public boolean isMemoryBounded() {
+        return this == IDASTAR || this == SMASTAR;
+    }
+
+    /**
+     * Creates a search of this algorithm. The search is not run.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @return The search object
+     * @throws IllegalArgumentException For a contraction hierarchy
+     *                                  search, which needs a hierarchy
+     */
+    public GraphSearchBase create(Graph graph, int srcId, int dstId) throws IllegalArgumentException {
+        return this.create(graph, srcId, dstId, graph::estimate);
+    }
+
+    /**
+     * Creates a search of this algorithm with a heuristic for the
+     * A* searches. Other algorithms ignore the heuristic. The search
+     * is not run.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     * @return The search object
+     * @throws IllegalArgumentException For a contraction hierarchy
+     *                                  search, which needs a hierarchy
+     */
+    public GraphSearchBase create(Graph graph, int srcId, int dstId, Heuristic heuristic)
+            throws IllegalArgumentException {
+        return this.create(graph, srcId, dstId, heuristic, BoundedSearchBase.DEFAULT_NODE_BUDGET);
+    }
+
+    /**
+     * Creates a search of this algorithm with a heuristic and a node
+     * budget for the memory-bounded searches. Other algorithms ignore
+     * the budget. The search is not run.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     * @param nodeBudget Node budget of IDA* and SMA*
+     * @return The search object
+     * @throws IllegalArgumentException For a contraction hierarchy
+     *                                  search, which needs a hierarchy
+     */
+    public GraphSearchBase create(Graph graph, int srcId, int dstId, Heuristic heuristic,
+                                  int nodeBudget) throws IllegalArgumentException {
+        return this.create(graph, srcId, dstId, heuristic, nodeBudget, null);
+    }
+
+    /**
+     * Creates a search of this algorithm with a heuristic, a node
+     * budget and a contraction hierarchy. Contraction hierarchy
+     * searches need a hierarchy built on the graph beforehand, since
+     * building one takes far longer than a query; other algorithms
+     * ignore it. The search is not run.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     * @param nodeBudget Node budget of IDA* and SMA*
+     * @param hierarchy Hierarchy of the graph, or null
+     * @return The search object
+     * @throws IllegalArgumentException For a contraction hierarchy
+     *                                  search without a hierarchy of
+     *                                  the graph
+     */
+    public GraphSearchBase create(Graph graph, int srcId, int dstId, Heuristic heuristic,
+                                  int nodeBudget, ContractionHierarchy hierarchy)
+            throws IllegalArgumentException {
+        switch (this) {
+            case BFS:
+                return new GraphBreadthFirstSearch(graph, srcId, dstId);
+            case DFS:
+                return new GraphDepthFirstSearch(graph, srcId, dstId);
+            case BIBFS:
+                return new BidirectionalBreadthFirstSearch(graph, srcId, dstId);
+            case BIASTAR:
+                return new BidirectionalAStar(graph, srcId, dstId, heuristic);
+            case DIJKSTRA:
+                return new DijkstraSearch(graph, srcId, dstId);
+            case IDASTAR:
+                return new GraphIDAStar(graph, srcId, dstId, heuristic, nodeBudget);
+            case SMASTAR:
+                return new GraphSMAStar(graph, srcId, dstId, heuristic, nodeBudget);
+            case PBFS:
+                return new ParallelBreadthFirstSearch(graph, srcId, dstId);
+            case CH:
+                if(hierarchy == null || hierarchy.getGraph() != graph) {
+                    throw new IllegalArgumentException("A contraction hierarchy search needs a hierarchy "
+                            + "of the graph; build one with ContractionHierarchy.build first.");
+                }
+                return new ContractionHierarchySearch(hierarchy, srcId, dstId);
+            default:
+                return new GraphAStar(graph, srcId, dstId, heuristic);
+        }
+    }
+
+    /**
+     * Returns the algorithms run for a query that does not name one.
+     * @return BFS, DFS and A* in that order
+     */
+    public static Algorithm[] defaults() {
+        return new Algorithm[] { BFS, DFS, ASTAR };
+    }
+
+    /**
+     * Looks up an algorithm by a short name such as "bfs", "dfs",
+     * "astar", "a*", "bibfs", "biastar", "ch", "dijkstra", "idastar",
+     * "smastar" or "pbfs". Case is ignored.
+     * @param name Short name of the algorithm
+     * @return The matching Algorithm
+     * @throws IllegalArgumentException If no algorithm matches
+     */
+    public static Algorithm fromName(String name) throws IllegalArgumentException {
+        String key = name.toLowerCase();
+        if(key.equals("a*")) {
+            return ASTAR;
+        }
+        for (Algorithm algorithm : values()) {
+            if(algorithm.name().toLowerCase().equals(key)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("No such algorithm: " + name);
+    }
+}
@@ -0,0 +1,296 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest route distances and next hops between every pair of
+ * nodes. The table is filled by running Dijkstra from every source
+ * in parallel, after which any route is read back in O(path length)
+ * without searching. Row s of the table holds, for every sink t,
+ * the distance from s to t and the node after s on that route.
+ * <p>
+ * The table needs 8 bytes per pair of nodes, so it is only meant
+ * for graphs of a few thousand nodes. It can be saved to a file and
+ * memory mapped back in, in which case lookups read the file pages
+ * directly instead of holding the table on the heap.
+ * @author Andrew Serra
+ */
+public class AllPairsTable {
+
+    public static final int MAGIC = 0x54505041;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final Graph graph;
+    private final int n;
+    private final float[] distances;
+    private final int[] nextHops;
+    private final MappedByteBuffer[] mappedDistances;
+    private final MappedByteBuffer[] mappedNextHops;
+    private final int rowsPerSegment;
+
+    /**
+     * Creates an AllPairsTable backed by arrays.
+     */
+    private AllPairsTable(Graph graph, float[] distances, int[] nextHops) {
+        this.graph = graph;
+        this.n = graph.size();
+        this.distances = distances;
+        this.nextHops = nextHops;
+        this.mappedDistances = null;
+        this.mappedNextHops = null;
+        this.rowsPerSegment = 0;
+    }
+
+    /**
+     * Creates an AllPairsTable backed by mapped file segments.
+     */
+    private AllPairsTable(Graph graph, MappedByteBuffer[] distances,
+                          MappedByteBuffer[] nextHops, int rowsPerSegment) {
+        this.graph = graph;
+        this.n = graph.size();
+        this.distances = null;
+        this.nextHops = null;
+        this.mappedDistances = distances;
+        this.mappedNextHops = nextHops;
+        this.rowsPerSegment = rowsPerSegment;
+    }
+
+    /**
+     * Calculates the memory a table for a graph of n nodes needs.
+     * @param n Number of nodes
+     * @return The size of the table in bytes
+     */
+    public static long requiredBytes(int n) {
+        return 8L * n * n;
+    }
+
+    /**
+     * Runs Dijkstra from every node in parallel and stores the result.
+     * @param graph The graph to precompute
+     * @return The filled AllPairsTable
+     * @throws IllegalStateException If the table cannot fit in an array
+     *                               or in the maximum heap size
+     */
+    public static AllPairsTable build(Graph graph) throws IllegalStateException {
+        int n = graph.size();
+        long cells = (long) n * n;
+        long bytes = requiredBytes(n);
+        long available = Runtime.getRuntime().maxMemory();
+        if(cells > Integer.MAX_VALUE - 8 || bytes > available / 2) {
+            throw new IllegalStateException(String.format(
+                    "All-pairs table for %d nodes needs %d MB, only %d MB of heap is available.",
+                    n, bytes >> 20, available >> 20));
+        }
+
+        float[] distances = new float[(int) cells];
+        int[] nextHops = new int[(int) cells];
+        IntStream.range(0, n).parallel().forEach(src -> fillRow(graph, src, distances, nextHops));
+        return new AllPairsTable(graph, distances, nextHops);
+    }
+
+    /**
+     * Runs Dijkstra from one source and fills its row. The first hop
+     * of every node is inherited from its parent, walking the nodes in
+     * the order they were settled.
+     */
+    private static void fillRow(Graph graph, int src, float[] distances, int[] nextHops) {
+        int n = graph.size();
+        int row = src * n;
+        SearchContext context = SearchContext.get(n);
+        float[] g = context.getScores();
+        int[] parent = context.getParent();
+        int[] settled = context.getFrontier();
+        EpochSet reached = context.getVisited();
+        IndexedMinHeap open = context.getHeap();
+
+        for (int t = 0; t < n; t++) {
+            distances[row + t] = Float.POSITIVE_INFINITY;
+            nextHops[row + t] = -1;
+        }
+
+        int count = 0;
+        g[src] = 0;
+        reached.add(src);
+        open.push(src, 0);
+        while (!open.isEmpty()) {
+            int curr = open.poll();
+            settled[count++] = curr;
+            for (int e = graph.firstEdge(curr); e < graph.endEdge(curr); e++) {
+                int next = graph.getTarget(e);
+                float dist = g[curr] + graph.getWeight(e);
+                if(reached.add(next) || dist < g[next]) {
+                    g[next] = dist;
+                    parent[next] = curr;
+                    open.push(next, dist);
+                }
+            }
+        }
+
+        distances[row + src] = 0;
+        nextHops[row + src] = src;
+        for (int i = 1; i < count; i++) {
+            int node = settled[i];
+            int p = parent[node];
+            distances[row + node] = g[node];
+            nextHops[row + node] = p == src ? node : nextHops[row + p];
+        }
+    }
+
+    /**
+     * Getter method for the graph the table was built on.
+     * @return The Graph object
+     */
+    public Graph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Looks up the shortest route distance between two nodes.
+     * @param src Node id of the source
+     * @param dst Node id of the sink
+     * @return The distance, or infinity if the sink is unreachable
+     */
+    public float distance(int src, int dst) {
+        if(this.distances != null) {
+            return this.distances[src * this.n + dst];
+        }
+        int segment = src / this.rowsPerSegment;
+        int index = (src % this.rowsPerSegment) * this.n + dst;
+        return this.mappedDistances[segment].getFloat(index * Float.BYTES);
+    }
+
+    /**
+     * Looks up the node after the source on the shortest route.
+     * @param src Node id of the source
+     * @param dst Node id of the sink
+     * @return The next node id, or -1 if the sink is unreachable
+     */
+    public int nextHop(int src, int dst) {
+        if(this.nextHops != null) {
+            return this.nextHops[src * this.n + dst];
+        }
+        int segment = src / this.rowsPerSegment;
+        int index = (src % this.rowsPerSegment) * this.n + dst;
+        return this.mappedNextHops[segment].getInt(index * Integer.BYTES);
+    }
+
+    /**
+     * Reads the shortest route between two nodes from the table.
+     * @param src Node id of the source
+     * @param dst Node id of the sink
+     * @return The route, or null if the sink is unreachable
+     */
+    public CompactPath path(int src, int dst) {
+        if(this.nextHop(src, dst) < 0) {
+            return null;
+        }
+        int length = 1;
+        for (int node = src; node != dst; node = this.nextHop(node, dst)) {
+            length++;
+        }
+
+        int[] nodes = new int[length];
+        int node = src;
+        for (int i = 0; i < length; i++) {
+            nodes[i] = node;
+            node = this.nextHop(node, dst);
+        }
+        return CompactPath.of(this.graph, nodes);
+    }
+
+    /**
+     * Writes the table to a file that open() can map back in.
+     * @param file Path of the table file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING); ) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(this.n).putInt(this.graph.edgeCount()).putInt(0);
+            for (int i = 0; i < this.n * this.n; i++) {
+                if(buffer.remaining() < Float.BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putFloat(this.distance(i / this.n, i % this.n));
+            }
+            for (int i = 0; i < this.n * this.n; i++) {
+                if(buffer.remaining() < Integer.BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(this.nextHop(i / this.n, i % this.n));
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Maps a table file written by save(). The table stays on disk
+     * and its pages are read as routes are looked up.
+     * @param file Path of the table file
+     * @param graph The graph the table was built on
+     * @return The mapped AllPairsTable
+     * @throws IOException If the file cannot be read or does not
+     *                     belong to the graph
+     */
+    public static AllPairsTable open(Path file, Graph graph) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ); ) {
+            int n = graph.size();
+            long expected = HEADER_BYTES + requiredBytes(n);
+            if(channel.size() < HEADER_BYTES) {
+                throw new IOException("Not an all-pairs table: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getInt() != MAGIC) {
+                throw new IOException("Not an all-pairs table: " + file);
+            }
+            if(header.getInt() != n || header.getInt() != graph.edgeCount()
+                    || channel.size() != expected) {
+                throw new IOException("All-pairs table does not match the graph: " + file);
+            }
+
+            int rowsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / (4L * Math.max(1, n)));
+            int segments = n == 0 ? 0 : (n + rowsPerSegment - 1) / rowsPerSegment;
+            MappedByteBuffer[] distances = new MappedByteBuffer[segments];
+            MappedByteBuffer[] nextHops = new MappedByteBuffer[segments];
+            long nextHopStart = HEADER_BYTES + 4L * n * n;
+            for (int s = 0; s < segments; s++) {
+                long firstRow = (long) s * rowsPerSegment;
+                long rows = Math.min(rowsPerSegment, n - firstRow);
+                long size = 4L * rows * n;
+                distances[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + 4L * firstRow * n, size);
+                distances[s].order(ByteOrder.LITTLE_ENDIAN);
+                nextHops[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        nextHopStart + 4L * firstRow * n, size);
+                nextHops[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new AllPairsTable(graph, distances, nextHops, rowsPerSegment);
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer and clears it.
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
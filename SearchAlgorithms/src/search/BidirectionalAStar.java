@@ -0,0 +1,144 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+/**
+ * Runs A* search on a compact Graph from the source towards the
+ * sink and from the sink towards the source at the same time. The
+ * side with the smaller open list is expanded next.
+ * <p>
+ * Both sides use the average potential p(n) = (h(n, sink) - h(n,
+ * source)) / 2, negated for the backward side, so the two searches
+ * see the same reduced edge weights and behave like a bidirectional
+ * Dijkstra on them. Every edge that reaches a node already reached
+ * by the other side gives a candidate route, and the shortest one is
+ * kept. The search stops once the smallest keys of the two open lists
+ * add up to no less than that route, as no shorter route can be left.
+ * @author Andrew Serra
+ */
+public class BidirectionalAStar extends GraphSearchBase {
+
+    private final Heuristic heuristic;
+    private int meet = -1;
+    private float best = Float.POSITIVE_INFINITY;
+
+    /**
+     * Creates a BidirectionalAStar object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public BidirectionalAStar(Graph graph, int srcId, int dstId) {
+        this(graph, srcId, dstId, graph::estimate);
+    }
+
+    /**
+     * Creates a BidirectionalAStar object with its own heuristic.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     */
+    public BidirectionalAStar(Graph graph, int srcId, int dstId, Heuristic heuristic) {
+        super(graph, srcId, dstId);
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        if(this.srcId == this.dstId) {
+            findPath(this.dstId);
+            return;
+        }
+        SearchContext backward = this.context.getReverse();
+        Side forwardSide = new Side(this.context, this.parent, this.srcId, this.dstId);
+        Side backwardSide = new Side(backward, backward.getParent(), this.dstId, this.srcId);
+        forwardSide.open.push(this.srcId, this.potential(this.srcId, forwardSide));
+        backwardSide.open.push(this.dstId, this.potential(this.dstId, backwardSide));
+
+        while(!forwardSide.open.isEmpty() && !backwardSide.open.isEmpty()) {
+            if(forwardSide.open.peekKey() + backwardSide.open.peekKey() >= this.best) {
+                break;
+            }
+            if(forwardSide.open.size() <= backwardSide.open.size()) {
+                this.expand(forwardSide, backwardSide);
+            } else {
+                this.expand(backwardSide, forwardSide);
+            }
+        }
+
+        if(this.meet >= 0) {
+            joinPath(this.meet, backwardSide.parent);
+        }
+    }
+
+    /**
+     * Expands the node with the smallest key of one side and
+     * records any route that joins the other side.
+     * @param side The side being expanded
+     * @param other The opposite side
+     */
+    private void expand(Side side, Side other) {
+        this.stats.expand(side.open.size() + other.open.size());
+        int curr = side.open.poll();
+        this.stats.relax(this.graph.degree(curr));
+
+        for (int e = this.graph.firstEdge(curr); e < this.graph.endEdge(curr); e++) {
+            int next = this.graph.getTarget(e);
+            float dist = side.g[curr] + this.graph.getWeight(e);
+            if(side.reached.add(next) || dist < side.g[next]) {
+                // Rounded distances are not perfectly consistent, so an
+                // expanded node goes back on the heap when a shorter
+                // route shows up
+                side.g[next] = dist;
+                side.parent[next] = curr;
+                side.open.push(next, dist + this.potential(next, side));
+
+                if(other.reached.contains(next) && dist + other.g[next] < this.best) {
+                    this.best = dist + other.g[next];
+                    this.meet = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the potential of a node seen from one side. The
+     * potentials of the two sides add up to zero.
+     * @param node Node id
+     * @param side The side the node is reached from
+     * @return The estimate added to the g value of the node
+     */
+    private float potential(int node, Side side) {
+        return (this.heuristic.estimate(node, side.target) - this.heuristic.estimate(node, side.start)) / 2;
+    }
+
+    /**
+     * Open list, reached set, g values and parents of
+     * one direction.
+     */
+    private static final class Side {
+        private final IndexedMinHeap open;
+        private final EpochSet reached;
+        private final float[] g;
+        private final int[] parent;
+        private final int start;
+        private final int target;
+
+        Side(SearchContext context, int[] parent, int start, int target) {
+            this.open = context.getHeap();
+            this.reached = context.getVisited();
+            this.g = context.getScores();
+            this.parent = parent;
+            this.start = start;
+            this.target = target;
+            this.g[start] = 0;
+            this.reached.add(start);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+
+/**
+ * Runs breadth first search on a compact Graph from the source
+ * and the sink at the same time. Each step expands one whole level
+ * of the smaller frontier. Once a level reaches a node seen by the
+ * other side, the level is finished and the meeting node with the
+ * fewest total hops is used, so the path has as few hops as the one
+ * of GraphBreadthFirstSearch while exploring far fewer nodes on long
+ * routes. The graph is undirected, so the backward search follows
+ * the same edges.
+ * @author Andrew Serra
+ */
+public class BidirectionalBreadthFirstSearch extends GraphSearchBase {
+
+    /**
+     * Creates a BidirectionalBreadthFirstSearch object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public BidirectionalBreadthFirstSearch(Graph graph, int srcId, int dstId) {
+        super(graph, srcId, dstId);
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        if(this.srcId == this.dstId) {
+            findPath(this.dstId);
+            return;
+        }
+        SearchContext backward = this.context.getReverse();
+        Side forwardSide = new Side(this.context, this.parent, this.srcId);
+        Side backwardSide = new Side(backward, backward.getParent(), this.dstId);
+
+        while(forwardSide.hasNext() && backwardSide.hasNext()) {
+            int meet = forwardSide.width() <= backwardSide.width()
+                    ? this.expandLevel(forwardSide, backwardSide)
+                    : this.expandLevel(backwardSide, forwardSide);
+            if(meet >= 0) {
+                joinPath(meet, backwardSide.parent);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Expands every node of the current level of one side.
+     * @param side The side being expanded
+     * @param other The opposite side
+     * @return The best meeting node found, or -1 if the sides did
+     *         not meet on this level
+     */
+    private int expandLevel(Side side, Side other) {
+        int end = side.tail;
+        int meet = -1;
+        float best = Float.POSITIVE_INFINITY;
+        while(side.head < end) {
+            this.stats.expand(side.width() + other.width());
+            int curr = side.queue[side.head++];
+            this.stats.relax(this.graph.degree(curr));
+            for (int e = this.graph.firstEdge(curr); e < this.graph.endEdge(curr); e++) {
+                int next = this.graph.getAscendingTarget(e);
+                if(side.visited.add(next)) {
+                    side.depth[next] = side.depth[curr] + 1;
+                    side.parent[next] = curr;
+                    side.queue[side.tail++] = next;
+                    if(other.visited.contains(next)) {
+                        float hops = side.depth[next] + other.depth[next];
+                        if(hops < best) {
+                            best = hops;
+                            meet = next;
+                        }
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * Queue, visited set, hop counts and parents of one direction.
+     */
+    private static final class Side {
+        private final int[] queue;
+        private final EpochSet visited;
+        private final float[] depth;
+        private final int[] parent;
+        private int head = 0;
+        private int tail = 0;
+
+        Side(SearchContext context, int[] parent, int start) {
+            this.queue = context.getFrontier();
+            this.visited = context.getVisited();
+            this.depth = context.getScores();
+            this.parent = parent;
+            this.queue[this.tail++] = start;
+            this.visited.add(start);
+            this.depth[start] = 0;
+        }
+
+        boolean hasNext() {
+            return this.head < this.tail;
+        }
+
+        int width() {
+            return this.tail - this.head;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package search;
+
+import graph.Graph;
+
+/**
+ * A Base class for the memory-bounded A* searches. Besides the
+ * shared per-thread scratch arrays, such a search only holds a
+ * bounded number of search nodes, set by its node budget. When the
+ * budget runs out the search gives up without a path instead of
+ * growing further, and reports that it did. The largest number of
+ * search nodes held at once is kept as the peak frontier of its
+ * SearchStats.
+ * @author Andrew Serra
+ */
+public abstract class BoundedSearchBase extends GraphSearchBase {
+
+    public static final int DEFAULT_NODE_BUDGET = 1 << 20;
+
+    protected final Heuristic heuristic;
+    protected final int nodeBudget;
+    protected boolean exhausted = false;
+
+    /**
+     * Creates a BoundedSearchBase object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     * @param nodeBudget Largest number of search nodes, at least 2
+     * @throws IllegalArgumentException If the budget is below 2
+     */
+    protected BoundedSearchBase(Graph graph, int srcId, int dstId, Heuristic heuristic,
+                                int nodeBudget) throws IllegalArgumentException {
+        super(graph, srcId, dstId);
+        if(nodeBudget < 2) {
+            throw new IllegalArgumentException("Node budget must be at least 2.");
+        }
+        this.heuristic = heuristic;
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Getter method for the node budget.
+     * @return The largest number of search nodes allowed
+     */
+    public int getNodeBudget() {
+        return this.nodeBudget;
+    }
+
+    /**
+     * Checks if the search gave up because the budget ran out.
+     * @return True if the search stopped before it could finish
+     */
+    public boolean isExhausted() {
+        return this.exhausted;
+    }
+}
@@ -1,10 +1,7 @@
 package search;
 
 import graph.City;
-import utils.CityQueue;
-import utils.Pair;
-
-import java.util.*;
+import utils.IntDeque;
 
 /**
  * Runs breadth first search starting from
@@ -14,9 +11,7 @@ import java.util.*;
  */
 public class BreadthFirstSearch extends SearchAlgorithmBase {
 
-    private final HashMap<City, City> reverse = new HashMap<>();
-    private final CityQueue queue = new CityQueue();
-    private final LinkedList<City> visited = new LinkedList<>();
+    private CitySearchContext context;
 
     /**
      * Creates a BreadthFirstSearch object.
@@ -26,64 +21,57 @@ public class BreadthFirstSearch extends SearchAlgorithmBase {
     public BreadthFirstSearch(City entryNode, String dstName) {
         this.src = entryNode;
         this.dst = dstName;
-        this.queue.add(this.src, null);
     }
 
     /**
-     * Sorts the strings in increasing order.
-     * @param nextHops Children nodes of the current City object
+     * Takes the scratch space of the thread.
      */
-    private void sortChildren(LinkedList<City> nextHops) {
-        nextHops.sort(Comparator.comparing(City::toString));
+    @Override
+    protected void prepare() {
+        this.context = CitySearchContext.get();
     }
 
     /**
      * Creates the linked list containing all nodes forming
-     * the path in reverse from sink to source.
-     * @param dstNode Destination City object
+     * the path from source to sink.
+     * @param dstId Id of the destination city
      */
-    private void findPath(City dstNode) {
-        this.path = new LinkedList<>();
-        City parentNode = dstNode;
-
-        while (parentNode != this.src) {
-            this.path.addFirst(parentNode);
-            parentNode = this.reverse.get(parentNode);
-        }
-        this.path.addFirst(this.src);
+    private void findPath(int dstId) {
+        long start = System.nanoTime();
+        this.path = this.context.pathTo(dstId);
+        this.stats.addPathNanos(System.nanoTime() - start);
     }
 
     /**
-     * Executes the search of the destination city iteratively.
+     * Executes the search of the destination city iteratively. The
+     * queue holds city ids, and a city is only added the first
+     * time it is reached, with the city it was reached from as its
+     * parent. Children are visited in increasing "city, state" order.
      */
-    private void search() {
-        while(!this.queue.isEmpty()) {
-            Pair<City, City> pair = this.queue.remove();
-            City _curr = pair.getFirst();
-            City _from = pair.getSecond();
-            this.reverse.put(_curr, _from);
-            this.visited.add(_curr);
-
-            LinkedList<City> connections = _curr.getConnections();
-            sortChildren(connections);
+    @Override
+    protected void search() {
+        CitySearchContext context = this.context;
+        IntDeque queue = context.getFrontier();
+        queue.addLast(context.discover(this.src, -1));
+        while(!queue.isEmpty()) {
+            this.stats.expand(queue.size());
+            int curr = queue.removeFirst();
+            City _curr = context.getCity(curr);
 
             if(this.dst.equals(_curr.getName())) {
-                findPath(_curr);
+                findPath(curr);
                 break;
             }
 
-            for (City connection : connections) {
-                if (!this.visited.contains(connection)) {
-                    this.queue.add(connection, _curr);
+            int children = context.sortChildren(_curr, CitySearchContext.ASCENDING);
+            this.stats.relax(children);
+            for (int i = 0; i < children; i++) {
+                int next = context.discover(context.getChild(i), curr);
+                if(next >= 0) {
+                    queue.addLast(next);
                 }
             }
         }
     }
 
-    /**
-     * Runs the thread.
-     */
-    public void run() {
-        this.search();
-    }
 }
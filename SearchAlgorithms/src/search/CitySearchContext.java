@@ -0,0 +1,223 @@
+package search;
+
+import graph.City;
+import utils.IntDeque;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+/**
+ * Scratch space of the searches on linked City objects that run on
+ * the same thread. Cities get dense int ids in the order they are
+ * discovered, through an open-addressing table keyed by City equality
+ * whose slots are stamped with an epoch, so clearing it between
+ * queries takes O(1) time. The parent of every discovered city, the
+ * frontier and the sorted children are kept by id in arrays that are
+ * reused, so once they have grown to the size of the searches a
+ * query allocates nothing until its path is built.
+ * @author Andrew Serra
+ */
+public class CitySearchContext {
+
+    private static final ThreadLocal<CitySearchContext> CONTEXTS =
+            ThreadLocal.withInitial(CitySearchContext::new);
+    private static final int INITIAL_CITIES = 64;
+
+    /**
+     * Orders cities by "city, state", as their toString does.
+     */
+    static final Comparator<City> ASCENDING = CitySearchContext::compareLabels;
+
+    /**
+     * Orders cities by reversed "city, state".
+     */
+    static final Comparator<City> DESCENDING = (a, b) -> compareLabels(b, a);
+
+    private City[] cities = new City[INITIAL_CITIES];
+    private int[] parent = new int[INITIAL_CITIES];
+    private int count = 0;
+    private City[] keys = new City[INITIAL_CITIES * 2];
+    private int[] ids = new int[INITIAL_CITIES * 2];
+    private int[] stamps = new int[INITIAL_CITIES * 2];
+    private int epoch = 1;
+    private final IntDeque frontier = new IntDeque(INITIAL_CITIES);
+    private City[] children = new City[16];
+
+    /**
+     * Returns the context of the calling thread, cleared.
+     * @return The CitySearchContext of the current thread
+     */
+    public static CitySearchContext get() {
+        CitySearchContext context = CONTEXTS.get();
+        context.reset();
+        return context;
+    }
+
+    /**
+     * Forgets every city and empties the frontier in O(1). The
+     * cities themselves stay referenced until they are overwritten.
+     */
+    public void reset() {
+        this.count = 0;
+        this.frontier.clear();
+        if(++this.epoch == 0) {
+            Arrays.fill(this.stamps, 0);
+            this.epoch = 1;
+        }
+    }
+
+    /**
+     * Gives a city an id if it has none yet.
+     * @param city The city reached
+     * @param parentId Id of the city it was reached from, or -1
+     * @return The new id, or -1 if the city was already discovered
+     */
+    public int discover(City city, int parentId) {
+        int mask = this.keys.length - 1;
+        int slot = mix(city.hashCode()) & mask;
+        while (this.stamps[slot] == this.epoch) {
+            if(this.keys[slot].equals(city)) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if(this.count == this.cities.length) {
+            this.cities = Arrays.copyOf(this.cities, this.count * 2);
+            this.parent = Arrays.copyOf(this.parent, this.count * 2);
+        }
+        int id = this.count++;
+        this.cities[id] = city;
+        this.parent[id] = parentId;
+        this.keys[slot] = city;
+        this.ids[slot] = id;
+        this.stamps[slot] = this.epoch;
+        if(this.count * 2 > this.keys.length) {
+            this.rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Doubles the table and adds the discovered cities again.
+     */
+    private void rehash() {
+        int capacity = this.keys.length * 2;
+        this.keys = new City[capacity];
+        this.ids = new int[capacity];
+        this.stamps = new int[capacity];
+        this.epoch = 1;
+        int mask = capacity - 1;
+        for (int id = 0; id < this.count; id++) {
+            int slot = mix(this.cities[id].hashCode()) & mask;
+            while (this.stamps[slot] == this.epoch) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = this.cities[id];
+            this.ids[slot] = id;
+            this.stamps[slot] = this.epoch;
+        }
+    }
+
+    /**
+     * Getter method for a discovered city.
+     * @param id Id of the city
+     * @return The City object
+     */
+    public City getCity(int id) {
+        return this.cities[id];
+    }
+
+    /**
+     * Getter method for the city a city was discovered from.
+     * @param id Id of the city
+     * @return Id of its parent, or -1 for the start
+     */
+    public int getParent(int id) {
+        return this.parent[id];
+    }
+
+    /**
+     * Getter method for the frontier of discovered city ids.
+     * @return The empty deque of the thread
+     */
+    public IntDeque getFrontier() {
+        return this.frontier;
+    }
+
+    /**
+     * Copies the connections of a city into the children array and
+     * sorts them. The shared connection list is never reordered.
+     * @param city The city being expanded
+     * @param order The order of the children
+     * @return The number of children, read with getChild
+     */
+    public int sortChildren(City city, Comparator<City> order) {
+        LinkedList<City> connections = city.getConnections();
+        int n = connections.size();
+        if(n > this.children.length) {
+            this.children = new City[Integer.highestOneBit(n) << 1];
+        }
+        int i = 0;
+        for (City connection : connections) {
+            this.children[i++] = connection;
+        }
+        Arrays.sort(this.children, 0, n, order);
+        return n;
+    }
+
+    /**
+     * Getter method for a child sorted by sortChildren.
+     * @param i Position of the child
+     * @return The City object
+     */
+    public City getChild(int i) {
+        return this.children[i];
+    }
+
+    /**
+     * Builds the path from the start to a discovered city.
+     * @param id Id of the last city
+     * @return The linked list of cities from the start to the city
+     */
+    public LinkedList<City> pathTo(int id) {
+        LinkedList<City> path = new LinkedList<>();
+        for (int node = id; node >= 0; node = this.parent[node]) {
+            path.addFirst(this.cities[node]);
+        }
+        return path;
+    }
+
+    /**
+     * Compares the "city, state" labels of two cities character by
+     * character, as comparing their toString would, without building
+     * the strings.
+     */
+    private static int compareLabels(City a, City b) {
+        String nameA = a.getName();
+        String nameB = b.getName();
+        int lengthA = nameA.length() + 2 + a.getState().length();
+        int lengthB = nameB.length() + 2 + b.getState().length();
+        int n = Math.min(lengthA, lengthB);
+        for (int i = 0; i < n; i++) {
+            char ca = labelAt(a, nameA, i);
+            char cb = labelAt(b, nameB, i);
+            if(ca != cb) {
+                return ca - cb;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    private static char labelAt(City city, String name, int i) {
+        if(i < name.length()) {
+            return name.charAt(i);
+        }
+        i -= name.length();
+        return i == 0 ? ',' : i == 1 ? ' ' : city.getState().charAt(i - 2);
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,108 @@
+package search;
+
+import graph.City;
+import graph.Graph;
+
+import java.util.LinkedList;
+
+/**
+ * A path stored as the int ids of its nodes, from source to sink,
+ * together with the distance from the source to every node on it.
+ * The distances are summed hop by hop from the source, so the last
+ * one is the total distance of the path. It is immutable.
+ * @author Andrew Serra
+ */
+public class CompactPath {
+
+    private final int[] nodes;
+    private final float[] cumulative;
+
+    /**
+     * Creates a CompactPath object.
+     * @param nodes Node ids from source to sink, not copied
+     * @param cumulative Distance from the source to each node, not copied
+     */
+    public CompactPath(int[] nodes, float[] cumulative) {
+        this.nodes = nodes;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Creates a CompactPath and sums its edge weights on a graph.
+     * @param graph The graph the path runs on
+     * @param nodes Node ids from source to sink, not copied
+     * @return The CompactPath object
+     */
+    public static CompactPath of(Graph graph, int[] nodes) {
+        float[] cumulative = new float[nodes.length];
+        float distance = 0;
+        for (int i = 1; i < nodes.length; i++) {
+            distance += graph.weightBetween(nodes[i - 1], nodes[i]);
+            cumulative[i] = distance;
+        }
+        return new CompactPath(nodes, cumulative);
+    }
+
+    /**
+     * Get the number of nodes on the path.
+     * @return The number of nodes, one more than the hops
+     */
+    public int size() {
+        return this.nodes.length;
+    }
+
+    /**
+     * Getter method for a node of the path.
+     * @param i Position on the path, 0 is the source
+     * @return The node id
+     */
+    public int getNode(int i) {
+        return this.nodes[i];
+    }
+
+    /**
+     * Getter method for the distance from the source to a node of
+     * the path.
+     * @param i Position on the path, 0 is the source
+     * @return The sum of the edge weights up to that node
+     */
+    public float getDistanceTo(int i) {
+        return this.cumulative[i];
+    }
+
+    /**
+     * Getter method for the total distance.
+     * @return The sum of the edge weights along the path
+     */
+    public float getDistance() {
+        return this.cumulative[this.cumulative.length - 1];
+    }
+
+    /**
+     * Creates the same path walked from sink to source. The distances
+     * are summed again from the new source, so they match a path that
+     * was found in that direction.
+     * @param graph The graph the path runs on
+     * @return The reversed CompactPath
+     */
+    public CompactPath reverse(Graph graph) {
+        int[] reversed = new int[this.nodes.length];
+        for (int i = 0; i < this.nodes.length; i++) {
+            reversed[i] = this.nodes[this.nodes.length - 1 - i];
+        }
+        return CompactPath.of(graph, reversed);
+    }
+
+    /**
+     * Creates City views of the path.
+     * @param graph The graph the path runs on
+     * @return The linked list of cities from source to sink
+     */
+    public LinkedList<City> toCities(Graph graph) {
+        LinkedList<City> cities = new LinkedList<>();
+        for (int node : this.nodes) {
+            cities.addLast(graph.toCity(node));
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,262 @@
+package search;
+
+import graph.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A contraction hierarchy of a Graph. Every node has a rank, the
+ * position it was contracted in, and keeps only its edges to nodes
+ * of higher rank. Some of these edges are shortcuts that skip a
+ * contracted node, their middle node, and stand for the two edges
+ * through it. Every shortest route can be found by searching only
+ * upward from both of its ends, which is what
+ * ContractionHierarchySearch does.
+ * <p>
+ * The upward edges are stored in CSR form like the Graph itself.
+ * @author Andrew Serra
+ */
+public class ContractionHierarchy {
+
+    public static final int MAGIC = 0x48434843;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private final Graph graph;
+    private final int[] rank;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] weights;
+    private final int[] middles;
+
+    /**
+     * Creates a ContractionHierarchy object.
+     * @param graph The graph that was contracted
+     * @param rank Contraction position of every node
+     * @param offsets Start of the upward edges of every node, n + 1 entries
+     * @param targets Higher ranked end of every upward edge
+     * @param weights Length of every upward edge
+     * @param middles Node skipped by every upward edge, -1 for real edges
+     */
+    ContractionHierarchy(Graph graph, int[] rank, int[] offsets, int[] targets,
+                         float[] weights, int[] middles) {
+        this.graph = graph;
+        this.rank = rank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+    }
+
+    /**
+     * Contracts every node of a graph.
+     * @param graph The graph to preprocess
+     * @return The ContractionHierarchy object
+     */
+    public static ContractionHierarchy build(Graph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    /**
+     * Getter method for the graph the hierarchy was built on.
+     * @return The Graph object
+     */
+    public Graph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Getter method for the rank of a node.
+     * @param node Node id
+     * @return The position the node was contracted in
+     */
+    public int getRank(int node) {
+        return this.rank[node];
+    }
+
+    /**
+     * Get the number of upward edges, shortcuts included.
+     * @return The number of upward edges
+     */
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Get the number of shortcuts added by the contraction.
+     * @return The number of upward edges that skip a node
+     */
+    public int shortcutCount() {
+        int count = 0;
+        for (int middle : this.middles) {
+            if(middle >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Getter method for the index of the first upward edge of a node.
+     * @param node Node id
+     * @return The index of the first upward edge
+     */
+    public int firstEdge(int node) {
+        return this.offsets[node];
+    }
+
+    /**
+     * Getter method for the index after the last upward edge of a node.
+     * @param node Node id
+     * @return The end index of the upward edges
+     */
+    public int endEdge(int node) {
+        return this.offsets[node + 1];
+    }
+
+    /**
+     * Getter method for the higher ranked end of an upward edge.
+     * @param edge Edge index
+     * @return The node id
+     */
+    public int getTarget(int edge) {
+        return this.targets[edge];
+    }
+
+    /**
+     * Getter method for the length of an upward edge.
+     * @param edge Edge index
+     * @return The weight of the edge
+     */
+    public float getWeight(int edge) {
+        return this.weights[edge];
+    }
+
+    /**
+     * Getter method for the node an upward edge skips.
+     * @param edge Edge index
+     * @return The middle node id, or -1 for a real edge
+     */
+    public int getMiddle(int edge) {
+        return this.middles[edge];
+    }
+
+    /**
+     * Looks up the node skipped by the edge between two nodes. The
+     * edge is stored with the lower ranked of the two.
+     * @param a Node id of one end
+     * @param b Node id of the other end
+     * @return The middle node id, or -1 for a real edge
+     * @throws IllegalArgumentException If the nodes are not connected
+     */
+    public int middleBetween(int a, int b) throws IllegalArgumentException {
+        int low = this.rank[a] < this.rank[b] ? a : b;
+        int high = low == a ? b : a;
+        for (int e = this.offsets[low]; e < this.offsets[low + 1]; e++) {
+            if(this.targets[e] == high) {
+                return this.middles[e];
+            }
+        }
+        throw new IllegalArgumentException("No hierarchy edge between " + a + " and " + b);
+    }
+
+    /**
+     * Writes the hierarchy to a file that open() can read back.
+     * @param file Path of the hierarchy file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING); ) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(this.graph.size()).putInt(this.graph.edgeCount())
+                    .putInt(this.targets.length);
+            putInts(channel, buffer, this.rank);
+            putInts(channel, buffer, this.offsets);
+            putInts(channel, buffer, this.targets);
+            for (float weight : this.weights) {
+                if(buffer.remaining() < Float.BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putFloat(weight);
+            }
+            putInts(channel, buffer, this.middles);
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Reads a hierarchy file written by save().
+     * @param file Path of the hierarchy file
+     * @param graph The graph the hierarchy was built on
+     * @return The ContractionHierarchy object
+     * @throws IOException If the file cannot be read or does not
+     *                     belong to the graph
+     */
+    public static ContractionHierarchy open(Path file, Graph graph) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ); ) {
+            if(channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a contraction hierarchy: " + file);
+            }
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            if(header.getInt() != MAGIC) {
+                throw new IOException("Not a contraction hierarchy: " + file);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int up = header.getInt();
+            if(n != graph.size() || m != graph.edgeCount() || up < 0
+                    || channel.size() != HEADER_BYTES + 4L * (2L * n + 1 + 3L * up)) {
+                throw new IOException("Contraction hierarchy does not match the graph: " + file);
+            }
+
+            int[] rank = new int[n];
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[up];
+            float[] weights = new float[up];
+            int[] middles = new int[up];
+            long position = HEADER_BYTES;
+            map(channel, position, 4L * n).asIntBuffer().get(rank);
+            position += 4L * n;
+            map(channel, position, 4L * (n + 1)).asIntBuffer().get(offsets);
+            position += 4L * (n + 1);
+            map(channel, position, 4L * up).asIntBuffer().get(targets);
+            position += 4L * up;
+            map(channel, position, 4L * up).asFloatBuffer().get(weights);
+            position += 4L * up;
+            map(channel, position, 4L * up).asIntBuffer().get(middles);
+            return new ContractionHierarchy(graph, rank, offsets, targets, weights, middles);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putInts(FileChannel channel, ByteBuffer buffer, int[] values)
+            throws IOException {
+        for (int value : values) {
+            if(buffer.remaining() < Integer.BYTES) {
+                drain(channel, buffer);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer and clears it.
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,188 @@
+package search;
+
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * Finds a shortest route with a ContractionHierarchy. Dijkstra is
+ * run from both ends at once, each following only upward edges, and
+ * the route is the best node reached from both sides. A side stops
+ * once its smallest key is no smaller than the best route found.
+ * Nodes that can be reached more cheaply from a higher ranked node
+ * are stalled and not expanded, as they cannot be on a shortest
+ * route. The shortcuts on the route found are finally unpacked
+ * into the real edges they stand for.
+ * @author Andrew Serra
+ */
+public class ContractionHierarchySearch extends GraphSearchBase {
+
+    private final ContractionHierarchy hierarchy;
+    private int meet = -1;
+    private float best = Float.POSITIVE_INFINITY;
+    private int[] nodes;
+    private int length;
+    private int[] stack;
+
+    /**
+     * Creates a ContractionHierarchySearch object.
+     * @param hierarchy The hierarchy of the graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public ContractionHierarchySearch(ContractionHierarchy hierarchy, int srcId, int dstId) {
+        super(hierarchy.getGraph(), srcId, dstId);
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        SearchContext backward = this.context.getReverse();
+        Side forwardSide = new Side(this.context, this.parent, this.srcId);
+        Side backwardSide = new Side(backward, backward.getParent(), this.dstId);
+
+        while(true) {
+            boolean forwardDone = forwardSide.open.isEmpty() || forwardSide.open.peekKey() >= this.best;
+            boolean backwardDone = backwardSide.open.isEmpty() || backwardSide.open.peekKey() >= this.best;
+            if(forwardDone && backwardDone) {
+                break;
+            }
+            if(backwardDone || (!forwardDone
+                    && forwardSide.open.peekKey() <= backwardSide.open.peekKey())) {
+                this.expand(forwardSide, backwardSide);
+            } else {
+                this.expand(backwardSide, forwardSide);
+            }
+        }
+
+        if(this.meet >= 0) {
+            this.unpackPath(backwardSide.parent);
+        }
+    }
+
+    /**
+     * Settles the node with the smallest key of one side.
+     * @param side The side being expanded
+     * @param other The opposite side
+     */
+    private void expand(Side side, Side other) {
+        this.stats.expand(side.open.size() + other.open.size());
+        int curr = side.open.poll();
+        float g = side.g[curr];
+        if(other.reached.contains(curr) && g + other.g[curr] < this.best) {
+            this.best = g + other.g[curr];
+            this.meet = curr;
+        }
+
+        int first = this.hierarchy.firstEdge(curr);
+        int end = this.hierarchy.endEdge(curr);
+        this.stats.relax(end - first);
+        for (int e = first; e < end; e++) {
+            int next = this.hierarchy.getTarget(e);
+            if(side.reached.contains(next) && side.g[next] + this.hierarchy.getWeight(e) < g) {
+                return;
+            }
+        }
+        for (int e = first; e < end; e++) {
+            int next = this.hierarchy.getTarget(e);
+            float dist = g + this.hierarchy.getWeight(e);
+            if(side.reached.add(next) || dist < side.g[next]) {
+                side.g[next] = dist;
+                side.parent[next] = curr;
+                side.open.push(next, dist);
+            }
+        }
+    }
+
+    /**
+     * Creates the compact path from the two parent chains, replacing
+     * every shortcut with the real edges it skips.
+     * @param reverseParent Parents of the search from the sink
+     */
+    private void unpackPath(int[] reverseParent) {
+        long start = System.nanoTime();
+        int forward = 0;
+        for (int node = this.meet; node != this.srcId; node = this.parent[node]) {
+            forward++;
+        }
+        int[] hops = new int[forward + 1];
+        int node = this.meet;
+        for (int i = forward; i >= 0; i--) {
+            hops[i] = node;
+            if(i > 0) {
+                node = this.parent[node];
+            }
+        }
+
+        this.nodes = new int[Math.max(16, hops.length * 2)];
+        this.stack = new int[16];
+        this.length = 0;
+        this.nodes[this.length++] = this.srcId;
+        for (int i = 1; i < hops.length; i++) {
+            this.unpackEdge(hops[i - 1], hops[i]);
+        }
+        for (node = this.meet; node != this.dstId; node = reverseParent[node]) {
+            this.unpackEdge(node, reverseParent[node]);
+        }
+        this.compactPath = CompactPath.of(this.graph, Arrays.copyOf(this.nodes, this.length));
+        this.nodes = null;
+        this.stack = null;
+        this.stats.addPathNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Appends the real nodes after a on the edge from a to b. An
+     * explicit stack is used so deep shortcut nesting cannot overflow.
+     * @param a Node id the edge leaves
+     * @param b Node id the edge enters
+     */
+    private void unpackEdge(int a, int b) {
+        int top = 0;
+        this.stack[top++] = a;
+        this.stack[top++] = b;
+        while (top > 0) {
+            int to = this.stack[--top];
+            int from = this.stack[--top];
+            int middle = this.hierarchy.middleBetween(from, to);
+            if(middle < 0) {
+                if(this.length == this.nodes.length) {
+                    this.nodes = Arrays.copyOf(this.nodes, this.length * 2);
+                }
+                this.nodes[this.length++] = to;
+                continue;
+            }
+            if(top + 4 > this.stack.length) {
+                this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+            }
+            // The second half is pushed first so the first half is unpacked first
+            this.stack[top++] = middle;
+            this.stack[top++] = to;
+            this.stack[top++] = from;
+            this.stack[top++] = middle;
+        }
+    }
+
+    /**
+     * Open list, reached set, distances and parents of one direction.
+     */
+    private static final class Side {
+        private final IndexedMinHeap open;
+        private final EpochSet reached;
+        private final float[] g;
+        private final int[] parent;
+
+        Side(SearchContext context, int[] parent, int start) {
+            this.open = context.getHeap();
+            this.reached = context.getVisited();
+            this.g = context.getScores();
+            this.parent = parent;
+            this.g[start] = 0;
+            this.reached.add(start);
+            this.open.push(start, 0);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * Builds a ContractionHierarchy by contracting the nodes of a Graph
+ * one at a time. Contracting a node removes it from the remaining
+ * graph and adds a shortcut between two of its neighbours whenever
+ * the route through it is the only shortest one, which is checked
+ * with a bounded local Dijkstra (the witness search).
+ * <p>
+ * Nodes are contracted in increasing order of their edge difference,
+ * the number of shortcuts contracting them would add minus the edges
+ * they remove, plus the number of neighbours already contracted so
+ * the order spreads evenly over the graph. Priorities are updated
+ * lazily: a node taken from the queue is scored again and put back
+ * if it is no longer the smallest.
+ * @author Andrew Serra
+ */
+final class Contractor {
+
+    private static final int WITNESS_SETTLE_LIMIT = 100;
+
+    private final Graph graph;
+    private final int n;
+    private final int[][] neighbours;
+    private final float[][] weights;
+    private final int[][] middles;
+    private final int[] degree;
+    private final int[] deleted;
+    private final int[] rank;
+
+    private final int[][] upTargets;
+    private final float[][] upWeights;
+    private final int[][] upMiddles;
+
+    private final float[] witnessDist;
+    private final EpochSet witnessSeen;
+    private final IndexedMinHeap witnessHeap;
+
+    private int[] pendingFrom = new int[16];
+    private int[] pendingTo = new int[16];
+    private float[] pendingWeight = new float[16];
+    private int pending = 0;
+
+    /**
+     * Creates a Contractor object with a copy of the graph's edges.
+     * @param graph The graph to contract
+     */
+    Contractor(Graph graph) {
+        this.graph = graph;
+        this.n = graph.size();
+        this.neighbours = new int[this.n][];
+        this.weights = new float[this.n][];
+        this.middles = new int[this.n][];
+        this.degree = new int[this.n];
+        this.deleted = new int[this.n];
+        this.rank = new int[this.n];
+        this.upTargets = new int[this.n][];
+        this.upWeights = new float[this.n][];
+        this.upMiddles = new int[this.n][];
+        this.witnessDist = new float[this.n];
+        this.witnessSeen = new EpochSet(this.n);
+        this.witnessHeap = new IndexedMinHeap(this.n);
+
+        for (int node = 0; node < this.n; node++) {
+            int degree = graph.degree(node);
+            int first = graph.firstEdge(node);
+            this.neighbours[node] = new int[Math.max(4, degree)];
+            this.weights[node] = new float[Math.max(4, degree)];
+            this.middles[node] = new int[Math.max(4, degree)];
+            for (int i = 0; i < degree; i++) {
+                this.neighbours[node][i] = graph.getTarget(first + i);
+                this.weights[node][i] = graph.getWeight(first + i);
+                this.middles[node][i] = -1;
+            }
+            this.degree[node] = degree;
+        }
+    }
+
+    /**
+     * Contracts every node and collects the upward edges.
+     * @return The finished ContractionHierarchy
+     */
+    ContractionHierarchy contract() {
+        IndexedMinHeap queue = new IndexedMinHeap(this.n);
+        for (int node = 0; node < this.n; node++) {
+            queue.push(node, this.priority(node));
+        }
+
+        int next = 0;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            float priority = this.priority(node);
+            if(!queue.isEmpty() && priority > queue.peekKey()) {
+                queue.push(node, priority);
+                continue;
+            }
+            this.rank[node] = next++;
+            this.contractNode(node);
+        }
+        return this.toHierarchy();
+    }
+
+    /**
+     * Scores a node for the contraction order.
+     * @param node Node id
+     * @return Edge difference plus contracted neighbours
+     */
+    private float priority(int node) {
+        int shortcuts = this.findShortcuts(node);
+        return shortcuts - this.degree[node] + this.deleted[node];
+    }
+
+    /**
+     * Removes a node from the remaining graph. Its remaining edges
+     * all lead to nodes of higher rank and become its upward edges.
+     * @param node Node id
+     */
+    private void contractNode(int node) {
+        int degree = this.degree[node];
+        this.upTargets[node] = Arrays.copyOf(this.neighbours[node], degree);
+        this.upWeights[node] = Arrays.copyOf(this.weights[node], degree);
+        this.upMiddles[node] = Arrays.copyOf(this.middles[node], degree);
+
+        this.findShortcuts(node);
+        for (int i = 0; i < this.pending; i++) {
+            this.addEdge(this.pendingFrom[i], this.pendingTo[i], this.pendingWeight[i], node);
+            this.addEdge(this.pendingTo[i], this.pendingFrom[i], this.pendingWeight[i], node);
+        }
+        for (int i = 0; i < degree; i++) {
+            int neighbour = this.neighbours[node][i];
+            this.removeEdge(neighbour, node);
+            this.deleted[neighbour]++;
+        }
+        this.degree[node] = 0;
+        this.neighbours[node] = null;
+        this.weights[node] = null;
+        this.middles[node] = null;
+    }
+
+    /**
+     * Finds the shortcuts that contracting a node needs and keeps
+     * them in the pending arrays.
+     * @param node Node id
+     * @return The number of shortcuts
+     */
+    private int findShortcuts(int node) {
+        this.pending = 0;
+        int degree = this.degree[node];
+        int[] neighbours = this.neighbours[node];
+        float[] weights = this.weights[node];
+        float maxWeight = 0;
+        for (int i = 0; i < degree; i++) {
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+
+        for (int i = 0; i < degree - 1; i++) {
+            int from = neighbours[i];
+            this.witnessSearch(from, node, weights[i] + maxWeight);
+            for (int j = i + 1; j < degree; j++) {
+                int to = neighbours[j];
+                float via = weights[i] + weights[j];
+                if(!this.witnessSeen.contains(to) || this.witnessDist[to] > via) {
+                    this.addPending(from, to, via);
+                }
+            }
+        }
+        return this.pending;
+    }
+
+    /**
+     * Runs a local Dijkstra that avoids one node, stopping at the
+     * distance limit or after a fixed number of settled nodes.
+     * @param src Node id to start from
+     * @param avoid Node id being contracted
+     * @param limit Largest distance of interest
+     */
+    private void witnessSearch(int src, int avoid, float limit) {
+        this.witnessSeen.clear();
+        this.witnessHeap.clear();
+        this.witnessDist[src] = 0;
+        this.witnessSeen.add(src);
+        this.witnessHeap.push(src, 0);
+
+        int settled = 0;
+        while (!this.witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+            if(this.witnessHeap.peekKey() > limit) {
+                break;
+            }
+            int curr = this.witnessHeap.poll();
+            settled++;
+            int[] neighbours = this.neighbours[curr];
+            float[] weights = this.weights[curr];
+            for (int i = 0; i < this.degree[curr]; i++) {
+                int next = neighbours[i];
+                if(next == avoid) {
+                    continue;
+                }
+                float dist = this.witnessDist[curr] + weights[i];
+                if(this.witnessSeen.add(next) || dist < this.witnessDist[next]) {
+                    this.witnessDist[next] = dist;
+                    this.witnessHeap.push(next, dist);
+                }
+            }
+        }
+    }
+
+    private void addPending(int from, int to, float weight) {
+        if(this.pending == this.pendingFrom.length) {
+            int capacity = this.pending * 2;
+            this.pendingFrom = Arrays.copyOf(this.pendingFrom, capacity);
+            this.pendingTo = Arrays.copyOf(this.pendingTo, capacity);
+            this.pendingWeight = Arrays.copyOf(this.pendingWeight, capacity);
+        }
+        this.pendingFrom[this.pending] = from;
+        this.pendingTo[this.pending] = to;
+        this.pendingWeight[this.pending] = weight;
+        this.pending++;
+    }
+
+    /**
+     * Adds an edge of the remaining graph, or shortens an existing one.
+     * @param from Node id the edge leaves
+     * @param to Node id the edge enters
+     * @param weight Length of the edge
+     * @param middle Contracted node the edge skips, or -1
+     */
+    private void addEdge(int from, int to, float weight, int middle) {
+        int degree = this.degree[from];
+        int[] neighbours = this.neighbours[from];
+        for (int i = 0; i < degree; i++) {
+            if(neighbours[i] == to) {
+                if(weight < this.weights[from][i]) {
+                    this.weights[from][i] = weight;
+                    this.middles[from][i] = middle;
+                }
+                return;
+            }
+        }
+        if(degree == neighbours.length) {
+            this.neighbours[from] = Arrays.copyOf(neighbours, degree * 2);
+            this.weights[from] = Arrays.copyOf(this.weights[from], degree * 2);
+            this.middles[from] = Arrays.copyOf(this.middles[from], degree * 2);
+        }
+        this.neighbours[from][degree] = to;
+        this.weights[from][degree] = weight;
+        this.middles[from][degree] = middle;
+        this.degree[from]++;
+    }
+
+    /**
+     * Removes an edge of the remaining graph.
+     * @param from Node id the edge leaves
+     * @param to Node id the edge enters
+     */
+    private void removeEdge(int from, int to) {
+        int last = this.degree[from] - 1;
+        int[] neighbours = this.neighbours[from];
+        for (int i = 0; i <= last; i++) {
+            if(neighbours[i] == to) {
+                neighbours[i] = neighbours[last];
+                this.weights[from][i] = this.weights[from][last];
+                this.middles[from][i] = this.middles[from][last];
+                this.degree[from]--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Packs the upward edges of every node into arrays.
+     * @return The ContractionHierarchy object
+     */
+    private ContractionHierarchy toHierarchy() {
+        int[] offsets = new int[this.n + 1];
+        for (int node = 0; node < this.n; node++) {
+            offsets[node + 1] = offsets[node] + this.upTargets[node].length;
+        }
+        int m = offsets[this.n];
+        int[] targets = new int[m];
+        float[] weights = new float[m];
+        int[] middles = new int[m];
+        for (int node = 0; node < this.n; node++) {
+            int length = this.upTargets[node].length;
+            System.arraycopy(this.upTargets[node], 0, targets, offsets[node], length);
+            System.arraycopy(this.upWeights[node], 0, weights, offsets[node], length);
+            System.arraycopy(this.upMiddles[node], 0, middles, offsets[node], length);
+        }
+        return new ContractionHierarchy(this.graph, this.rank, offsets, targets, weights, middles);
+    }
+}
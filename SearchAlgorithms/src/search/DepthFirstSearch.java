@@ -1,11 +1,7 @@
 package search;
 
 import graph.City;
-import utils.CityStack;
-import utils.Pair;
-
-import java.util.HashMap;
-import java.util.LinkedList;
+import utils.IntDeque;
 
 /**
  * Runs depth first search starting from
@@ -14,9 +10,8 @@ import java.util.LinkedList;
  * @author Andrew Serra
  */
 public class DepthFirstSearch extends SearchAlgorithmBase {
-    private final HashMap<City, City> reverse = new HashMap<>();
-    private final CityStack stack = new CityStack();
-    private final LinkedList<City> visited = new LinkedList<>();
+
+    private CitySearchContext context;
 
     /**
      * Creates a DepthFirstSearch object.
@@ -26,64 +21,58 @@ public class DepthFirstSearch extends SearchAlgorithmBase {
     public DepthFirstSearch(City entryNode, String dstName) {
         this.src = entryNode;
         this.dst = dstName;
-        this.stack.add(this.src, null);
     }
 
     /**
-     * Sorts the strings in reversed order.
-     * @param nextHops Children nodes of the current City object
+     * Takes the scratch space of the thread.
      */
-    private void sortChildren(LinkedList<City> nextHops) {
-        nextHops.sort((o1, o2) -> o2.toString().compareTo(o1.toString()));
+    @Override
+    protected void prepare() {
+        this.context = CitySearchContext.get();
     }
 
     /**
      * Creates the linked list containing all nodes forming
-     * the path in reverse from sink to source.
-     * @param dstNode Destination City object
+     * the path from source to sink.
+     * @param dstId Id of the destination city
      */
-    private void findPath(City dstNode) {
-        this.path = new LinkedList<>();
-        City parentNode = dstNode;
-
-        while (parentNode != this.src) {
-            this.path.addFirst(parentNode);
-            parentNode = this.reverse.get(parentNode);
-        }
-        this.path.addFirst(this.src);
+    private void findPath(int dstId) {
+        long start = System.nanoTime();
+        this.path = this.context.pathTo(dstId);
+        this.stats.addPathNanos(System.nanoTime() - start);
     }
 
     /**
-     * Executes the search of the destination city iteratively.
+     * Executes the search of the destination city iteratively. The
+     * stack holds city ids, and a city is only added the first
+     * time it is reached, with the city it was reached from as its
+     * parent. Children are pushed in reversed "city, state" order,
+     * so the first of them is expanded first.
      */
-    private void search() {
-        while(!this.stack.isEmpty()) {
-            Pair<City, City> pair = this.stack.remove();
-            City _curr = pair.getFirst();
-            City _from = pair.getSecond();
-            this.reverse.put(_curr, _from);
-            this.visited.add(_curr);
-
-            LinkedList<City> connections = _curr.getConnections();
-            sortChildren(connections);
+    @Override
+    protected void search() {
+        CitySearchContext context = this.context;
+        IntDeque stack = context.getFrontier();
+        stack.addLast(context.discover(this.src, -1));
+        while(!stack.isEmpty()) {
+            this.stats.expand(stack.size());
+            int curr = stack.removeLast();
+            City _curr = context.getCity(curr);
 
             if(this.dst.equals(_curr.getName())) {
-                findPath(_curr);
+                findPath(curr);
                 break;
             }
 
-            for (City connection : connections) {
-                if (!this.visited.contains(connection)) {
-                    this.stack.add(connection, _curr);
+            int children = context.sortChildren(_curr, CitySearchContext.DESCENDING);
+            this.stats.relax(children);
+            for (int i = 0; i < children; i++) {
+                int next = context.discover(context.getChild(i), curr);
+                if(next >= 0) {
+                    stack.addLast(next);
                 }
             }
         }
     }
 
-    /**
-     * Runs the thread.
-     */
-    public void run() {
-        this.search();
-    }
 }
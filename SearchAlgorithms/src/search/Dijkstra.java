@@ -0,0 +1,183 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * Exact single source search on the edge weights of a Graph. It
+ * either builds the full shortest path tree of a source or stops as
+ * soon as every node of a target set is settled, so the routes from
+ * one depot to many destinations take a single search. Asked for the
+ * k nearest of a set of targets it stops at the k-th target settled,
+ * as targets are settled in order of their route distance. Tentative
+ * distances are kept in the SearchContext of the calling thread, and
+ * only settled nodes are copied into the returned tree, so a search
+ * that stops early allocates in proportion to the nodes it settled
+ * rather than to the graph.
+ * @author Andrew Serra
+ */
+public class Dijkstra {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Graph graph;
+
+    /**
+     * Creates a Dijkstra object.
+     * @param graph The graph to search
+     */
+    public Dijkstra(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Finds the shortest routes from a source to every reachable node.
+     * @param src Node id of the source
+     * @return The full ShortestPathTree
+     */
+    public ShortestPathTree tree(int src) {
+        return this.search(src, null, -1, null, null);
+    }
+
+    /**
+     * Finds the shortest routes from a source to a set of targets,
+     * stopping once all of them are settled. The tree also holds
+     * every other node settled on the way.
+     * @param src Node id of the source
+     * @param targets Node ids of the destinations
+     * @return The ShortestPathTree covering the targets
+     */
+    public ShortestPathTree toTargets(int src, int[] targets) {
+        return this.search(src, targets, -1, null, null);
+    }
+
+    /**
+     * Finds the shortest routes from a source to a set of targets and
+     * counts the work in the statistics of a search run.
+     * @param src Node id of the source
+     * @param targets Node ids of the destinations
+     * @param stats Statistics of the run
+     * @return The ShortestPathTree covering the targets
+     */
+    ShortestPathTree toTargets(int src, int[] targets, SearchStats stats) {
+        return this.search(src, targets, -1, null, stats);
+    }
+
+    /**
+     * Finds the k targets with the shortest routes from a source in
+     * one search, stopping once the k-th of them is settled. With
+     * k = 1 this is the nearest target.
+     * @param src Node id of the source
+     * @param targets Node ids of the candidate destinations
+     * @param k Number of targets to find, at least 1
+     * @return The NearestTargets, fewer than k if fewer are reachable
+     * @throws IllegalArgumentException If k is less than 1
+     */
+    public NearestTargets nearest(int src, int[] targets, int k) throws IllegalArgumentException {
+        if(k < 1) {
+            throw new IllegalArgumentException("Number of nearest targets must be at least 1.");
+        }
+        int[] found = new int[Math.min(k, targets.length)];
+        ShortestPathTree tree = this.search(src, targets, found.length, found, null);
+        int count = 0;
+        while (count < found.length && found[count] >= 0) {
+            count++;
+        }
+        return new NearestTargets(tree, Arrays.copyOf(found, count));
+    }
+
+    /**
+     * Runs Dijkstra until the open list is empty or enough targets are
+     * settled.
+     * @param src Node id of the source
+     * @param targets Node ids of the destinations, or null for all nodes
+     * @param limit Number of targets to settle before stopping, -1 for
+     *              all of them
+     * @param found Receives the targets in the order they are settled,
+     *              or null; unused entries are -1
+     * @param stats Statistics to count the work in, or null
+     * @return The ShortestPathTree
+     */
+    private ShortestPathTree search(int src, int[] targets, int limit, int[] found, SearchStats stats) {
+        int n = this.graph.size();
+        SearchContext context = SearchContext.get(n);
+        float[] g = context.getScores();
+        int[] tentative = context.getParent();
+        EpochSet reached = context.getVisited();
+        EpochSet pending = context.getMarked();
+        IndexedMinHeap open = context.getHeap();
+
+        int[] nodes = new int[INITIAL_CAPACITY];
+        int[] parents = new int[INITIAL_CAPACITY];
+        float[] distances = new float[INITIAL_CAPACITY];
+
+        int remaining = -1;
+        if(targets != null) {
+            remaining = 0;
+            for (int target : targets) {
+                if(pending.add(target)) {
+                    remaining++;
+                }
+            }
+            if(limit >= 0) {
+                remaining = Math.min(remaining, limit);
+            }
+        }
+        if(found != null) {
+            Arrays.fill(found, -1);
+        }
+
+        int settled = 0;
+        int hits = 0;
+        g[src] = 0;
+        tentative[src] = -1;
+        reached.add(src);
+        open.push(src, 0);
+        while (!open.isEmpty() && remaining != 0) {
+            if(stats != null) {
+                stats.expand(open.size());
+            }
+            int curr = open.poll();
+            if(settled == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * settled);
+                parents = Arrays.copyOf(parents, 2 * settled);
+                distances = Arrays.copyOf(distances, 2 * settled);
+            }
+            // The tentative parent of a settled node never changes
+            // again, so it is replaced by the node's index in the tree,
+            // which its children then read as their parent index
+            nodes[settled] = curr;
+            parents[settled] = curr == src ? -1 : tentative[tentative[curr]];
+            distances[settled] = g[curr];
+            tentative[curr] = settled++;
+            if(remaining > 0 && pending.contains(curr)) {
+                pending.remove(curr);
+                remaining--;
+                if(found != null) {
+                    found[hits++] = curr;
+                }
+            }
+
+            if(remaining == 0) {
+                break;
+            }
+            if(stats != null) {
+                stats.relax(this.graph.degree(curr));
+            }
+            for (int e = this.graph.firstEdge(curr); e < this.graph.endEdge(curr); e++) {
+                int next = this.graph.getTarget(e);
+                float dist = g[curr] + this.graph.getWeight(e);
+                if(reached.add(next) || dist < g[next]) {
+                    g[next] = dist;
+                    tentative[next] = curr;
+                    open.push(next, dist);
+                }
+            }
+        }
+        return new ShortestPathTree(this.graph, Arrays.copyOf(nodes, settled),
+                Arrays.copyOf(parents, settled), Arrays.copyOf(distances, settled));
+    }
+}
@@ -0,0 +1,34 @@
+package search;
+
+import graph.Graph;
+
+/**
+ * Finds a shortest route between two cities with the Dijkstra
+ * engine, stopping once the sink is settled, so single queries run
+ * the same search as the one-to-many ones.
+ * @author Andrew Serra
+ */
+public class DijkstraSearch extends GraphSearchBase {
+
+    /**
+     * Creates a DijkstraSearch object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public DijkstraSearch(Graph graph, int srcId, int dstId) {
+        super(graph, srcId, dstId);
+    }
+
+    /**
+     * Executes the search of the destination city.
+     */
+    @Override
+    protected void search() {
+        ShortestPathTree tree = new Dijkstra(this.graph)
+                .toTargets(this.srcId, new int[] { this.dstId }, this.stats);
+        long start = System.nanoTime();
+        this.compactPath = tree.pathTo(this.dstId);
+        this.stats.addPathNanos(System.nanoTime() - start);
+    }
+}
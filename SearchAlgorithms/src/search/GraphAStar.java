@@ -0,0 +1,87 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+/**
+ * Runs A* search on a compact Graph starting from the
+ * source node id. Nodes are expanded in increasing global
+ * f value, f(n) = g(n) + h(n), where g(n) is the distance
+ * travelled from the source and h(n) is an estimate of the
+ * distance to the destination, by default the graph's own. The
+ * route is the shortest one if the estimate is admissible.
+ * @author Andrew Serra
+ */
+public class GraphAStar extends GraphSearchBase {
+
+    private final Heuristic heuristic;
+
+    /**
+     * Creates a GraphAStar object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public GraphAStar(Graph graph, int srcId, int dstId) {
+        this(graph, srcId, dstId, graph::estimate);
+    }
+
+    /**
+     * Creates a GraphAStar object with its own heuristic.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     */
+    public GraphAStar(Graph graph, int srcId, int dstId, Heuristic heuristic) {
+        super(graph, srcId, dstId);
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Estimates the remaining distance to the destination.
+     * @param node Node id
+     * @return The h value of the node
+     */
+    private float heuristic(int node) {
+        return this.heuristic.estimate(node, this.dstId);
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        float[] g = this.context.getScores();
+        EpochSet reached = this.context.getVisited();
+        IndexedMinHeap open = this.context.getHeap();
+
+        g[this.srcId] = 0;
+        reached.add(this.srcId);
+        open.push(this.srcId, this.heuristic(this.srcId));
+        while(!open.isEmpty()) {
+            this.stats.expand(open.size());
+            int curr = open.poll();
+
+            if(curr == this.dstId) {
+                findPath(curr);
+                break;
+            }
+
+            this.stats.relax(this.graph.degree(curr));
+            for (int e = this.graph.firstEdge(curr); e < this.graph.endEdge(curr); e++) {
+                int next = this.graph.getTarget(e);
+                float dist = g[curr] + this.graph.getWeight(e);
+                if(reached.add(next) || dist < g[next]) {
+                    // Rounded distances are not perfectly consistent, so an
+                    // expanded node goes back on the heap when a shorter
+                    // route shows up
+                    g[next] = dist;
+                    this.parent[next] = curr;
+                    open.push(next, dist + this.heuristic(next));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+
+/**
+ * Runs breadth first search on a compact Graph starting
+ * from the source node id. Neighbours are visited in increasing
+ * "city, state" order, matching BreadthFirstSearch.
+ * @author Andrew Serra
+ */
+public class GraphBreadthFirstSearch extends GraphSearchBase {
+
+    /**
+     * Creates a GraphBreadthFirstSearch object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public GraphBreadthFirstSearch(Graph graph, int srcId, int dstId) {
+        super(graph, srcId, dstId);
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        int[] queue = this.context.getFrontier();
+        EpochSet visited = this.context.getVisited();
+        int head = 0;
+        int tail = 0;
+
+        queue[tail++] = this.srcId;
+        visited.add(this.srcId);
+        while(head < tail) {
+            this.stats.expand(tail - head);
+            int curr = queue[head++];
+
+            if(curr == this.dstId) {
+                findPath(curr);
+                break;
+            }
+
+            this.stats.relax(this.graph.degree(curr));
+            for (int e = this.graph.firstEdge(curr); e < this.graph.endEdge(curr); e++) {
+                int next = this.graph.getAscendingTarget(e);
+                if(visited.add(next)) {
+                    this.parent[next] = curr;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+
+/**
+ * Runs depth first search on a compact Graph starting
+ * from the source node id. Neighbours are pushed in decreasing
+ * "city, state" order, matching DepthFirstSearch.
+ * @author Andrew Serra
+ */
+public class GraphDepthFirstSearch extends GraphSearchBase {
+
+    /**
+     * Creates a GraphDepthFirstSearch object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public GraphDepthFirstSearch(Graph graph, int srcId, int dstId) {
+        super(graph, srcId, dstId);
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        int[] stack = this.context.getFrontier();
+        EpochSet pushed = this.context.getVisited();
+        int top = 0;
+
+        stack[top++] = this.srcId;
+        pushed.add(this.srcId);
+        while(top > 0) {
+            this.stats.expand(top);
+            int curr = stack[--top];
+
+            if(curr == this.dstId) {
+                findPath(curr);
+                break;
+            }
+
+            this.stats.relax(this.graph.degree(curr));
+            for (int e = this.graph.firstEdge(curr); e < this.graph.endEdge(curr); e++) {
+                int next = this.graph.getDescendingTarget(e);
+                if(pushed.add(next)) {
+                    this.parent[next] = curr;
+                    stack[top++] = next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+
+/**
+ * Runs iterative deepening A* on a compact Graph. Each iteration is
+ * a depth first search that cuts off every route whose f value,
+ * f(n) = g(n) + h(n), is above a bound. Raising the bound only to
+ * the smallest f value cut off would take about one iteration per
+ * distinct f value on real-valued distances, so the bound grows by
+ * a constant factor instead, or to that f value if it is larger, as
+ * in IDA*-CR. An iteration that reaches the sink keeps searching
+ * under the length of the best route found so far, so the route
+ * returned is the shortest one within the bound, and so the shortest
+ * route overall. The current route is held as an explicit stack.
+ * <p>
+ * Within an iteration a node is not entered again unless it is
+ * reached with a smaller g value than before, and no node is entered
+ * with a g value above the smallest one seen in any iteration, since
+ * the route that gave it is still within every later bound. Without
+ * the second check a wide bound enters the nodes of a cyclic graph
+ * over and over from ever shorter routes. Both checks use per-thread
+ * scratch arrays sized to the graph, so the memory of the search
+ * grows with the graph and not only with the route. The node
+ * budget caps the number of nodes expanded over all iterations. If it
+ * runs out after a route was found, that route is returned, and the
+ * search still reports that it ran out since a shorter one may have
+ * been missed.
+ * @author Andrew Serra
+ */
+public class GraphIDAStar extends BoundedSearchBase {
+
+    private static final float BOUND_GROWTH = 1.25f;
+
+    private int[] route = null;
+    private float routeDistance = Float.POSITIVE_INFINITY;
+    private EpochSet reached;
+    private float[] bestG;
+
+    /**
+     * Creates a GraphIDAStar object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     * @param nodeBudget Largest number of node expansions
+     */
+    public GraphIDAStar(Graph graph, int srcId, int dstId, Heuristic heuristic, int nodeBudget) {
+        super(graph, srcId, dstId, heuristic, nodeBudget);
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        // The smallest g value of every node over all iterations, kept
+        // in the scratch space of the reverse context
+        SearchContext best = this.context.getReverse();
+        this.reached = best.getVisited();
+        this.bestG = best.getScores();
+        this.reached.add(this.srcId);
+        this.bestG[this.srcId] = 0;
+
+        float bound = this.heuristic.estimate(this.srcId, this.dstId);
+        while(bound != Float.POSITIVE_INFINITY && !this.exhausted && this.route == null) {
+            bound = Math.max(this.iterate(bound), bound * BOUND_GROWTH);
+        }
+        if(this.route != null) {
+            long start = System.nanoTime();
+            this.compactPath = CompactPath.of(this.graph, this.route);
+            this.stats.addPathNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs one depth first iteration under a bound. Once a route to
+     * the sink is found, only shorter routes are searched for.
+     * @param bound Largest f value allowed in this iteration
+     * @return The smallest f value above the bound, or infinity if
+     *         nothing was cut off
+     */
+    private float iterate(float bound) {
+        // The stack is indexed by depth, so the parent array is free
+        // to hold the next edge to try at every depth
+        int[] stack = this.context.getFrontier();
+        int[] nextEdge = this.parent;
+        float[] g = this.context.getScores();
+        EpochSet seen = this.context.getVisited();
+        seen.clear();
+
+        float next = Float.POSITIVE_INFINITY;
+        int depth = 0;
+        stack[depth] = this.srcId;
+        nextEdge[depth] = this.graph.firstEdge(this.srcId);
+        g[this.srcId] = 0;
+        seen.add(this.srcId);
+        this.stats.expand(1);
+
+        while(depth >= 0) {
+            int curr = stack[depth];
+            if(curr == this.dstId) {
+                if(g[curr] < this.routeDistance) {
+                    this.keepRoute(stack, depth, g[curr]);
+                }
+                depth--;
+                continue;
+            }
+
+            int e = nextEdge[depth];
+            if(e == this.graph.endEdge(curr)) {
+                depth--;
+                continue;
+            }
+            nextEdge[depth] = e + 1;
+            this.stats.relax(1);
+
+            int child = this.graph.getTarget(e);
+            float dist = g[curr] + this.graph.getWeight(e);
+            if(seen.contains(child) && dist >= g[child]) {
+                continue;
+            }
+            if(this.reached.contains(child) && dist > this.bestG[child]) {
+                continue;
+            }
+            float f = dist + this.heuristic.estimate(child, this.dstId);
+            if(f > this.routeDistance) {
+                continue;
+            }
+            if(f > bound) {
+                next = Math.min(next, f);
+                continue;
+            }
+            seen.add(child);
+            g[child] = dist;
+            this.reached.add(child);
+            this.bestG[child] = dist;
+
+            if(this.stats.getNodesExpanded() >= this.nodeBudget) {
+                this.exhausted = true;
+                return bound;
+            }
+            depth++;
+            stack[depth] = child;
+            nextEdge[depth] = this.graph.firstEdge(child);
+            this.stats.expand(depth + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Keeps the nodes on the stack as the best route found so far.
+     * @param stack Nodes of the current route
+     * @param depth Position of the sink on the stack
+     * @param distance Length of the route
+     */
+    private void keepRoute(int[] stack, int depth, float distance) {
+        this.route = new int[depth + 1];
+        System.arraycopy(stack, 0, this.route, 0, depth + 1);
+        this.routeDistance = distance;
+    }
+}
@@ -0,0 +1,362 @@
+package search;
+
+import graph.Graph;
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * Runs simplified memory-bounded A* (SMA*) on a compact Graph. The
+ * search tree is held in a fixed pool of at most nodeBudget search
+ * nodes. Successors are generated one at a time from the open node
+ * with the smallest f value. When the pool is full, the leaf with
+ * the largest f value is forgotten, and its parent remembers that f
+ * value so the branch is generated again once it looks best. A
+ * node whose successors have all been generated takes the smallest
+ * f value of its children, so what is learned about a branch is kept
+ * after its nodes are forgotten.
+ * <p>
+ * The search tree would otherwise hold every cyclic route of the
+ * graph, so a successor is only generated if no route reached its
+ * city with a smaller g value before, and never if the city is
+ * already on the branch being extended. The smallest g value of
+ * every city is kept in the per-thread scratch arrays.
+ * <p>
+ * With enough memory for the shortest route the result is optimal.
+ * With less, the best route that fits is returned, and if none fits
+ * it gives up without a path. Forgotten branches can be generated
+ * again many times, so the search also gives up once it has taken a
+ * fixed number of steps per node of the budget, and reports that as
+ * running out of the budget too.
+ * @author Andrew Serra
+ */
+public class GraphSMAStar extends BoundedSearchBase {
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final long STEPS_PER_NODE = 8;
+
+    private int[] node;
+    private float[] g;
+    private float[] f;
+    private int[] parentSlot;
+    private int[] depth;
+    private int[] nextEdge;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] prevSibling;
+    private int[] childCount;
+    private int freeSlot = -1;
+    private int allocated = 0;
+    private int used = 0;
+
+    private IndexedMinHeap open;
+    private IndexedMinHeap leaves;
+    private EpochSet reached;
+    private float[] bestG;
+
+    /**
+     * Creates a GraphSMAStar object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param heuristic Admissible estimate of route distances
+     * @param nodeBudget Largest number of search nodes held at once
+     */
+    public GraphSMAStar(Graph graph, int srcId, int dstId, Heuristic heuristic, int nodeBudget) {
+        super(graph, srcId, dstId, heuristic, nodeBudget);
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    @Override
+    protected void search() {
+        this.grow(Math.min(this.nodeBudget, INITIAL_SLOTS));
+        this.reached = this.context.getVisited();
+        this.bestG = this.context.getScores();
+        this.reached.add(this.srcId);
+        this.bestG[this.srcId] = 0;
+        int root = this.newSlot(this.srcId, 0, this.heuristic.estimate(this.srcId, this.dstId), -1);
+        this.open.push(root, this.f[root]);
+        this.leaves.push(root, -this.f[root]);
+
+        long maxSteps = STEPS_PER_NODE * this.nodeBudget;
+        for (long steps = 0; !this.open.isEmpty(); steps++) {
+            if(steps >= maxSteps) {
+                this.exhausted = true;
+                break;
+            }
+            int best = this.open.peek();
+            float key = this.open.peekKey();
+            if(key == Float.POSITIVE_INFINITY) {
+                this.exhausted = true;
+                break;
+            }
+            if(this.node[best] == this.dstId) {
+                this.routeFromSlot(best);
+                break;
+            }
+
+            this.stats.expand(this.used);
+            int e = this.nextSuccessor(best);
+            if(e < 0) {
+                // Every successor is in memory, so the node is done
+                this.open.remove(best);
+                if(this.childCount[best] > 0) {
+                    this.backup(best);
+                } else if(best == root) {
+                    break;
+                } else {
+                    this.f[best] = Float.POSITIVE_INFINITY;
+                    this.forget(best);
+                }
+                continue;
+            }
+
+            if(this.used == this.nodeBudget && !this.forgetWorstLeaf(best)) {
+                this.exhausted = true;
+                break;
+            }
+            this.addChild(best, e, key);
+        }
+    }
+
+    /**
+     * Generates the search node of a successor.
+     * @param slot Slot of the node being expanded
+     * @param edge Edge index leading to the successor
+     * @param key Open key of the node being expanded
+     */
+    private void addChild(int slot, int edge, float key) {
+        int target = this.graph.getTarget(edge);
+        float dist = this.g[slot] + this.graph.getWeight(edge);
+        float estimate = Math.max(key, dist + this.heuristic.estimate(target, this.dstId));
+        if(target != this.dstId && this.depth[slot] + 2 > this.nodeBudget) {
+            // The route cannot be extended to the sink within the budget
+            estimate = Float.POSITIVE_INFINITY;
+        }
+
+        int child = this.newSlot(target, dist, estimate, slot);
+        this.depth[child] = this.depth[slot] + 1;
+        if(this.childCount[slot] == 0) {
+            this.leaves.remove(slot);
+        }
+        this.nextSibling[child] = this.firstChild[slot];
+        this.prevSibling[child] = -1;
+        if(this.firstChild[slot] >= 0) {
+            this.prevSibling[this.firstChild[slot]] = child;
+        }
+        this.firstChild[slot] = child;
+        this.childCount[slot]++;
+
+        this.open.push(child, estimate);
+        this.leaves.push(child, -estimate);
+    }
+
+    /**
+     * Finds the next successor of a node that is not in memory,
+     * skipping cities reached before by a shorter route and cities on
+     * the branch of the node.
+     * @param slot Slot of the node being expanded
+     * @return The edge index, or -1 if every successor is in memory
+     *         or skipped
+     */
+    private int nextSuccessor(int slot) {
+        int curr = this.node[slot];
+        int end = this.graph.endEdge(curr);
+        while (this.nextEdge[slot] < end) {
+            int e = this.nextEdge[slot]++;
+            this.stats.relax(1);
+            int target = this.graph.getTarget(e);
+            float dist = this.g[slot] + this.graph.getWeight(e);
+            if(this.reached.add(target) || dist < this.bestG[target]) {
+                this.bestG[target] = dist;
+            } else if(dist > this.bestG[target] || this.onBranch(slot, target)) {
+                // A forgotten node is generated again with the same g
+                // value, so only ties on the branch itself are cycles
+                continue;
+            }
+            if(!this.hasChild(slot, target)) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    private boolean onBranch(int slot, int target) {
+        for (int x = slot; x >= 0; x = this.parentSlot[x]) {
+            if(this.node[x] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasChild(int slot, int target) {
+        for (int c = this.firstChild[slot]; c >= 0; c = this.nextSibling[c]) {
+            if(this.node[c] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the smallest f value of the children of a finished node
+     * up to it and to its finished ancestors.
+     * @param slot Slot of the node whose successors are all in memory
+     */
+    private void backup(int slot) {
+        for (int x = slot; x >= 0 && !this.open.contains(x); x = this.parentSlot[x]) {
+            float best = Float.POSITIVE_INFINITY;
+            for (int c = this.firstChild[x]; c >= 0; c = this.nextSibling[c]) {
+                best = Math.min(best, this.f[c]);
+            }
+            if(best == this.f[x]) {
+                break;
+            }
+            this.f[x] = best;
+        }
+    }
+
+    /**
+     * Forgets the leaf with the largest f value to make room.
+     * @param keep Slot of the node being expanded, which is never forgotten
+     * @return False if there is no leaf that can be forgotten
+     */
+    private boolean forgetWorstLeaf(int keep) {
+        boolean kept = this.leaves.remove(keep);
+        int victim = -1;
+        if(!this.leaves.isEmpty() && this.parentSlot[this.leaves.peek()] >= 0) {
+            victim = this.leaves.peek();
+        }
+        if(kept) {
+            this.leaves.push(keep, -this.f[keep]);
+        }
+        if(victim < 0) {
+            return false;
+        }
+        this.forget(victim);
+        return true;
+    }
+
+    /**
+     * Removes a leaf from memory. Its parent keeps its f value and is
+     * opened again to regenerate it, unless the leaf can never reach
+     * the sink. A parent left without children and successors is
+     * forgotten in turn.
+     * @param slot Slot of the leaf
+     */
+    private void forget(int slot) {
+        int p = this.parentSlot[slot];
+        float value = this.f[slot];
+        this.open.remove(slot);
+        this.leaves.remove(slot);
+        if(this.prevSibling[slot] >= 0) {
+            this.nextSibling[this.prevSibling[slot]] = this.nextSibling[slot];
+        } else {
+            this.firstChild[p] = this.nextSibling[slot];
+        }
+        if(this.nextSibling[slot] >= 0) {
+            this.prevSibling[this.nextSibling[slot]] = this.prevSibling[slot];
+        }
+        this.childCount[p]--;
+        this.freeSlot(slot);
+
+        if(value != Float.POSITIVE_INFINITY) {
+            this.open.push(p, value);
+            this.nextEdge[p] = this.graph.firstEdge(this.node[p]);
+        }
+        if(this.childCount[p] == 0) {
+            if(this.open.contains(p)) {
+                this.f[p] = this.open.getKey(p);
+                this.leaves.push(p, -this.f[p]);
+            } else if(this.parentSlot[p] >= 0) {
+                this.f[p] = Float.POSITIVE_INFINITY;
+                this.forget(p);
+            }
+        }
+    }
+
+    /**
+     * Creates the compact path by following the parent slots back
+     * from the sink to the root.
+     * @param slot Slot of the sink
+     */
+    private void routeFromSlot(int slot) {
+        long start = System.nanoTime();
+        int[] nodes = new int[this.depth[slot] + 1];
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            nodes[i] = this.node[slot];
+            slot = this.parentSlot[slot];
+        }
+        this.compactPath = CompactPath.of(this.graph, nodes);
+        this.stats.addPathNanos(System.nanoTime() - start);
+    }
+
+    private int newSlot(int target, float dist, float estimate, int parent) {
+        int slot = this.freeSlot;
+        if(slot >= 0) {
+            this.freeSlot = this.nextSibling[slot];
+        } else {
+            if(this.allocated == this.node.length) {
+                this.grow(Math.min(this.nodeBudget, this.allocated * 2));
+            }
+            slot = this.allocated++;
+        }
+        this.node[slot] = target;
+        this.g[slot] = dist;
+        this.f[slot] = estimate;
+        this.parentSlot[slot] = parent;
+        this.depth[slot] = 0;
+        this.nextEdge[slot] = this.graph.firstEdge(target);
+        this.firstChild[slot] = -1;
+        this.nextSibling[slot] = -1;
+        this.prevSibling[slot] = -1;
+        this.childCount[slot] = 0;
+        this.used++;
+        this.stats.frontier(this.used);
+        return slot;
+    }
+
+    private void freeSlot(int slot) {
+        this.nextSibling[slot] = this.freeSlot;
+        this.freeSlot = slot;
+        this.used--;
+    }
+
+    /**
+     * Grows the node pool and the heaps, never beyond the budget.
+     * @param capacity Number of slots
+     */
+    private void grow(int capacity) {
+        if(this.node == null) {
+            this.node = new int[capacity];
+            this.g = new float[capacity];
+            this.f = new float[capacity];
+            this.parentSlot = new int[capacity];
+            this.depth = new int[capacity];
+            this.nextEdge = new int[capacity];
+            this.firstChild = new int[capacity];
+            this.nextSibling = new int[capacity];
+            this.prevSibling = new int[capacity];
+            this.childCount = new int[capacity];
+            this.open = new IndexedMinHeap(capacity);
+            this.leaves = new IndexedMinHeap(capacity);
+            return;
+        }
+        this.node = Arrays.copyOf(this.node, capacity);
+        this.g = Arrays.copyOf(this.g, capacity);
+        this.f = Arrays.copyOf(this.f, capacity);
+        this.parentSlot = Arrays.copyOf(this.parentSlot, capacity);
+        this.depth = Arrays.copyOf(this.depth, capacity);
+        this.nextEdge = Arrays.copyOf(this.nextEdge, capacity);
+        this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+        this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+        this.prevSibling = Arrays.copyOf(this.prevSibling, capacity);
+        this.childCount = Arrays.copyOf(this.childCount, capacity);
+        this.open.ensureCapacity(capacity);
+        this.leaves.ensureCapacity(capacity);
+    }
+}
@@ -0,0 +1,138 @@
+package search;
+
+import graph.City;
+import graph.Graph;
+
+import java.util.LinkedList;
+
+/**
+ * A Base class for the search algorithms that run directly on
+ * the int ids of a compact Graph. The path is kept as node ids and
+ * is only turned into City objects when getPath() is called.
+ * @author Andrew Serra
+ */
+public abstract class GraphSearchBase extends SearchAlgorithmBase {
+
+    protected final Graph graph;
+    protected final int srcId;
+    protected final int dstId;
+    protected SearchContext context;
+    protected int[] parent;
+    protected CompactPath compactPath = null;
+
+    /**
+     * Creates a GraphSearchBase object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    protected GraphSearchBase(Graph graph, int srcId, int dstId) {
+        this.graph = graph;
+        this.srcId = srcId;
+        this.dstId = dstId;
+        this.src = graph.toCity(srcId);
+        this.dst = graph.getName(dstId);
+    }
+
+    /**
+     * Creates the compact path by following the parents back
+     * from the sink to the source.
+     * @param dstNode Destination node id
+     */
+    protected void findPath(int dstNode) {
+        long start = System.nanoTime();
+        int length = 1;
+        for (int node = dstNode; node != this.srcId; node = this.parent[node]) {
+            length++;
+        }
+
+        int[] nodes = new int[length];
+        int node = dstNode;
+        for (int i = length - 1; i >= 0; i--) {
+            nodes[i] = node;
+            if(i > 0) {
+                node = this.parent[node];
+            }
+        }
+        this.compactPath = CompactPath.of(this.graph, nodes);
+        this.stats.addPathNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Creates the compact path of a bidirectional search by splicing
+     * the forward parents from the meeting node back to the source
+     * with the backward parents from the meeting node to the sink.
+     * @param meet Node id reached by both searches
+     * @param reverseParent Parents of the search from the sink
+     */
+    protected void joinPath(int meet, int[] reverseParent) {
+        long start = System.nanoTime();
+        int forward = 0;
+        for (int node = meet; node != this.srcId; node = this.parent[node]) {
+            forward++;
+        }
+        int backward = 0;
+        for (int node = meet; node != this.dstId; node = reverseParent[node]) {
+            backward++;
+        }
+
+        int[] nodes = new int[forward + backward + 1];
+        int node = meet;
+        for (int i = forward; i >= 0; i--) {
+            nodes[i] = node;
+            if(i > 0) {
+                node = this.parent[node];
+            }
+        }
+        node = meet;
+        for (int i = forward + 1; i < nodes.length; i++) {
+            node = reverseParent[node];
+            nodes[i] = node;
+        }
+        this.compactPath = CompactPath.of(this.graph, nodes);
+        this.stats.addPathNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Checks if the search has run and found the destination.
+     * @return True if a path is available
+     */
+    @Override
+    public boolean hasPath() {
+        return this.compactPath != null;
+    }
+
+    /**
+     * Returns the final path found as node ids.
+     * @return The CompactPath between the cities.
+     */
+    public CompactPath getCompactPath() {
+        if(this.compactPath == null) {
+            throw new IllegalStateException("Search has not found a path.");
+        }
+        return this.compactPath;
+    }
+
+    /**
+     * Returns the final path found for the two cities. The City
+     * views are created on the first call.
+     * @return The linked list containing the path between the cities.
+     */
+    @Override
+    public LinkedList<City> getPath() {
+        if(this.path == null && this.compactPath != null) {
+            this.path = this.compactPath.toCities(this.graph);
+        }
+        return super.getPath();
+    }
+
+    /**
+     * Takes the scratch arrays from the context of the thread running
+     * the search, not the one that created it.
+     */
+    @Override
+    protected void prepare() {
+        this.context = SearchContext.get(this.graph.size());
+        this.parent = this.context.getParent();
+    }
+}
@@ -0,0 +1,18 @@
+package search;
+
+/**
+ * An estimate of the route distance between two nodes of a Graph,
+ * used by the A* searches to order their open lists. An estimate
+ * must never be larger than the real distance.
+ * @author Andrew Serra
+ */
+public interface Heuristic {
+
+    /**
+     * Estimates the route distance between two nodes.
+     * @param node Node id being scored
+     * @param target Node id the search is heading to
+     * @return A lower bound on the route distance
+     */
+    float estimate(int node, int target);
+}
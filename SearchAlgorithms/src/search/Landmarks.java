@@ -0,0 +1,254 @@
+package search;
+
+import graph.Graph;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Landmark (ALT) heuristic for the A* searches. A few landmark
+ * nodes are picked far apart from each other and the exact route
+ * distance from every landmark to every node is stored. By the
+ * triangle inequality |d(L, t) - d(L, n)| is a lower bound on the
+ * distance between n and t for every landmark L, and the largest of
+ * these bounds is used, together with the graph's own estimate.
+ * On road networks with detours this is much tighter than the
+ * straight line distance.
+ * <p>
+ * Distances are kept node by node, so the bounds of all landmarks
+ * for one node are next to each other in memory.
+ * @author Andrew Serra
+ */
+public class Landmarks implements Heuristic {
+
+    public static final int MAGIC = 0x544c4c41;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int CHUNK_FLOATS = 1 << 28;
+
+    private final Graph graph;
+    private final int[] landmarks;
+    private final float[] distances;
+
+    /**
+     * Creates a Landmarks object.
+     * @param graph The graph the distances were found on
+     * @param landmarks Node ids of the landmarks
+     * @param distances Distance of every node to every landmark,
+     *                  at node * landmarks.length + landmark
+     */
+    private Landmarks(Graph graph, int[] landmarks, float[] distances) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Picks landmarks by farthest point selection and finds their
+     * distances. The first landmark is the node farthest from node 0,
+     * and each next one is the node farthest from all landmarks picked
+     * so far. Nodes that no landmark reaches count as the farthest, so
+     * every component of the graph gets a landmark while there are
+     * landmarks left.
+     * @param graph The graph to preprocess
+     * @param count Number of landmarks to pick
+     * @return The Landmarks object
+     * @throws IllegalArgumentException If the count is not positive or
+     *                                  the table would not fit in an array
+     */
+    public static Landmarks select(Graph graph, int count) throws IllegalArgumentException {
+        if(count < 1) {
+            throw new IllegalArgumentException("Landmark count must be at least 1.");
+        }
+        int n = graph.size();
+        count = Math.min(count, n);
+        if((long) n * count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many landmarks for " + n + " nodes.");
+        }
+
+        int[] landmarks = new int[count];
+        float[] distances = new float[n * count];
+        float[] nearest = new float[n];
+        if(n == 0) {
+            return new Landmarks(graph, landmarks, distances);
+        }
+
+        Dijkstra dijkstra = new Dijkstra(graph);
+        ShortestPathTree tree = dijkstra.tree(0);
+        for (int node = 0; node < n; node++) {
+            nearest[node] = tree.getDistance(node);
+        }
+        int next = farthest(nearest);
+        Arrays.fill(nearest, Float.POSITIVE_INFINITY);
+        for (int l = 0; l < count; l++) {
+            landmarks[l] = next;
+            tree = dijkstra.tree(next);
+            for (int node = 0; node < n; node++) {
+                distances[node * count + l] = tree.getDistance(node);
+                nearest[node] = Math.min(nearest[node], tree.getDistance(node));
+            }
+            next = farthest(nearest);
+        }
+        return new Landmarks(graph, landmarks, distances);
+    }
+
+    /**
+     * Finds the node with the largest distance, preferring nodes that
+     * were not reached at all.
+     * @param distances Distance of every node
+     * @return The node id
+     */
+    private static int farthest(float[] distances) {
+        int best = 0;
+        for (int node = 1; node < distances.length; node++) {
+            if(distances[node] > distances[best]) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Getter method for the graph the landmarks belong to.
+     * @return The Graph object
+     */
+    public Graph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Get the number of landmarks.
+     * @return The landmark count
+     */
+    public int count() {
+        return this.landmarks.length;
+    }
+
+    /**
+     * Getter method for a landmark.
+     * @param i Index of the landmark
+     * @return The node id of the landmark
+     */
+    public int getLandmark(int i) {
+        return this.landmarks[i];
+    }
+
+    /**
+     * Getter method for the distance between a landmark and a node.
+     * @param i Index of the landmark
+     * @param node Node id
+     * @return The route distance, infinity if it is not reachable
+     */
+    public float getDistance(int i, int node) {
+        return this.distances[node * this.landmarks.length + i];
+    }
+
+    /**
+     * Estimates the route distance between two nodes as the largest
+     * landmark bound, or the graph's estimate if that is larger.
+     * Landmarks that do not reach both nodes are skipped. The landmark
+     * bounds never exceed a route, but the graph's estimate may on
+     * graphs where Graph.isEstimateAdmissible is false.
+     * @param node Node id being scored
+     * @param target Node id the search is heading to
+     * @return The estimated route distance
+     */
+    @Override
+    public float estimate(int node, int target) {
+        int k = this.landmarks.length;
+        int a = node * k;
+        int b = target * k;
+        float best = this.graph.estimate(node, target);
+        for (int l = 0; l < k; l++) {
+            float bound = Math.abs(this.distances[b + l] - this.distances[a + l]);
+            if(bound > best && bound != Float.POSITIVE_INFINITY) {
+                best = bound;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the landmarks and their distances to a file that
+     * open() can read back.
+     * @param file Path of the landmark file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING); ) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(this.graph.size()).putInt(this.graph.edgeCount())
+                    .putInt(this.landmarks.length);
+            for (int landmark : this.landmarks) {
+                if(buffer.remaining() < Integer.BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(landmark);
+            }
+            for (float distance : this.distances) {
+                if(buffer.remaining() < Float.BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putFloat(distance);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Reads a landmark file written by save().
+     * @param file Path of the landmark file
+     * @param graph The graph the landmarks were picked on
+     * @return The Landmarks object
+     * @throws IOException If the file cannot be read or does not
+     *                     belong to the graph
+     */
+    public static Landmarks open(Path file, Graph graph) throws IOException {
+        try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ); ) {
+            if(channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a landmark file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getInt() != MAGIC) {
+                throw new IOException("Not a landmark file: " + file);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int k = header.getInt();
+            if(n != graph.size() || m != graph.edgeCount() || k < 0
+                    || channel.size() != HEADER_BYTES + 4L * k + 4L * n * k) {
+                throw new IOException("Landmark file does not match the graph: " + file);
+            }
+
+            int[] landmarks = new int[k];
+            float[] distances = new float[n * k];
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, 4L * k)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(landmarks);
+            long position = HEADER_BYTES + 4L * k;
+            for (int i = 0; i < distances.length; i += CHUNK_FLOATS) {
+                int length = Math.min(CHUNK_FLOATS, distances.length - i);
+                channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * i, 4L * length)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(distances, i, length);
+            }
+            return new Landmarks(graph, landmarks, distances);
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer and clears it.
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package search;
+
+/**
+ * The targets nearest to a source, as found by Dijkstra.nearest, in
+ * increasing order of route distance. Their routes are read from the
+ * tree of the search, which holds every node settled up to the last
+ * of them.
+ * @author Andrew Serra
+ */
+public class NearestTargets {
+
+    private final ShortestPathTree tree;
+    private final int[] targets;
+
+    /**
+     * Creates a NearestTargets object.
+     * @param tree The tree of the search
+     * @param targets The targets found, nearest first
+     */
+    NearestTargets(ShortestPathTree tree, int[] targets) {
+        this.tree = tree;
+        this.targets = targets;
+    }
+
+    /**
+     * Getter method for the tree of the search.
+     * @return The ShortestPathTree
+     */
+    public ShortestPathTree getTree() {
+        return this.tree;
+    }
+
+    /**
+     * Get the number of targets found.
+     * @return At most the number asked for, fewer if fewer are reachable
+     */
+    public int size() {
+        return this.targets.length;
+    }
+
+    /**
+     * Getter method for a target.
+     * @param i Position of the target, 0 for the nearest
+     * @return The node id of the target
+     */
+    public int getTarget(int i) {
+        return this.targets[i];
+    }
+
+    /**
+     * Getter method for the route distance of a target.
+     * @param i Position of the target, 0 for the nearest
+     * @return The distance from the source
+     */
+    public float getDistance(int i) {
+        return this.tree.getDistance(this.targets[i]);
+    }
+
+    /**
+     * Reads the route from the source to a target.
+     * @param i Position of the target, 0 for the nearest
+     * @return The route
+     */
+    public CompactPath pathTo(int i) {
+        return this.tree.pathTo(this.targets[i]);
+    }
+}
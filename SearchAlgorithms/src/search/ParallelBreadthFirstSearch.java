@@ -0,0 +1,422 @@
+package search;
+
+import graph.Graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runs breadth first search on a compact Graph one level at a time,
+ * with the nodes of every level expanded in parallel on a
+ * ForkJoinPool. While the frontier is small a level is expanded
+ * top-down, following the edges of the frontier. Once the edges of
+ * the frontier outnumber a share of the edges not yet explored it is
+ * expanded bottom-up instead, with every unvisited node looking for
+ * a neighbour in the frontier, and top-down again once the frontier
+ * has shrunk.
+ * <p>
+ * The route found is the one GraphBreadthFirstSearch finds. That
+ * search gives every node the first node of the previous level, in
+ * queue order, with an edge to it as parent, and queues the children
+ * of a node in "city, state" order. Here every node reached keeps the
+ * smallest frontier position among the nodes reaching it, by an
+ * atomic minimum, and the next frontier is put in queue order by a
+ * counting sort on that position and the label order within each
+ * parent. Nodes are claimed through an atomic visited bitmap, and
+ * every task writes the nodes it claims to its own buffer.
+ * <p>
+ * Levels small enough for one task run on the calling thread, and
+ * the scratch arrays are kept per calling thread. Clearing them takes
+ * time linear in the size of the graph, so this pays off for searches
+ * that reach much of a large graph.
+ * @author Andrew Serra
+ */
+public class ParallelBreadthFirstSearch extends GraphSearchBase {
+
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    private static final int TOP_DOWN_GRAIN = 256;
+    private static final int BOTTOM_UP_GRAIN = 4096;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private enum Phase { CLEAR, TOP_DOWN, BOTTOM_UP }
+
+    private final ForkJoinPool pool;
+    private Scratch scratch;
+    private Phase phase;
+    private int[] frontier;
+    private int size;
+    private int depth;
+
+    /**
+     * Creates a ParallelBreadthFirstSearch object that runs on the
+     * common pool.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     */
+    public ParallelBreadthFirstSearch(Graph graph, int srcId, int dstId) {
+        this(graph, srcId, dstId, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a ParallelBreadthFirstSearch object.
+     * @param graph The graph to search
+     * @param srcId Node id of the starting city
+     * @param dstId Node id of the city being searched
+     * @param pool The pool the levels are expanded on
+     */
+    public ParallelBreadthFirstSearch(Graph graph, int srcId, int dstId, ForkJoinPool pool) {
+        super(graph, srcId, dstId);
+        this.pool = pool;
+    }
+
+    /**
+     * Takes the scratch arrays of the thread and clears them.
+     */
+    @Override
+    protected void prepare() {
+        super.prepare();
+        int n = this.graph.size();
+        this.scratch = SCRATCH.get();
+        this.scratch.ensureCapacity(n);
+        this.frontier = this.scratch.frontier;
+        this.phase = Phase.CLEAR;
+        this.runChunks((n + BOTTOM_UP_GRAIN - 1) / BOTTOM_UP_GRAIN);
+    }
+
+    /**
+     * Executes the search of the destination city level by level.
+     */
+    @Override
+    protected void search() {
+        Scratch s = this.scratch;
+        int n = this.graph.size();
+        this.frontier[0] = this.srcId;
+        this.size = 1;
+        this.depth = 0;
+        s.level[this.srcId] = 0;
+        s.position[this.srcId] = 0;
+        s.visit(this.srcId);
+        if(this.srcId == this.dstId) {
+            findPath(this.srcId);
+            return;
+        }
+
+        long frontierEdges = this.graph.degree(this.srcId);
+        long unexploredEdges = this.graph.edgeCount() - frontierEdges;
+        boolean bottomUp = false;
+        while (this.size > 0) {
+            if(!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if(bottomUp && this.size < n / BETA) {
+                bottomUp = false;
+            }
+            this.stats.expandLevel(this.size);
+            this.stats.relax(bottomUp ? unexploredEdges : frontierEdges);
+
+            int chunks;
+            if(bottomUp) {
+                this.phase = Phase.BOTTOM_UP;
+                chunks = (n + BOTTOM_UP_GRAIN - 1) / BOTTOM_UP_GRAIN;
+            } else {
+                this.phase = Phase.TOP_DOWN;
+                chunks = (this.size + TOP_DOWN_GRAIN - 1) / TOP_DOWN_GRAIN;
+            }
+            this.runChunks(chunks);
+
+            frontierEdges = this.nextLevel(chunks);
+            unexploredEdges -= frontierEdges;
+            this.depth++;
+            if(s.level[this.dstId] == this.depth) {
+                findPath(this.dstId);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Runs every chunk of the current phase, on the calling thread if
+     * there is only one.
+     * @param chunks Number of chunks
+     */
+    private void runChunks(int chunks) {
+        if(chunks == 1) {
+            this.runChunk(0);
+        } else if(chunks > 1) {
+            this.pool.invoke(new Chunks(0, chunks));
+        }
+    }
+
+    private void runChunk(int chunk) {
+        switch (this.phase) {
+            case CLEAR:
+                this.clear(chunk);
+                break;
+            case TOP_DOWN:
+                this.topDown(chunk);
+                break;
+            default:
+                this.bottomUp(chunk);
+                break;
+        }
+    }
+
+    /**
+     * Clears the scratch arrays of a range of nodes.
+     * @param chunk Index of the range
+     */
+    private void clear(int chunk) {
+        Scratch s = this.scratch;
+        int lo = chunk * BOTTOM_UP_GRAIN;
+        int hi = Math.min(lo + BOTTOM_UP_GRAIN, this.graph.size());
+        Arrays.fill(s.level, lo, hi, -1);
+        for (int v = lo; v < hi; v++) {
+            s.claim.setPlain(v, Integer.MAX_VALUE);
+        }
+        for (int w = lo >>> 6; w < (hi + 63) >>> 6; w++) {
+            s.visited.setPlain(w, 0);
+        }
+    }
+
+    /**
+     * Follows the edges of a range of the frontier. Every unvisited
+     * target takes the smallest position reaching it, and the first
+     * task to reach it claims it for the next level.
+     * @param chunk Index of the range
+     */
+    private void topDown(int chunk) {
+        Scratch s = this.scratch;
+        int lo = chunk * TOP_DOWN_GRAIN;
+        int hi = Math.min(lo + TOP_DOWN_GRAIN, this.size);
+        int[] found = s.buffer(chunk);
+        int count = 0;
+        for (int i = lo; i < hi; i++) {
+            int u = this.frontier[i];
+            for (int e = this.graph.firstEdge(u); e < this.graph.endEdge(u); e++) {
+                int v = this.graph.getTarget(e);
+                if(s.level[v] >= 0) {
+                    continue;
+                }
+                int claim = s.claim.get(v);
+                while (i < claim && !s.claim.compareAndSet(v, claim, i)) {
+                    claim = s.claim.get(v);
+                }
+                if(s.visit(v)) {
+                    if(count == found.length) {
+                        found = s.grow(chunk);
+                    }
+                    found[count++] = v;
+                }
+            }
+        }
+        s.counts[chunk] = count;
+    }
+
+    /**
+     * Looks for the frontier neighbour with the smallest position of
+     * every unvisited node in a range of node ids.
+     * @param chunk Index of the range
+     */
+    private void bottomUp(int chunk) {
+        Scratch s = this.scratch;
+        int lo = chunk * BOTTOM_UP_GRAIN;
+        int hi = Math.min(lo + BOTTOM_UP_GRAIN, this.graph.size());
+        int[] found = s.buffer(chunk);
+        int count = 0;
+        for (int v = lo; v < hi; v++) {
+            if(s.level[v] >= 0) {
+                continue;
+            }
+            int best = Integer.MAX_VALUE;
+            for (int e = this.graph.firstEdge(v); e < this.graph.endEdge(v); e++) {
+                int u = this.graph.getTarget(e);
+                if(s.level[u] == this.depth && s.position[u] < best) {
+                    best = s.position[u];
+                }
+            }
+            if(best != Integer.MAX_VALUE) {
+                s.claim.setPlain(v, best);
+                s.visit(v);
+                if(count == found.length) {
+                    found = s.grow(chunk);
+                }
+                found[count++] = v;
+            }
+        }
+        s.counts[chunk] = count;
+    }
+
+    /**
+     * Puts the nodes claimed by the chunks in the order the sequential
+     * search queues them and makes them the frontier: grouped by the
+     * position of their parent, and by label within each group.
+     * @param chunks Number of chunks of the level
+     * @return The number of edges of the new frontier
+     */
+    private long nextLevel(int chunks) {
+        Scratch s = this.scratch;
+        int[] start = s.buckets;
+        Arrays.fill(start, 0, this.size + 1, 0);
+        int total = 0;
+        for (int c = 0; c < chunks; c++) {
+            for (int j = 0; j < s.counts[c]; j++) {
+                start[s.claim.getPlain(s.buffers[c][j]) + 1]++;
+            }
+            total += s.counts[c];
+        }
+        for (int p = 0; p < this.size; p++) {
+            start[p + 1] += start[p];
+        }
+        int[] next = s.next;
+        for (int c = 0; c < chunks; c++) {
+            for (int j = 0; j < s.counts[c]; j++) {
+                int v = s.buffers[c][j];
+                next[start[s.claim.getPlain(v)]++] = v;
+            }
+        }
+
+        // The children of frontier position p now end at start[p], and
+        // the children of one parent are queued in label order
+        int end = 0;
+        for (int p = 0; p < this.size; p++) {
+            int begin = end;
+            end = start[p];
+            if(end - begin > 1) {
+                this.sortByLabel(next, begin, end);
+            }
+        }
+
+        long edges = 0;
+        for (int i = 0; i < total; i++) {
+            int v = next[i];
+            s.level[v] = this.depth + 1;
+            s.position[v] = i;
+            this.parent[v] = this.frontier[s.claim.getPlain(v)];
+            edges += this.graph.degree(v);
+        }
+
+        s.next = this.frontier;
+        s.frontier = next;
+        this.frontier = next;
+        this.size = total;
+        return edges;
+    }
+
+    /**
+     * Sorts a range of nodes by label rank, as their packed rank and id.
+     * @param nodes Array holding the range
+     * @param from First index of the range
+     * @param to Index past the end of the range
+     */
+    private void sortByLabel(int[] nodes, int from, int to) {
+        long[] keys = this.scratch.keys(to - from);
+        for (int i = from; i < to; i++) {
+            keys[i - from] = (long) this.graph.labelRank(nodes[i]) << 32 | nodes[i];
+        }
+        Arrays.sort(keys, 0, to - from);
+        for (int i = from; i < to; i++) {
+            nodes[i] = (int) keys[i - from];
+        }
+    }
+
+    /**
+     * Splits a range of chunks in halves until each task runs one.
+     */
+    private final class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+
+        Chunks(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.hi - this.lo == 1) {
+                runChunk(this.lo);
+                return;
+            }
+            int mid = (this.lo + this.hi) >>> 1;
+            invokeAll(new Chunks(this.lo, mid), new Chunks(mid, this.hi));
+        }
+    }
+
+    /**
+     * Scratch arrays of the searches started on one thread, sized to
+     * the largest graph seen so far.
+     */
+    private static final class Scratch {
+        private int capacity = 0;
+        private int[] level;
+        private int[] position;
+        private int[] frontier;
+        private int[] next;
+        private int[] buckets;
+        private AtomicIntegerArray claim;
+        private AtomicLongArray visited;
+        private int[][] buffers;
+        private int[] counts;
+        private long[] keys = new long[16];
+
+        void ensureCapacity(int n) {
+            if(n <= this.capacity) {
+                return;
+            }
+            this.capacity = n;
+            this.level = new int[n];
+            this.position = new int[n];
+            this.frontier = new int[n];
+            this.next = new int[n];
+            this.buckets = new int[n + 1];
+            this.claim = new AtomicIntegerArray(n);
+            this.visited = new AtomicLongArray((n + 63) >>> 6);
+            int chunks = (n + TOP_DOWN_GRAIN - 1) / TOP_DOWN_GRAIN;
+            this.buffers = new int[chunks][];
+            this.counts = new int[chunks];
+        }
+
+        /**
+         * Marks a node visited.
+         * @param v Node id
+         * @return True if the node was not visited before
+         */
+        boolean visit(int v) {
+            int word = v >>> 6;
+            long bit = 1L << v;
+            while (true) {
+                long bits = this.visited.get(word);
+                if((bits & bit) != 0) {
+                    return false;
+                }
+                if(this.visited.compareAndSet(word, bits, bits | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        int[] buffer(int chunk) {
+            if(this.buffers[chunk] == null) {
+                this.buffers[chunk] = new int[TOP_DOWN_GRAIN];
+            }
+            return this.buffers[chunk];
+        }
+
+        long[] keys(int size) {
+            if(size > this.keys.length) {
+                this.keys = new long[Integer.highestOneBit(size - 1) << 1];
+            }
+            return this.keys;
+        }
+
+        int[] grow(int chunk) {
+            this.buffers[chunk] = Arrays.copyOf(this.buffers[chunk], this.buffers[chunk].length * 2);
+            return this.buffers[chunk];
+        }
+    }
+}
@@ -5,14 +5,24 @@ import graph.City;
 import java.util.LinkedList;
 
 /**
- * A Base class for the search algorithms.
+ * A Base class for the search algorithms. Every run is measured in
+ * a SearchStats object.
  * @author Andrew Serra
  */
-public class SearchAlgorithmBase extends Thread {
+public abstract class SearchAlgorithmBase extends Thread {
 
     protected City src;
     protected String dst;
     protected LinkedList<City> path = null;
+    protected final SearchStats stats = new SearchStats();
+
+    /**
+     * Checks if the search has run and found the destination.
+     * @return True if a path is available
+     */
+    public boolean hasPath() {
+        return this.path != null;
+    }
 
     /**
      * Returns the final path found for the two cities.
@@ -24,4 +34,37 @@ public class SearchAlgorithmBase extends Thread {
         }
         return this.path;
     }
+
+    /**
+     * Getter method for the statistics of the run.
+     * @return The SearchStats object, empty until the search has run
+     */
+    public SearchStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Takes what the search needs before it starts. This is timed as
+     * the setup phase.
+     */
+    protected void prepare() {
+    }
+
+    /**
+     * Executes the search of the destination city iteratively.
+     */
+    protected abstract void search();
+
+    /**
+     * Runs the thread, timing the setup and the search.
+     */
+    @Override
+    public void run() {
+        long allocated = SearchStats.allocatedBytes();
+        long start = System.nanoTime();
+        this.prepare();
+        long searching = System.nanoTime();
+        this.search();
+        this.stats.finish(searching - start, System.nanoTime() - searching, allocated);
+    }
 }
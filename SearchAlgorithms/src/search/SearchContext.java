@@ -0,0 +1,138 @@
+package search;
+
+import utils.EpochSet;
+import utils.IndexedMinHeap;
+
+/**
+ * Scratch space shared by all searches that run on the same thread.
+ * The arrays are sized to the largest graph seen so far and are
+ * reset between queries without allocating, so repeated queries on
+ * one thread reuse the same memory.
+ * @author Andrew Serra
+ */
+public class SearchContext {
+
+    private static final ThreadLocal<SearchContext> CONTEXTS =
+            ThreadLocal.withInitial(SearchContext::new);
+
+    private int capacity = 0;
+    private EpochSet visited;
+    private EpochSet marked;
+    private int[] parent;
+    private int[] frontier;
+    private float[] scores;
+    private IndexedMinHeap heap;
+    private SearchContext reverse = null;
+
+    /**
+     * Returns the context of the calling thread, cleared and large
+     * enough for a graph of the given size.
+     * @param size Number of nodes in the graph being searched
+     * @return The SearchContext of the current thread
+     */
+    public static SearchContext get(int size) {
+        SearchContext context = CONTEXTS.get();
+        context.ensureCapacity(size);
+        context.reset();
+        return context;
+    }
+
+    /**
+     * Grows the arrays if the graph is larger than the current capacity.
+     * @param size Number of nodes in the graph being searched
+     */
+    private void ensureCapacity(int size) {
+        if(size <= this.capacity) {
+            return;
+        }
+        this.capacity = size;
+        this.visited = new EpochSet(size);
+        this.marked = new EpochSet(size);
+        this.parent = new int[size];
+        this.frontier = new int[size];
+        this.scores = new float[size];
+        this.heap = new IndexedMinHeap(size);
+        if(this.reverse != null) {
+            this.reverse.ensureCapacity(size);
+        }
+    }
+
+    /**
+     * Clears the sets and the heap in O(1) for the next query.
+     */
+    public void reset() {
+        this.visited.clear();
+        this.marked.clear();
+        this.heap.clear();
+        if(this.reverse != null) {
+            this.reverse.reset();
+        }
+    }
+
+    /**
+     * Getter method for a second set of scratch space, used by
+     * bidirectional searches for the search from the sink. It is
+     * created on first use and cleared together with this context.
+     * @return The SearchContext of the backward search
+     */
+    public SearchContext getReverse() {
+        if(this.reverse == null) {
+            this.reverse = new SearchContext();
+            this.reverse.ensureCapacity(this.capacity);
+            this.reverse.reset();
+        }
+        return this.reverse;
+    }
+
+    /**
+     * Getter method for the set of nodes reached by the search.
+     * @return The visited set
+     */
+    public EpochSet getVisited() {
+        return this.visited;
+    }
+
+    /**
+     * Getter method for a second set of nodes, for searches that mark
+     * nodes apart from the ones they reach, such as pending targets.
+     * @return The marked set
+     */
+    public EpochSet getMarked() {
+        return this.marked;
+    }
+
+    /**
+     * Getter method for the parent of every reached node. An entry
+     * is only valid if the node is in the visited set.
+     * @return The parent array
+     */
+    public int[] getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Getter method for an array that holds the queue or stack.
+     * @return The frontier array
+     */
+    public int[] getFrontier() {
+        return this.frontier;
+    }
+
+    /**
+     * Getter method for the score of every reached node, such as the
+     * g value in A*. An entry is only valid if the node is in the
+     * visited set.
+     * @return The score array
+     */
+    public float[] getScores() {
+        return this.scores;
+    }
+
+    /**
+     * Getter method for the priority queue of the search.
+     * @return The heap, empty at the start of every query
+     */
+    public IndexedMinHeap getHeap() {
+        return this.heap;
+    }
+}
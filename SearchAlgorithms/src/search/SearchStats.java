@@ -0,0 +1,208 @@
+package search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The statistics of one search run: how many nodes were expanded,
+ * how many edges were relaxed, the largest size the frontier grew to,
+ * and the wall time of each phase. The setup phase takes the scratch
+ * arrays of the thread, the path phase builds the path once the sink
+ * is found, and the search phase is everything in between.
+ * <p>
+ * The bytes allocated by the running thread are only measured once
+ * allocation tracking is turned on, as reading the counter is not
+ * free. It is an estimate: anything else the thread allocates during
+ * the run is counted too.
+ * @author Andrew Serra
+ */
+public class SearchStats {
+
+    private static volatile boolean allocationTracking = false;
+
+    private long expanded = 0;
+    private long relaxed = 0;
+    private int peakFrontier = 0;
+    private long setupNanos = 0;
+    private long searchNanos = 0;
+    private long pathNanos = 0;
+    private long allocatedBytes = -1;
+
+    /**
+     * Turns the allocation estimate of every search on or off. It
+     * stays off on JVMs that cannot count allocated bytes per thread.
+     * @param enabled True to measure allocations
+     * @return True if allocations are now measured
+     */
+    public static boolean setAllocationTracking(boolean enabled) {
+        allocationTracking = enabled && Allocations.enable();
+        return allocationTracking;
+    }
+
+    /**
+     * Reads the allocation counter of the current thread.
+     * @return The bytes allocated so far, or -1 if tracking is off
+     */
+    static long allocatedBytes() {
+        return allocationTracking ? Allocations.current() : -1;
+    }
+
+    /**
+     * Counts an expanded node.
+     * @param frontier Size of the frontier when the node was taken
+     */
+    void expand(int frontier) {
+        this.expanded++;
+        if(frontier > this.peakFrontier) {
+            this.peakFrontier = frontier;
+        }
+    }
+
+    /**
+     * Counts the nodes of a frontier that are expanded together, as
+     * one level of a level-synchronous search.
+     * @param nodes Number of nodes in the frontier
+     */
+    void expandLevel(int nodes) {
+        this.expanded += nodes;
+        if(nodes > this.peakFrontier) {
+            this.peakFrontier = nodes;
+        }
+    }
+
+    /**
+     * Counts relaxed edges.
+     * @param edges Number of edges looked at
+     */
+    void relax(long edges) {
+        this.relaxed += edges;
+    }
+
+    /**
+     * Records a frontier size without counting an expansion.
+     * @param frontier Size of the frontier
+     */
+    void frontier(int frontier) {
+        if(frontier > this.peakFrontier) {
+            this.peakFrontier = frontier;
+        }
+    }
+
+    /**
+     * Adds time spent building the path.
+     * @param nanos Wall time in nanoseconds
+     */
+    void addPathNanos(long nanos) {
+        this.pathNanos += nanos;
+    }
+
+    /**
+     * Records the phase times once the search has returned.
+     * @param setupNanos Wall time of the setup phase
+     * @param runNanos Wall time of the search, path building included
+     * @param allocatedBefore Allocation counter before the setup, or -1
+     */
+    void finish(long setupNanos, long runNanos, long allocatedBefore) {
+        this.setupNanos = setupNanos;
+        this.searchNanos = Math.max(0, runNanos - this.pathNanos);
+        if(allocatedBefore >= 0) {
+            this.allocatedBytes = allocatedBytes() - allocatedBefore;
+        }
+    }
+
+    /**
+     * Getter method for the number of expanded nodes.
+     * @return The nodes whose edges were looked at
+     */
+    public long getNodesExpanded() {
+        return this.expanded;
+    }
+
+    /**
+     * Getter method for the number of relaxed edges.
+     * @return The edges looked at
+     */
+    public long getEdgesRelaxed() {
+        return this.relaxed;
+    }
+
+    /**
+     * Getter method for the peak frontier size.
+     * @return The largest number of nodes waiting to be expanded, or
+     *         held in memory by the memory-bounded searches
+     */
+    public int getPeakFrontier() {
+        return this.peakFrontier;
+    }
+
+    /**
+     * Getter method for the wall time of the setup phase.
+     * @return The time in nanoseconds
+     */
+    public long getSetupNanos() {
+        return this.setupNanos;
+    }
+
+    /**
+     * Getter method for the wall time of the search phase.
+     * @return The time in nanoseconds
+     */
+    public long getSearchNanos() {
+        return this.searchNanos;
+    }
+
+    /**
+     * Getter method for the wall time of the path phase.
+     * @return The time in nanoseconds
+     */
+    public long getPathNanos() {
+        return this.pathNanos;
+    }
+
+    /**
+     * Get the wall time of the whole run.
+     * @return The time of all phases in nanoseconds
+     */
+    public long getTotalNanos() {
+        return this.setupNanos + this.searchNanos + this.pathNanos;
+    }
+
+    /**
+     * Getter method for the allocation estimate.
+     * @return The bytes allocated by the run, or -1 if not measured
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Reads the per-thread allocation counter of HotSpot. Kept in its
+     * own class so the management beans are only loaded when asked for.
+     */
+    private static final class Allocations {
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        private static com.sun.management.ThreadMXBean threads() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if(threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+                if(hotspot.isThreadAllocatedMemorySupported()) {
+                    return hotspot;
+                }
+            }
+            return null;
+        }
+
+        static boolean enable() {
+            if(THREADS == null) {
+                return false;
+            }
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        }
+
+        static long current() {
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package search;
+
+import graph.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Shortest routes from one source, as found by Dijkstra. The tree
+ * keeps only the nodes the search settled, in the order it settled
+ * them, each with its distance and the index of its parent, so the
+ * route to any node in it is read back by following parents without
+ * searching again. Nodes the search did not settle, because they are
+ * unreachable or the search stopped early, are not in the tree.
+ * <p>
+ * Node ids are looked up through an array over the whole graph when
+ * the tree covers a large part of it, and by binary search over the
+ * sorted ids otherwise, so a small tree of a large graph stays small.
+ * @author Andrew Serra
+ */
+public class ShortestPathTree {
+
+    private static final int DENSE_FRACTION = 8;
+
+    private final Graph graph;
+    private final int[] nodes;
+    private final int[] parents;
+    private final float[] distances;
+    private final int[] index;
+    private final long[] sortedIds;
+
+    /**
+     * Creates a ShortestPathTree object.
+     * @param graph The graph the tree was found on
+     * @param nodes Node ids in the order they were settled, starting
+     *              with the source
+     * @param parents Index of the parent of every node, -1 for the
+     *                source
+     * @param distances Distance of every node from the source
+     */
+    ShortestPathTree(Graph graph, int[] nodes, int[] parents, float[] distances) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.parents = parents;
+        this.distances = distances;
+        if(nodes.length >= graph.size() / DENSE_FRACTION) {
+            this.index = new int[graph.size()];
+            this.sortedIds = null;
+            Arrays.fill(this.index, -1);
+            for (int i = 0; i < nodes.length; i++) {
+                this.index[nodes[i]] = i;
+            }
+        } else {
+            // The id in the high half keeps the index with it when sorting
+            this.index = null;
+            this.sortedIds = new long[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                this.sortedIds[i] = (long) nodes[i] << 32 | i;
+            }
+            Arrays.sort(this.sortedIds);
+        }
+    }
+
+    /**
+     * Getter method for the graph the tree was found on.
+     * @return The Graph object
+     */
+    public Graph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Getter method for the root of the tree.
+     * @return The node id of the source
+     */
+    public int getSource() {
+        return this.nodes[0];
+    }
+
+    /**
+     * Get the number of nodes in the tree.
+     * @return The number of settled nodes
+     */
+    public int size() {
+        return this.nodes.length;
+    }
+
+    /**
+     * Checks if a node is in the tree.
+     * @param node Node id
+     * @return True if the shortest route to the node is known
+     */
+    public boolean contains(int node) {
+        return this.indexOf(node) >= 0;
+    }
+
+    /**
+     * Getter method for the route distance of a node.
+     * @param node Node id
+     * @return The distance from the source, infinity outside the tree
+     */
+    public float getDistance(int node) {
+        int i = this.indexOf(node);
+        return i >= 0 ? this.distances[i] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Getter method for the parent of a node.
+     * @param node Node id
+     * @return The node before it on its route, -1 for the source and
+     *         nodes outside the tree
+     */
+    public int getParent(int node) {
+        int i = this.indexOf(node);
+        return i >= 0 && this.parents[i] >= 0 ? this.nodes[this.parents[i]] : -1;
+    }
+
+    /**
+     * Reads the route from the source to a node.
+     * @param node Node id of the destination
+     * @return The route, or null if the node is not in the tree
+     */
+    public CompactPath pathTo(int node) {
+        int last = this.indexOf(node);
+        if(last < 0) {
+            return null;
+        }
+        int length = 1;
+        for (int i = last; this.parents[i] >= 0; i = this.parents[i]) {
+            length++;
+        }
+        int[] path = new int[length];
+        float[] cumulative = new float[length];
+        int i = last;
+        for (int j = length - 1; j >= 0; j--) {
+            path[j] = this.nodes[i];
+            cumulative[j] = this.distances[i];
+            i = this.parents[i];
+        }
+        return new CompactPath(path, cumulative);
+    }
+
+    /**
+     * Finds the position of a node in the tree.
+     * @param node Node id
+     * @return The index of the node, or -1 if it is not in the tree
+     */
+    private int indexOf(int node) {
+        if(this.index != null) {
+            return this.index[node];
+        }
+        int i = Arrays.binarySearch(this.sortedIds, (long) node << 32);
+        if(i < 0) {
+            i = -i - 1;
+        }
+        if(i < this.sortedIds.length && (int) (this.sortedIds[i] >>> 32) == node) {
+            return (int) this.sortedIds[i];
+        }
+        return -1;
+    }
+}
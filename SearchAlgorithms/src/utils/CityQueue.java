@@ -2,6 +2,7 @@ package utils;
 
 import graph.City;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 
 /**
@@ -12,7 +13,7 @@ import java.util.LinkedList;
 public class CityQueue {
 
     private final LinkedList<Pair<City, City>> q = new LinkedList<>();
-    private final LinkedList<City> visited = new LinkedList<>();
+    private final HashSet<City> visited = new HashSet<>();
 
     /**
      * Get the size of the queue.
@@ -0,0 +1,74 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of int ids backed by an array of epoch stamps. An id is in
+ * the set when its stamp equals the current epoch, so clearing the
+ * set only bumps the epoch and takes O(1) time.
+ * @author Andrew Serra
+ */
+public class EpochSet {
+
+    private final int[] stamps;
+    private int epoch = 1;
+
+    /**
+     * Creates an EpochSet object.
+     * @param capacity Number of ids, ids must be in [0, capacity)
+     */
+    public EpochSet(int capacity) {
+        this.stamps = new int[capacity];
+    }
+
+    /**
+     * Get the largest number of ids the set can hold.
+     * @return The capacity of the set.
+     */
+    public int capacity() {
+        return this.stamps.length;
+    }
+
+    /**
+     * Checks if an id is in the set.
+     * @param id The id to check
+     * @return True if the id is in the set
+     */
+    public boolean contains(int id) {
+        return this.stamps[id] == this.epoch;
+    }
+
+    /**
+     * Adds an id to the set.
+     * @param id The id to add
+     * @return True if the id was not already in the set
+     */
+    public boolean add(int id) {
+        if(this.stamps[id] == this.epoch) {
+            return false;
+        }
+        this.stamps[id] = this.epoch;
+        return true;
+    }
+
+    /**
+     * Removes an id from the set.
+     * @param id The id to remove
+     */
+    public void remove(int id) {
+        if(this.stamps[id] == this.epoch) {
+            this.stamps[id] = 0;
+        }
+    }
+
+    /**
+     * Removes every id from the set by starting a new epoch. The
+     * stamps are only rewritten when the epoch counter wraps around.
+     */
+    public void clear() {
+        if(++this.epoch == Integer.MAX_VALUE) {
+            Arrays.fill(this.stamps, 0);
+            this.epoch = 1;
+        }
+    }
+}
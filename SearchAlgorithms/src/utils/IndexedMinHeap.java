@@ -0,0 +1,222 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int ids keyed on float priorities. Every id
+ * remembers its position in the heap, so the key of an id already in
+ * the heap can be lowered in O(log n) without a second entry.
+ * @author Andrew Serra
+ */
+public class IndexedMinHeap {
+
+    private int[] heap;
+    private int[] pos;
+    private float[] keys;
+    private int size = 0;
+
+    /**
+     * Creates an IndexedMinHeap object.
+     * @param capacity Number of ids, ids must be in [0, capacity)
+     */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.pos = new int[capacity];
+        this.keys = new float[capacity];
+        Arrays.fill(this.pos, -1);
+    }
+
+    /**
+     * Grows the heap so ids up to the given capacity can be added.
+     * @param capacity Number of ids, ids must be in [0, capacity)
+     */
+    public void ensureCapacity(int capacity) {
+        int old = this.pos.length;
+        if(capacity <= old) {
+            return;
+        }
+        this.heap = Arrays.copyOf(this.heap, capacity);
+        this.pos = Arrays.copyOf(this.pos, capacity);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        Arrays.fill(this.pos, old, capacity, -1);
+    }
+
+    /**
+     * Get the size of the heap.
+     * @return The number of ids in the heap.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns true if the heap is empty.
+     * @return True if heap is empty else false.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Checks if an id is currently in the heap.
+     * @param id The id to check
+     * @return True if the id is in the heap
+     */
+    public boolean contains(int id) {
+        return this.pos[id] >= 0;
+    }
+
+    /**
+     * Getter method for the key of an id in the heap.
+     * @param id An id in the heap
+     * @return The key of the id
+     */
+    public float getKey(int id) {
+        return this.keys[id];
+    }
+
+    /**
+     * Adds an id to the heap, or lowers its key if it is already
+     * in the heap. A key that is not lower than the current one
+     * is ignored.
+     * @param id The id to add
+     * @param key The priority of the id
+     * @return True if the heap changed
+     */
+    public boolean push(int id, float key) {
+        int i = this.pos[id];
+        if(i < 0) {
+            i = this.size++;
+            this.heap[i] = id;
+            this.pos[id] = i;
+        } else if(key >= this.keys[id]) {
+            return false;
+        }
+        this.keys[id] = key;
+        this.siftUp(i);
+        return true;
+    }
+
+    /**
+     * Getter method for the id with the smallest key, without
+     * removing it.
+     * @return The id poll() would return
+     * @throws IllegalStateException
+     */
+    public int peek() throws IllegalStateException {
+        if(this.size == 0) {
+            throw new IllegalStateException("No elements in the heap.");
+        }
+        return this.heap[0];
+    }
+
+    /**
+     * Getter method for the smallest key in the heap.
+     * @return The key of the id poll() would return
+     * @throws IllegalStateException
+     */
+    public float peekKey() throws IllegalStateException {
+        if(this.size == 0) {
+            throw new IllegalStateException("No elements in the heap.");
+        }
+        return this.keys[this.heap[0]];
+    }
+
+    /**
+     * Removes the id with the smallest key.
+     * @return The id with the smallest key
+     * @throws IllegalStateException
+     */
+    public int poll() throws IllegalStateException {
+        if(this.size == 0) {
+            throw new IllegalStateException("No elements in the heap.");
+        }
+        int top = this.heap[0];
+        this.pos[top] = -1;
+        int last = this.heap[--this.size];
+        if(this.size > 0) {
+            this.heap[0] = last;
+            this.pos[last] = 0;
+            this.siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes an id from anywhere in the heap.
+     * @param id The id to remove
+     * @return True if the id was in the heap
+     */
+    public boolean remove(int id) {
+        int i = this.pos[id];
+        if(i < 0) {
+            return false;
+        }
+        this.pos[id] = -1;
+        int last = this.heap[--this.size];
+        if(i < this.size) {
+            this.heap[i] = last;
+            this.pos[last] = i;
+            this.siftDown(i);
+            this.siftUp(this.pos[last]);
+        }
+        return true;
+    }
+
+    /**
+     * Removes every id from the heap.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.pos[this.heap[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Moves the entry at position i up until its parent is smaller.
+     * @param i Position in the heap
+     */
+    private void siftUp(int i) {
+        int id = this.heap[i];
+        float key = this.keys[id];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int parentId = this.heap[p];
+            if(this.keys[parentId] <= key) {
+                break;
+            }
+            this.heap[i] = parentId;
+            this.pos[parentId] = i;
+            i = p;
+        }
+        this.heap[i] = id;
+        this.pos[id] = i;
+    }
+
+    /**
+     * Moves the entry at position i down until its children are larger.
+     * @param i Position in the heap
+     */
+    private void siftDown(int i) {
+        int id = this.heap[i];
+        float key = this.keys[id];
+        int half = this.size >>> 1;
+        while (i < half) {
+            int c = 2 * i + 1;
+            int r = c + 1;
+            if(r < this.size && this.keys[this.heap[r]] < this.keys[this.heap[c]]) {
+                c = r;
+            }
+            int childId = this.heap[c];
+            if(key <= this.keys[childId]) {
+                break;
+            }
+            this.heap[i] = childId;
+            this.pos[childId] = i;
+            i = c;
+        }
+        this.heap[i] = id;
+        this.pos[id] = i;
+    }
+}
@@ -0,0 +1,118 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * A double-ended queue of ints in a growable ring buffer. Adding to
+ * the last end and removing from the first makes it a queue, removing
+ * from the last end makes it a stack. Nothing is boxed and nothing is
+ * allocated once the buffer is large enough, and clearing it keeps
+ * the buffer for the next use.
+ * @author Andrew Serra
+ */
+public class IntDeque {
+
+    private int[] items;
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Creates an IntDeque object.
+     * @param capacity Number of items held before the buffer grows
+     */
+    public IntDeque(int capacity) {
+        this.items = new int[Integer.highestOneBit(Math.max(8, capacity - 1)) << 1];
+    }
+
+    /**
+     * Get the size of the deque.
+     * @return The number of items in the deque.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns true if the deque is empty.
+     * @return True if deque is empty else false.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes every item in O(1), keeping the buffer.
+     */
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Appends an item to the last end.
+     * @param item The item to add
+     */
+    public void addLast(int item) {
+        if(this.size == this.items.length) {
+            this.grow();
+        }
+        this.items[(this.head + this.size) & (this.items.length - 1)] = item;
+        this.size++;
+    }
+
+    /**
+     * Inserts an item at the first end.
+     * @param item The item to add
+     */
+    public void addFirst(int item) {
+        if(this.size == this.items.length) {
+            this.grow();
+        }
+        this.head = (this.head - 1) & (this.items.length - 1);
+        this.items[this.head] = item;
+        this.size++;
+    }
+
+    /**
+     * Removes the item at the first end, the oldest when used as a
+     * queue.
+     * @return The first item
+     * @throws IllegalStateException If the deque is empty
+     */
+    public int removeFirst() throws IllegalStateException {
+        if(this.size == 0) {
+            throw new IllegalStateException("No elements in the deque.");
+        }
+        int item = this.items[this.head];
+        this.head = (this.head + 1) & (this.items.length - 1);
+        this.size--;
+        return item;
+    }
+
+    /**
+     * Removes the item at the last end, the newest when used as a
+     * stack.
+     * @return The last item
+     * @throws IllegalStateException If the deque is empty
+     */
+    public int removeLast() throws IllegalStateException {
+        if(this.size == 0) {
+            throw new IllegalStateException("No elements in the deque.");
+        }
+        this.size--;
+        return this.items[(this.head + this.size) & (this.items.length - 1)];
+    }
+
+    /**
+     * Doubles the buffer, moving the items to its start in order.
+     */
+    private void grow() {
+        int[] grown = Arrays.copyOfRange(this.items, this.head, this.head + this.items.length * 2);
+        int wrapped = this.head + this.size - this.items.length;
+        if(wrapped > 0) {
+            System.arraycopy(this.items, 0, grown, this.items.length - this.head, wrapped);
+        }
+        this.items = grown;
+        this.head = 0;
+    }
+}
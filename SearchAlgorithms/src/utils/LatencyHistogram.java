@@ -0,0 +1,111 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values, such as latencies in
+ * nanoseconds, that any number of threads can record into. Values
+ * are counted in log-linear buckets: every power of two is split
+ * into 16 equal buckets, so a percentile is off by at most 1/16 of
+ * its value and the histogram has a fixed size of under 8 KB.
+ * @author Andrew Serra
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * @param value The value, negative values count as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Get the number of recorded values.
+     * @return The count
+     */
+    public long count() {
+        return this.count.sum();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     * @return The mean, or 0 if nothing was recorded
+     */
+    public double mean() {
+        long count = this.count();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+
+    /**
+     * Get the largest recorded value.
+     * @return The maximum, or 0 if nothing was recorded
+     */
+    public long max() {
+        return this.max.get();
+    }
+
+    /**
+     * Finds the value below which a share of the recorded values lie.
+     * @param p The share, from 0 to 1, such as 0.99 for p99
+     * @return The upper end of the bucket holding the percentile,
+     *         never above the maximum, or 0 if nothing was recorded
+     */
+    public long percentile(double p) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += this.counts.get(i);
+        }
+        if(total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if(seen >= rank) {
+                return Math.min(upperBound(i), this.max());
+            }
+        }
+        return this.max();
+    }
+
+    /**
+     * Finds the bucket of a value. Values below 16 get a bucket each;
+     * above, the top bit picks the power of two and the next four
+     * bits the bucket within it.
+     */
+    private static int bucketOf(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
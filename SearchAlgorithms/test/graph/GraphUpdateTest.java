@@ -0,0 +1,121 @@
+package graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the batches that change no edge of the graph, which share
+ * the edge arrays of the previous version and only patch weights.
+ * @author Andrew Serra
+ */
+public class GraphUpdateTest {
+
+    /**
+     * Builds a path A - B - C with explicit weights.
+     * @return The Graph object
+     */
+    private static Graph path() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.addCity("A", "S", 0, 0);
+        builder.addCity("B", "S", 1, 0);
+        builder.addCity("C", "S", 2, 0);
+        builder.addEdge("A", "B", 100);
+        builder.addEdge("B", "C", 100);
+        return builder.build();
+    }
+
+    /**
+     * Checks the weight of an edge in both directions.
+     */
+    private static void assertWeight(Graph graph, String a, String b, float weight) {
+        assertEquals(weight, graph.weightBetween(graph.indexOf(a), graph.indexOf(b)), a + " -> " + b);
+        assertEquals(weight, graph.weightBetween(graph.indexOf(b), graph.indexOf(a)), b + " -> " + a);
+    }
+
+    /**
+     * Checks that a node has no edges to another one.
+     */
+    private static void assertNoEdge(Graph graph, String a, String b) {
+        assertTrue(Float.isNaN(graph.weightBetween(graph.indexOf(a), graph.indexOf(b))), a + " -> " + b);
+        assertTrue(Float.isNaN(graph.weightBetween(graph.indexOf(b), graph.indexOf(a))), b + " -> " + a);
+    }
+
+    @Test
+    public void edgeToANewCityAddedAndRemovedAgain() {
+        Graph graph = path();
+        GraphUpdate update = new GraphUpdate();
+        update.addCity("X", "S", 2, 2);
+        update.addEdge("X", "A");
+        update.removeEdge("X", "A");
+        Graph next = update.applyTo(graph);
+
+        assertEquals(4, next.size());
+        assertEquals(0, next.degree(next.indexOf("X")));
+        assertEquals(graph.edgeCount(), next.edgeCount());
+        assertWeight(next, "A", "B", 100);
+        assertWeight(next, "B", "C", 100);
+        assertEquals(graph.getVersion() + 1, next.getVersion());
+    }
+
+    @Test
+    public void edgeBetweenOldCitiesAddedAndRemovedAgain() {
+        Graph graph = path();
+        GraphUpdate update = new GraphUpdate();
+        update.addEdge("A", "C", 150);
+        update.removeEdge("C", "A");
+        Graph next = update.applyTo(graph);
+
+        assertNoEdge(next, "A", "C");
+        assertEquals(graph.edgeCount(), next.edgeCount());
+        assertWeight(next, "A", "B", 100);
+    }
+
+    @Test
+    public void changedWeightIsPatchedInPlace() {
+        Graph graph = path();
+        GraphUpdate update = new GraphUpdate();
+        update.setWeight("A", "B", 250);
+        update.setWeight("B", "A", 300);
+        Graph next = update.applyTo(graph);
+
+        assertWeight(next, "A", "B", 300);
+        assertWeight(next, "B", "C", 100);
+        assertWeight(graph, "A", "B", 100);
+    }
+
+    @Test
+    public void edgeRemovedAndAddedAgainKeepsItsSlot() {
+        Graph graph = path();
+        GraphUpdate update = new GraphUpdate();
+        update.addCity("X", "S", 3, 0);
+        update.removeEdge("A", "B");
+        update.addEdge("B", "A", 120);
+        Graph next = update.applyTo(graph);
+
+        assertEquals(graph.edgeCount(), next.edgeCount());
+        assertWeight(next, "A", "B", 120);
+        assertEquals(0, next.degree(next.indexOf("X")));
+    }
+
+    @Test
+    public void emptyBatchKeepsTheGraph() {
+        Graph graph = path();
+        assertSame(graph, new GraphUpdate().applyTo(graph));
+    }
+
+    @Test
+    public void invalidBatchChangesNothing() {
+        Graph graph = path();
+        GraphUpdate update = new GraphUpdate();
+        update.addCity("X", "S", 2, 2);
+        update.addEdge("X", "A");
+        update.removeEdge("X", "A");
+        update.removeEdge("X", "A");
+        assertThrows(IllegalArgumentException.class, () -> update.applyTo(graph));
+        assertEquals(3, graph.size());
+    }
+}
@@ -0,0 +1,66 @@
+package query;
+
+import graph.Graph;
+import graph.GraphGenerator;
+import graph.GraphUpdate;
+import org.junit.jupiter.api.Test;
+import search.Algorithm;
+import search.Dijkstra;
+import search.ShortestPathTree;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that contraction hierarchy queries get shortest routes
+ * while the hierarchy of their graph version is still being built,
+ * before and after an update.
+ * @author Andrew Serra
+ */
+public class QueryExecutorTest {
+
+    private static final int QUERIES = 200;
+
+    /**
+     * Answers random contraction hierarchy queries and compares them
+     * with a full Dijkstra search.
+     * @param executor The executor to ask
+     * @param seed Seed of the queries
+     */
+    private static void assertShortest(QueryExecutor executor, long seed) {
+        Graph graph = executor.getGraph();
+        Dijkstra dijkstra = new Dijkstra(graph);
+        Random random = new Random(seed);
+        for (int q = 0; q < QUERIES; q++) {
+            int src = random.nextInt(graph.size());
+            int dst = random.nextInt(graph.size());
+            RouteResult result = executor.answer(new RouteQuery(src, dst, Algorithm.CH));
+            ShortestPathTree reference = dijkstra.tree(src);
+
+            String query = src + "->" + dst;
+            assertEquals(reference.contains(dst), result.hasPath(), query);
+            if(result.hasPath()) {
+                float expected = reference.getDistance(dst);
+                assertEquals(expected, result.getPath().getDistance(), 1e-4f * expected, query);
+            }
+        }
+    }
+
+    @Test
+    public void hierarchyQueriesDoNotWaitForTheBuild() {
+        GraphGenerator generator = new GraphGenerator(5000);
+        generator.setSeed(25);
+        Graph graph = generator.generate();
+        try (QueryExecutor executor = new QueryExecutor(graph, 2, true)) {
+            assertShortest(executor, 25);
+
+            GraphUpdate update = new GraphUpdate();
+            update.setWeight(graph.getName(0), graph.getName(graph.getTarget(graph.firstEdge(0))), 1);
+            Graph next = executor.update(update);
+            assertTrue(next.getVersion() > graph.getVersion());
+            assertShortest(executor, 29);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package search;
+
+import graph.Graph;
+import graph.GraphBuilder;
+import graph.GraphGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that ParallelBreadthFirstSearch finds the very route of
+ * GraphBreadthFirstSearch, not just one with as many hops, on graphs
+ * large enough to split levels into many tasks and to switch to
+ * bottom-up expansion.
+ * @author Andrew Serra
+ */
+public class ParallelBreadthFirstSearchTest {
+
+    private static final int QUERIES = 100;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Runs both searches on random queries and compares their routes.
+     * @param graph The graph to search
+     * @param seed Seed of the queries
+     */
+    private static void assertSameRoutes(Graph graph, long seed) {
+        Random random = new Random(seed);
+        for (int q = 0; q < QUERIES; q++) {
+            int src = random.nextInt(graph.size());
+            int dst = random.nextInt(graph.size());
+            GraphSearchBase sequential = new GraphBreadthFirstSearch(graph, src, dst);
+            sequential.run();
+            GraphSearchBase parallel = new ParallelBreadthFirstSearch(graph, src, dst, pool);
+            parallel.run();
+
+            String query = src + "->" + dst;
+            assertEquals(sequential.hasPath(), parallel.hasPath(), query);
+            if(sequential.hasPath()) {
+                CompactPath expected = sequential.getCompactPath();
+                CompactPath actual = parallel.getCompactPath();
+                assertEquals(expected.size(), actual.size(), query);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.getNode(i), actual.getNode(i), query);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesOnGeneratedGraphs() {
+        for (GraphGenerator.Shape shape : GraphGenerator.Shape.values()) {
+            GraphGenerator generator = new GraphGenerator(30000);
+            generator.setShape(shape);
+            generator.setDegree(8, 4);
+            generator.setConnected(false);
+            assertSameRoutes(generator.generate(), 630);
+        }
+    }
+
+    @Test
+    public void matchesAroundHubs() {
+        // A few hubs joined to most cities make the frontier explode
+        // within a level or two, with thousands of children per parent
+        Random random = new Random(25);
+        int n = 30000;
+        GraphBuilder builder = new GraphBuilder();
+        for (int i = 0; i < n; i++) {
+            builder.addCity(Integer.toString(random.nextInt(1 << 20), 36) + i,
+                    "S" + random.nextInt(50), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        for (int i = 4; i < n; i++) {
+            if(random.nextInt(3) > 0) {
+                builder.addEdge(random.nextInt(4), i);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            if(a != b) {
+                builder.addEdge(a, b);
+            }
+        }
+        assertSameRoutes(builder.build(), 29);
+    }
+}
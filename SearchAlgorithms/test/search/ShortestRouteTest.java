@@ -0,0 +1,316 @@
+package search;
+
+import graph.DistanceMetric;
+import graph.Graph;
+import graph.GraphGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks every search that promises a shortest route against the
+ * distances of a full Dijkstra search from the same source, on small
+ * generated graphs of each shape and metric.
+ * <p>
+ * Euclidean distances are rounded to whole numbers edge by edge, so
+ * the straight line estimate of the A* searches can exceed a route
+ * by up to half a unit per edge. Their routes may be that much
+ * longer, while the searches that use no estimate must match.
+ * @author Andrew Serra
+ */
+public class ShortestRouteTest {
+
+    private static final int NODES = 400;
+    private static final int QUERIES = 300;
+    private static final long[] SEEDS = { 25, 29 };
+
+    /**
+     * Generates a test graph.
+     * @param shape Layout of the graph
+     * @param metric Distance metric of the graph
+     * @param seed Seed of the generator
+     * @return The Graph object
+     */
+    static Graph generate(GraphGenerator.Shape shape, DistanceMetric metric, long seed) {
+        GraphGenerator generator = new GraphGenerator(NODES);
+        generator.setShape(shape);
+        generator.setMetric(metric);
+        generator.setSeed(seed);
+        generator.setConnected(false);
+        return generator.generate();
+    }
+
+    /**
+     * Receiver of one query and its reference answer.
+     */
+    private interface Check {
+        void query(Graph graph, int src, int dst, ShortestPathTree reference);
+    }
+
+    /**
+     * Runs a check on random queries of every test graph.
+     * @param check The check to run
+     */
+    private static void forEachQuery(Check check) {
+        for (GraphGenerator.Shape shape : GraphGenerator.Shape.values()) {
+            for (DistanceMetric metric : DistanceMetric.values()) {
+                for (long seed : SEEDS) {
+                    Graph graph = generate(shape, metric, seed);
+                    Dijkstra dijkstra = new Dijkstra(graph);
+                    Random random = new Random(seed);
+                    for (int q = 0; q < QUERIES; q++) {
+                        int src = random.nextInt(graph.size());
+                        int dst = random.nextInt(graph.size());
+                        check.query(graph, src, dst, dijkstra.tree(src));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the route of a search against the reference distance.
+     * @param graph The graph searched
+     * @param search The search, already run
+     * @param dst Node id of the sink
+     * @param reference Full Dijkstra tree of the source
+     * @param estimated True if the search follows a distance estimate
+     */
+    private static void assertShortest(Graph graph, GraphSearchBase search, int dst,
+                                       ShortestPathTree reference, boolean estimated) {
+        String query = search.getClass().getSimpleName() + " " + reference.getSource() + "->" + dst;
+        if(!reference.contains(dst)) {
+            assertFalse(search.hasPath(), query);
+            return;
+        }
+        assertTrue(search.hasPath(), query);
+        assertRoute(graph, search.getCompactPath(), reference.getSource(), dst, query);
+        float expected = reference.getDistance(dst);
+        assertEquals(expected, search.getCompactPath().getDistance(),
+                tolerance(graph, reference.pathTo(dst), estimated), query);
+    }
+
+    /**
+     * Checks that a path runs along edges of the graph from the source
+     * to the sink.
+     * @param graph The graph searched
+     * @param path The path found
+     * @param src Node id of the source
+     * @param dst Node id of the sink
+     * @param query Description of the query for failure messages
+     */
+    static void assertRoute(Graph graph, CompactPath path, int src, int dst, String query) {
+        assertEquals(src, path.getNode(0), query);
+        assertEquals(dst, path.getNode(path.size() - 1), query);
+        for (int i = 1; i < path.size(); i++) {
+            assertTrue(Float.isFinite(graph.weightBetween(path.getNode(i - 1), path.getNode(i))), query);
+        }
+    }
+
+    /**
+     * Calculates how far a route may be off the reference distance.
+     * @param graph The graph searched
+     * @param route The reference route
+     * @param estimated True if the search follows a distance estimate
+     * @return The tolerance
+     */
+    private static float tolerance(Graph graph, CompactPath route, boolean estimated) {
+        float rounding = estimated && graph.getMetric() == DistanceMetric.EUCLIDEAN
+                ? 0.5f * route.size() : 0;
+        return rounding + 1e-4f * route.getDistance();
+    }
+
+    @Test
+    public void aStarFindsShortestRoutes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            GraphSearchBase search = new GraphAStar(graph, src, dst);
+            search.run();
+            assertShortest(graph, search, dst, reference, true);
+        });
+    }
+
+    @Test
+    public void dijkstraFindsShortestRoutes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            GraphSearchBase search = Algorithm.DIJKSTRA.create(graph, src, dst);
+            search.run();
+            assertShortest(graph, search, dst, reference, false);
+        });
+    }
+
+    @Test
+    public void bidirectionalAStarFindsShortestRoutes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            GraphSearchBase search = new BidirectionalAStar(graph, src, dst, graph::estimate);
+            search.run();
+            assertShortest(graph, search, dst, reference, true);
+        });
+    }
+
+    @Test
+    public void landmarkAStarFindsShortestRoutes() {
+        Landmarks[] landmarks = new Landmarks[1];
+        forEachQuery((graph, src, dst, reference) -> {
+            if(landmarks[0] == null || landmarks[0].getGraph() != graph) {
+                landmarks[0] = Landmarks.select(graph, 8);
+            }
+            GraphSearchBase search = new GraphAStar(graph, src, dst, landmarks[0]);
+            search.run();
+            assertShortest(graph, search, dst, reference, false);
+
+            search = new BidirectionalAStar(graph, src, dst, landmarks[0]);
+            search.run();
+            assertShortest(graph, search, dst, reference, false);
+        });
+    }
+
+    @Test
+    public void iterativeDeepeningAStarFindsShortestRoutes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            GraphIDAStar search = new GraphIDAStar(graph, src, dst, graph::estimate,
+                    BoundedSearchBase.DEFAULT_NODE_BUDGET);
+            search.run();
+            assertFalse(search.isExhausted(), src + "->" + dst);
+            assertShortest(graph, search, dst, reference, true);
+        });
+    }
+
+    @Test
+    public void memoryBoundedAStarFindsShortestRoutes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            GraphSMAStar search = new GraphSMAStar(graph, src, dst, graph::estimate,
+                    BoundedSearchBase.DEFAULT_NODE_BUDGET);
+            search.run();
+            assertFalse(search.isExhausted(), src + "->" + dst);
+            assertShortest(graph, search, dst, reference, true);
+        });
+    }
+
+    @Test
+    public void memoryBoundedSearchesFinishWithinTheBudget() {
+        // IDA* used to raise its bound one f value at a time and ran
+        // out of the default budget here after a million expansions
+        GraphGenerator generator = new GraphGenerator(NODES);
+        generator.setSeed(29);
+        Graph graph = generator.generate();
+        ShortestPathTree reference = new Dijkstra(graph).tree(221);
+        GraphIDAStar search = new GraphIDAStar(graph, 221, 1, graph::estimate,
+                BoundedSearchBase.DEFAULT_NODE_BUDGET);
+        search.run();
+        assertFalse(search.isExhausted());
+        assertTrue(search.getStats().getNodesExpanded() < 10000);
+        assertShortest(graph, search, 1, reference, true);
+
+        // A small budget still answers, with routes that fit in it
+        forEachQuery((g, src, dst, tree) -> {
+            GraphSMAStar bounded = new GraphSMAStar(g, src, dst, g::estimate, 64);
+            bounded.run();
+            if(bounded.hasPath()) {
+                assertRoute(g, bounded.getCompactPath(), src, dst, "SMA* " + src + "->" + dst);
+                assertTrue(bounded.getCompactPath().getDistance() + 1e-3f >= tree.getDistance(dst));
+            }
+        });
+    }
+
+    @Test
+    public void contractionHierarchyFindsShortestRoutes() {
+        ContractionHierarchy[] hierarchy = new ContractionHierarchy[1];
+        forEachQuery((graph, src, dst, reference) -> {
+            if(hierarchy[0] == null || hierarchy[0].getGraph() != graph) {
+                hierarchy[0] = ContractionHierarchy.build(graph);
+            }
+            GraphSearchBase search = new ContractionHierarchySearch(hierarchy[0], src, dst);
+            search.run();
+            assertShortest(graph, search, dst, reference, false);
+        });
+    }
+
+    @Test
+    public void allPairsTableHoldsShortestRoutes() {
+        AllPairsTable[] table = new AllPairsTable[1];
+        forEachQuery((graph, src, dst, reference) -> {
+            if(table[0] == null || table[0].getGraph() != graph) {
+                table[0] = AllPairsTable.build(graph);
+            }
+            String query = "AllPairsTable " + src + "->" + dst;
+            CompactPath path = table[0].path(src, dst);
+            if(!reference.contains(dst)) {
+                assertNull(path, query);
+                assertEquals(Float.POSITIVE_INFINITY, table[0].distance(src, dst), query);
+                return;
+            }
+            assertNotNull(path, query);
+            assertRoute(graph, path, src, dst, query);
+            float expected = reference.getDistance(dst);
+            float tolerance = 1e-4f * expected;
+            assertEquals(expected, table[0].distance(src, dst), tolerance, query);
+            assertEquals(expected, path.getDistance(), tolerance, query);
+        });
+    }
+
+    @Test
+    public void targetTreesHoldShortestRoutes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            ShortestPathTree tree = new Dijkstra(graph).toTargets(src, new int[] { dst });
+            String query = "toTargets " + src + "->" + dst;
+            assertEquals(src, tree.getSource(), query);
+            assertEquals(reference.contains(dst), tree.contains(dst), query);
+            assertTrue(tree.size() <= reference.size(), query);
+            for (int node = 0; node < graph.size(); node++) {
+                if(tree.contains(node)) {
+                    assertEquals(reference.getDistance(node), tree.getDistance(node), query);
+                    int parent = tree.getParent(node);
+                    assertEquals(node == src, parent < 0, query);
+                    if(parent >= 0) {
+                        assertTrue(tree.contains(parent), query);
+                    }
+                } else {
+                    assertEquals(Float.POSITIVE_INFINITY, tree.getDistance(node), query);
+                    assertNull(tree.pathTo(node), query);
+                }
+            }
+            if(tree.contains(dst)) {
+                CompactPath path = tree.pathTo(dst);
+                assertRoute(graph, path, src, dst, query);
+                assertEquals(reference.getDistance(dst), path.getDistance(), query);
+            }
+        });
+    }
+
+    @Test
+    public void nearestTargetsAreTheClosestOnes() {
+        forEachQuery((graph, src, dst, reference) -> {
+            Random random = new Random(src * 31L + dst);
+            int[] targets = new int[1 + random.nextInt(20)];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = random.nextInt(graph.size());
+            }
+            int k = 1 + random.nextInt(targets.length);
+            NearestTargets nearest = new Dijkstra(graph).nearest(src, targets, k);
+
+            int[] reachable = Arrays.stream(targets).distinct().filter(reference::contains).toArray();
+            float[] distances = new float[reachable.length];
+            for (int i = 0; i < reachable.length; i++) {
+                distances[i] = reference.getDistance(reachable[i]);
+            }
+            Arrays.sort(distances);
+            float[] expected = Arrays.copyOf(distances, Math.min(k, distances.length));
+
+            String query = "nearest " + k + " from " + src;
+            assertEquals(expected.length, nearest.size(), query);
+            for (int i = 0; i < nearest.size(); i++) {
+                assertEquals(expected[i], nearest.getDistance(i), 1e-4f * expected[i], query);
+                assertEquals(reference.getDistance(nearest.getTarget(i)), nearest.getDistance(i),
+                        1e-4f * expected[i], query);
+                assertRoute(graph, nearest.pathTo(i), src, nearest.getTarget(i), query);
+            }
+        });
+    }
+}